@@ -0,0 +1,168 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.Component;
+import java.awt.Window;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.swing.SwingUtilities;
+import org.eomasters.gui.Dialogs;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.ui.AppContext;
+
+/**
+ * Executes an operator on many source products as a single job of the {@link OperatorJobManager}. The batch waits for
+ * a free slot like any other job, its progress is shown in the {@link OperatorJobsDialog} and it can be cancelled
+ * there. At the end, a summary with the throughput and the failed products is shown.
+ */
+class BatchExecutionDialog {
+
+  private final String operatorName;
+  private final List<Job> jobs;
+  private final boolean openInApp;
+  private final Component parent;
+  private final AppContext appContext;
+  private volatile BatchScheduler.Report report;
+
+  /**
+   * Creates a new batch execution.
+   *
+   * @param operatorName the name of the operator
+   * @param jobs         the jobs, one per source product
+   * @param openInApp    whether the written products shall be opened in the application
+   * @param parent       the parent component
+   * @param appContext   the application context
+   */
+  BatchExecutionDialog(String operatorName, List<Job> jobs, boolean openInApp, Component parent,
+      AppContext appContext) {
+    this.operatorName = operatorName;
+    this.jobs = List.copyOf(jobs);
+    this.openInApp = openInApp;
+    this.parent = parent;
+    this.appContext = appContext;
+  }
+
+  /**
+   * Queues the processing of the batch and shows the list of jobs.
+   */
+  void process() {
+    String name = String.format("%s: batch of %d products", operatorName, jobs.size());
+    OperatorJobManager.getDefault().submit(new OperatorJob(name, this::execute, this::onFinished));
+    Window window = parent instanceof Window ? (Window) parent : SwingUtilities.getWindowAncestor(parent);
+    OperatorJobsDialog.showJobs(window);
+  }
+
+  private Product execute(ProgressMonitor pm) throws InterruptedException {
+    List<Product> sources = jobs.stream().map(job -> job.sourceProduct).toList();
+    BatchScheduler scheduler = new BatchScheduler(BatchScheduler.computeParallelism(sources));
+    report = scheduler.run(List.copyOf(jobs), pm);
+    return null;
+  }
+
+  private void onFinished(OperatorJob job) {
+    for (Job batchJob : jobs) {
+      Product targetProduct = batchJob.getTargetProduct();
+      if (targetProduct == null) {
+        continue;
+      }
+      if (openInApp) {
+        appContext.getProductManager().addProduct(targetProduct);
+      } else {
+        // the product has been written and is not used anymore
+        targetProduct.dispose();
+      }
+    }
+    if (report != null) {
+      OperatorExecution.maybePlaySound();
+      showSummary(report);
+    } else if (job.getState() == OperatorJob.State.CANCELLED) {
+      Dialogs.message(null, operatorName, "Batch processing cancelled.");
+    } else {
+      Dialogs.error(operatorName, "Error during batch processing.", job.getError());
+    }
+  }
+
+  private void showSummary(BatchScheduler.Report report) {
+    String summary = String.format(
+        "<html>%d of %d products processed in <b>%s</b>%s.<br>"
+            + "Throughput: %.1f products/h, %.1f MB/s",
+        report.getSuccessCount(), report.numTasks(), OperatorExecution.formatDuration(report.duration()),
+        report.cancelled() ? String.format(" (cancelled, %d stopped)", report.getCancelledCount()) : "",
+        report.getProductsPerHour(), report.getMegabytesPerSecond());
+    List<BatchScheduler.Result> failures = report.getFailures();
+    if (failures.isEmpty()) {
+      Dialogs.message(null, operatorName, summary);
+    } else {
+      String failureList = failures.stream()
+                                   .map(failure -> String.format("<li><b>%s</b>: %s</li>", failure.name(),
+                                       failure.error().getMessage()))
+                                   .collect(Collectors.joining());
+      Dialogs.error(operatorName, summary + "<br>Failed products:<ul>" + failureList + "</ul>");
+    }
+  }
+
+  /**
+   * The execution of the operator for one source product.
+   */
+  static class Job implements BatchScheduler.Task {
+
+    private final OperatorExecution.Request request;
+    private final Product sourceProduct;
+    private volatile Product targetProduct;
+
+    /**
+     * Creates a new job.
+     *
+     * @param request       the execution request
+     * @param sourceProduct the source product which differs from job to job
+     */
+    Job(OperatorExecution.Request request, Product sourceProduct) {
+      this.request = request;
+      this.sourceProduct = sourceProduct;
+    }
+
+    @Override
+    public String getName() {
+      return request.productName();
+    }
+
+    @Override
+    public long getSize() {
+      return BatchScheduler.getRawSize(sourceProduct);
+    }
+
+    @Override
+    public void execute(ProgressMonitor pm) {
+      Product product = request.createTargetProduct();
+      request.write(product, pm);
+      targetProduct = product;
+    }
+
+    Product getTargetProduct() {
+      return targetProduct;
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import com.bc.ceres.core.NullProgressMonitor;
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.Dimension;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.gpf.OperatorCancelException;
+
+/**
+ * Runs a list of tasks, each processing one product, with a bounded number of products in flight. The bound is derived
+ * from the number of processors and the free heap, because each product already uses the tile scheduler of JAI for
+ * parallel computation, and each product being written holds at least one row of tiles of all its bands in memory.
+ */
+class BatchScheduler {
+
+  private static final int DEFAULT_TILE_HEIGHT = 512;
+
+  private final int parallelism;
+
+  /**
+   * Creates a new scheduler.
+   *
+   * @param parallelism the maximum number of tasks executed at the same time
+   */
+  BatchScheduler(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism must be at least 1, but is " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Computes the number of products which can be processed at the same time.
+   *
+   * @param products the products to process
+   * @return the number of products processed concurrently, at least 1
+   */
+  static int computeParallelism(List<Product> products) {
+    Runtime runtime = Runtime.getRuntime();
+    long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    long workingSet = 0;
+    for (Product product : products) {
+      workingSet = Math.max(workingSet, estimateWorkingSet(product));
+    }
+    return computeParallelism(products.size(), runtime.availableProcessors(), freeHeap, workingSet);
+  }
+
+  static int computeParallelism(int numProducts, int numProcessors, long freeHeap, long workingSet) {
+    // half of the processors, the other half keeps the tile scheduler of each product busy
+    int byProcessors = Math.max(1, numProcessors / 2);
+    // keep half of the free heap for the tile cache and the readers
+    int byHeap = workingSet > 0 ? (int) Math.min(Integer.MAX_VALUE, (freeHeap / 2) / workingSet) : Integer.MAX_VALUE;
+    return Math.max(1, Math.min(numProducts, Math.min(byProcessors, byHeap)));
+  }
+
+  /**
+   * Estimates the memory needed while a product is processed, which is one row of tiles of the source and of the
+   * target.
+   *
+   * @param product the source product
+   * @return the estimated number of bytes
+   */
+  static long estimateWorkingSet(Product product) {
+    Dimension tileSize = product.getPreferredTileSize();
+    int tileHeight = tileSize != null ? tileSize.height : DEFAULT_TILE_HEIGHT;
+    long bytes = 0;
+    for (Band band : product.getBands()) {
+      bytes += (long) band.getRasterWidth() * Math.min(tileHeight, band.getRasterHeight())
+          * ProductData.getElemSize(band.getDataType());
+    }
+    return 2 * bytes;
+  }
+
+  /**
+   * Returns the raw size of the data of the product.
+   *
+   * @param product the product
+   * @return the size in bytes
+   */
+  static long getRawSize(Product product) {
+    long bytes = 0;
+    for (Band band : product.getBands()) {
+      bytes += (long) band.getRasterWidth() * band.getRasterHeight() * ProductData.getElemSize(band.getDataType());
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the maximum number of tasks executed at the same time.
+   *
+   * @return the parallelism
+   */
+  int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Runs the tasks and waits until all have finished or the progress monitor is cancelled. Failing tasks do not stop
+   * the others.
+   *
+   * @param tasks the tasks
+   * @param pm    the progress monitor, worked by one unit per finished task
+   * @return the report of the batch
+   * @throws InterruptedException if the waiting thread is interrupted
+   */
+  Report run(List<Task> tasks, ProgressMonitor pm) throws InterruptedException {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    ProgressMonitor taskPm = new NullProgressMonitor() {
+      @Override
+      public boolean isCanceled() {
+        return cancelled.get();
+      }
+    };
+    List<Result> results = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger finished = new AtomicInteger();
+    Instant start = Instant.now();
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    pm.beginTask("Processing " + tasks.size() + " products", tasks.size());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Task task : tasks) {
+        futures.add(executor.submit(() -> {
+          if (cancelled.get()) {
+            return;
+          }
+          Instant taskStart = Instant.now();
+          Throwable error = null;
+          try {
+            task.execute(taskPm);
+          } catch (Throwable t) {
+            error = t;
+          }
+          boolean taskCancelled = cancelled.get() && isCancellation(error);
+          results.add(new Result(task.getName(), task.getSize(), Duration.between(taskStart, Instant.now()),
+              taskCancelled ? null : error, taskCancelled));
+          synchronized (pm) {
+            pm.setSubTaskName(finished.incrementAndGet() + " of " + tasks.size() + " products done");
+            pm.worked(1);
+          }
+        }));
+      }
+      executor.shutdown();
+      while (!executor.awaitTermination(200, TimeUnit.MILLISECONDS)) {
+        if (pm.isCanceled() && !cancelled.getAndSet(true)) {
+          futures.forEach(future -> future.cancel(false));
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+      pm.done();
+    }
+    return new Report(new ArrayList<>(results), tasks.size(), Duration.between(start, Instant.now()),
+        cancelled.get());
+  }
+
+  private static boolean isCancellation(Throwable error) {
+    for (Throwable t = error; t != null; t = t.getCause()) {
+      if (t instanceof OperatorCancelException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A unit of work of the batch.
+   */
+  interface Task {
+
+    /**
+     * Returns the name used in the report.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Returns the amount of data processed by the task, used to report the throughput.
+     *
+     * @return the size in bytes
+     */
+    long getSize();
+
+    /**
+     * Executes the task.
+     *
+     * @param pm the progress monitor, only used to check for cancellation
+     * @throws Exception if the task fails
+     */
+    void execute(ProgressMonitor pm) throws Exception;
+  }
+
+  /**
+   * The outcome of a single task.
+   *
+   * @param name      the name of the task
+   * @param size      the processed bytes
+   * @param duration  the time the task took
+   * @param error     the error, or {@code null} if the task succeeded or has been cancelled
+   * @param cancelled whether the task has been stopped because the batch has been cancelled
+   */
+  record Result(String name, long size, Duration duration, Throwable error, boolean cancelled) {
+
+    boolean isSuccess() {
+      return error == null && !cancelled;
+    }
+  }
+
+  /**
+   * The outcome of the batch.
+   *
+   * @param results   the results of the executed tasks
+   * @param numTasks  the number of scheduled tasks
+   * @param duration  the time the batch took
+   * @param cancelled whether the batch has been cancelled
+   */
+  record Report(List<Result> results, int numTasks, Duration duration, boolean cancelled) {
+
+    List<Result> getFailures() {
+      return results.stream().filter(result -> result.error() != null).toList();
+    }
+
+    int getCancelledCount() {
+      return (int) results.stream().filter(Result::cancelled).count();
+    }
+
+    int getSuccessCount() {
+      return (int) results.stream().filter(Result::isSuccess).count();
+    }
+
+    /**
+     * Returns the throughput in megabytes of processed data per second.
+     *
+     * @return the throughput
+     */
+    double getMegabytesPerSecond() {
+      long bytes = results.stream().filter(Result::isSuccess).mapToLong(Result::size).sum();
+      double seconds = Math.max(duration.toMillis(), 1) / 1000.0;
+      return bytes / (1024.0 * 1024.0) / seconds;
+    }
+
+    /**
+     * Returns the throughput in products per hour.
+     *
+     * @return the throughput
+     */
+    double getProductsPerHour() {
+      double hours = Math.max(duration.toMillis(), 1) / 3_600_000.0;
+      return getSuccessCount() / hours;
+    }
+  }
+}
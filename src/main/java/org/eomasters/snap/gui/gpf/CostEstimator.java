@@ -0,0 +1,277 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.Rectangle;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.media.jai.JAI;
+import org.eomasters.snap.utils.WriteOpSettings;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.gpf.GPF;
+import org.esa.snap.core.gpf.OperatorCancelException;
+
+/**
+ * Estimates the runtime, the memory and the output size of an operator execution before it is started. The operator
+ * is run with the same parameters on a few small windows of the source products. The time per pixel and the peak heap
+ * allocation measured for these windows are extrapolated to the full product.
+ *
+ * <p>The windows are placed in the largest source product. Only the computation of their data is timed, creating the
+ * window products is not. The windows are computed tile by tile in a single thread, while writing computes the tiles
+ * in parallel. The estimated runtime therefore assumes that the work is spread over all threads of the JAI tile
+ * scheduler.
+ */
+class CostEstimator {
+
+  private static final int WINDOW_SIZE = 256;
+  private static final double[] WINDOW_POSITIONS = {0.25, 0.5, 0.75};
+
+  private final String operatorName;
+  private final Map<String, Object> parametersMap;
+  private final Map<String, Product> sourceProducts;
+
+  /**
+   * Creates a new estimator.
+   *
+   * @param operatorName   the name of the operator
+   * @param parametersMap  the parameters of the operator
+   * @param sourceProducts the source products
+   */
+  CostEstimator(String operatorName, Map<String, Object> parametersMap, Map<String, Product> sourceProducts) {
+    this.operatorName = operatorName;
+    this.parametersMap = parametersMap;
+    this.sourceProducts = sourceProducts;
+  }
+
+  /**
+   * Runs the operator on the sample windows and extrapolates the costs.
+   *
+   * @param targetDir the directory the product shall be written to
+   * @param pm        the progress monitor
+   * @return the estimate
+   */
+  Estimate estimate(File targetDir, ProgressMonitor pm) {
+    Product fullTarget = GPF.createProduct(operatorName, parametersMap, sourceProducts);
+    Product reference = getLargestSource();
+    int sourceWidth = reference.getSceneRasterWidth();
+    int sourceHeight = reference.getSceneRasterHeight();
+    int windowWidth = Math.min(WINDOW_SIZE, sourceWidth);
+    int windowHeight = Math.min(WINDOW_SIZE, sourceHeight);
+    int width = fullTarget.getSceneRasterWidth();
+    int height = fullTarget.getSceneRasterHeight();
+
+    pm.beginTask("Estimating processing costs", WINDOW_POSITIONS.length + 1);
+    try {
+      // the first window warms up the operator and is not measured
+      WindowProducts warmUp = createWindow(new Rectangle(0, 0, windowWidth, windowHeight), reference);
+      try {
+        computeBands(warmUp.target());
+      } finally {
+        warmUp.dispose();
+      }
+      pm.worked(1);
+      long nanos = 0;
+      long peakBytes = 0;
+      long windowPixels = 0;
+      for (double position : WINDOW_POSITIONS) {
+        if (pm.isCanceled()) {
+          throw new OperatorCancelException("Estimation has been cancelled.");
+        }
+        int x = (int) Math.min(sourceWidth - windowWidth, Math.max(0, sourceWidth * position - windowWidth / 2.0));
+        int y = (int) Math.min(sourceHeight - windowHeight, Math.max(0, sourceHeight * position - windowHeight / 2.0));
+        WindowProducts window = createWindow(new Rectangle(x, y, windowWidth, windowHeight), reference);
+        try {
+          long baseline = resetHeapPeak();
+          long start = System.nanoTime();
+          computeBands(window.target());
+          nanos += System.nanoTime() - start;
+          peakBytes = Math.max(peakBytes, getHeapPeak() - baseline);
+          windowPixels += (long) window.target().getSceneRasterWidth() * window.target().getSceneRasterHeight();
+        } finally {
+          window.dispose();
+        }
+        pm.worked(1);
+      }
+      // the windows are measured in target pixels, so operators changing the raster size are extrapolated correctly
+      long targetPixels = (long) width * height;
+      double nanosPerPixel = (double) nanos / Math.max(1, windowPixels);
+      int parallelism = Math.max(1, JAI.getDefaultInstance().getTileScheduler().getParallelism());
+      Duration runtime = Duration.ofNanos((long) (nanosPerPixel * targetPixels / parallelism));
+
+      WriteOpSettings settings = WriteOpSettings.forProduct(fullTarget);
+      long outputSize = settings.rawSize();
+      // the pixels of one row of tiles of the target, two of them are in flight while writing
+      double rowPixels = outputSize > 0
+          ? (double) settings.bytesPerTileRow() / outputSize * targetPixels : windowPixels / WINDOW_POSITIONS.length;
+      double peakPerPixel = (double) peakBytes * WINDOW_POSITIONS.length / Math.max(1, windowPixels);
+      long memory = getHeapUsed() + (long) (2 * peakPerPixel * rowPixels)
+          + Math.min(settings.tileCacheCapacity(), outputSize);
+      return new Estimate(runtime, parallelism, memory, Runtime.getRuntime().maxMemory(), outputSize,
+          getUsableSpace(targetDir));
+    } finally {
+      fullTarget.dispose();
+      pm.done();
+    }
+  }
+
+  // the windows are placed in the source with the most pixels, of equally large ones the first by name is taken
+  private Product getLargestSource() {
+    Product largest = null;
+    for (Product source : new TreeMap<>(sourceProducts).values()) {
+      if (largest == null || (long) source.getSceneRasterWidth() * source.getSceneRasterHeight()
+          > (long) largest.getSceneRasterWidth() * largest.getSceneRasterHeight()) {
+        largest = source;
+      }
+    }
+    if (largest == null) {
+      throw new IllegalStateException("The operator " + operatorName + " has no source product.");
+    }
+    return largest;
+  }
+
+  private WindowProducts createWindow(Rectangle window, Product reference) {
+    int width = reference.getSceneRasterWidth();
+    int height = reference.getSceneRasterHeight();
+    Map<String, Product> windowSources = new HashMap<>();
+    List<Product> subsets = new ArrayList<>();
+    try {
+      for (Map.Entry<String, Product> entry : sourceProducts.entrySet()) {
+        Product source = entry.getValue();
+        if (source.getSceneRasterWidth() == width && source.getSceneRasterHeight() == height) {
+          Map<String, Object> subsetParameters = new HashMap<>();
+          subsetParameters.put("region", window);
+          subsetParameters.put("copyMetadata", false);
+          Product subset = GPF.createProduct("Subset", subsetParameters, source);
+          subsets.add(subset);
+          windowSources.put(entry.getKey(), subset);
+        } else {
+          windowSources.put(entry.getKey(), source);
+        }
+      }
+      return new WindowProducts(GPF.createProduct(operatorName, parametersMap, windowSources), subsets);
+    } catch (RuntimeException e) {
+      subsets.forEach(Product::dispose);
+      throw e;
+    }
+  }
+
+  private static void computeBands(Product target) {
+    for (Band band : target.getBands()) {
+      band.getSourceImage().getData();
+    }
+  }
+
+  private static long resetHeapPeak() {
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        pool.resetPeakUsage();
+        used += pool.getUsage().getUsed();
+      }
+    }
+    return used;
+  }
+
+  private static long getHeapPeak() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  private static long getHeapUsed() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long getUsableSpace(File dir) {
+    File existing = dir != null ? dir.getAbsoluteFile() : null;
+    while (existing != null && !existing.exists()) {
+      existing = existing.getParentFile();
+    }
+    return existing != null ? existing.getUsableSpace() : -1;
+  }
+
+  /**
+   * The target computed for a window and the subsets of the sources it is computed from.
+   */
+  private record WindowProducts(Product target, List<Product> subsets) {
+
+    void dispose() {
+      target.dispose();
+      subsets.forEach(Product::dispose);
+    }
+  }
+
+  /**
+   * The estimated costs of an execution.
+   *
+   * @param runtime     the estimated runtime
+   * @param parallelism the number of threads assumed for the runtime
+   * @param memory      the estimated peak heap usage in bytes
+   * @param maxHeap     the maximum heap in bytes
+   * @param outputSize  the uncompressed size of the output in bytes
+   * @param diskSpace   the usable space in the target directory in bytes, -1 if unknown
+   */
+  record Estimate(Duration runtime, int parallelism, long memory, long maxHeap, long outputSize, long diskSpace) {
+
+    /**
+     * Returns the warnings about exceeded resources.
+     *
+     * @return the warnings, empty if the resources are sufficient
+     */
+    List<String> getWarnings() {
+      List<String> warnings = new ArrayList<>();
+      if (memory > maxHeap) {
+        warnings.add(String.format("The estimated memory of %s exceeds the maximum heap of %s.",
+            formatBytes(memory), formatBytes(maxHeap)));
+      }
+      if (diskSpace >= 0 && outputSize > diskSpace) {
+        warnings.add(String.format("The estimated output size of %s exceeds the free disk space of %s.",
+            formatBytes(outputSize), formatBytes(diskSpace)));
+      }
+      return warnings;
+    }
+
+    static String formatBytes(long bytes) {
+      if (bytes >= 1024L * 1024 * 1024) {
+        return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+      }
+      return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+  }
+}
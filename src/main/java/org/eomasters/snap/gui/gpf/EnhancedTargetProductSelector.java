@@ -23,7 +23,9 @@
 
 package org.eomasters.snap.gui.gpf;
 
+import java.awt.BorderLayout;
 import java.io.File;
+import javax.swing.JCheckBox;
 import javax.swing.JPanel;
 import org.esa.snap.core.gpf.ui.TargetProductSelector;
 import org.esa.snap.core.gpf.ui.TargetProductSelectorModel;
@@ -33,11 +35,15 @@ import org.esa.snap.ui.AppContext;
 
 
 /**
- * An enhanced version of {@link TargetProductSelector} that allows to listen to changes of the target handling.
+ * An enhanced version of {@link TargetProductSelector} that allows to listen to changes of the target handling. If the
+ * product is only opened in the application, it can be computed into a local scratch space instead of being computed
+ * lazily.
  */
 class EnhancedTargetProductSelector extends TargetProductSelector {
 
 
+  private final boolean alwaysWriteOutput;
+  private final JCheckBox materializeCheckBox;
   private TargetHandlingListener targetHandlingListener;
 
 
@@ -49,6 +55,10 @@ class EnhancedTargetProductSelector extends TargetProductSelector {
    */
   public EnhancedTargetProductSelector(AppContext appContext, boolean alwaysWriteOutput) {
     super(new TargetProductSelectorModel(), alwaysWriteOutput);
+    this.alwaysWriteOutput = alwaysWriteOutput;
+    materializeCheckBox = new JCheckBox("Compute into local scratch space");
+    materializeCheckBox.setToolTipText("<html>Computes the product in the background into a temporary directory.<br>"
+        + "Viewing does not recompute the operator, the scratch space is deleted when the product is closed.");
     String homeDirPath = SystemUtils.getUserHomeDir().getPath();
     String saveDir = appContext.getPreferences()
                                .getPropertyString(SaveProductAsAction.PREFERENCES_KEY_LAST_PRODUCT_DIR, homeDirPath);
@@ -59,12 +69,13 @@ class EnhancedTargetProductSelector extends TargetProductSelector {
     getModel().getValueContainer().addPropertyChangeListener(evt -> {
       if (evt.getPropertyName().equals("saveToFileSelected")
           || evt.getPropertyName().equals("openInAppSelected")) {
+        updateMaterializeCheckBox();
         if (targetHandlingListener != null) {
           targetHandlingListener.onChange(getModel().isSaveToFileSelected(), getModel().isOpenInAppSelected());
         }
       }
     });
-
+    updateMaterializeCheckBox();
   }
 
   @Override
@@ -74,7 +85,27 @@ class EnhancedTargetProductSelector extends TargetProductSelector {
       // inform the listener initially
       targetHandlingListener.onChange(getModel().isSaveToFileSelected(), getModel().isOpenInAppSelected());
     }
-    return defaultPanel;
+    if (alwaysWriteOutput) {
+      return defaultPanel;
+    }
+    JPanel panel = new JPanel(new BorderLayout());
+    panel.add(defaultPanel, BorderLayout.CENTER);
+    panel.add(materializeCheckBox, BorderLayout.SOUTH);
+    return panel;
+  }
+
+  /**
+   * Tells if the product shall be computed into a local scratch space. This is only possible if the product is opened
+   * in the application but not saved to a file.
+   *
+   * @return {@code true} if the product shall be materialized
+   */
+  boolean isMaterializeSelected() {
+    return materializeCheckBox.isEnabled() && materializeCheckBox.isSelected();
+  }
+
+  private void updateMaterializeCheckBox() {
+    materializeCheckBox.setEnabled(getModel().isOpenInAppSelected() && !getModel().isSaveToFileSelected());
   }
 
   /**
@@ -23,18 +23,25 @@
 
 package org.eomasters.snap.gui.gpf;
 
+import com.bc.ceres.core.ProgressMonitor;
+import com.bc.ceres.swing.progress.ProgressMonitorSwingWorker;
 import com.bc.ceres.swing.selection.SelectionChangeEvent;
 import com.bc.ceres.swing.selection.SelectionChangeListener;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import javax.swing.AbstractButton;
 import javax.swing.ImageIcon;
+import javax.swing.JButton;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import org.eomasters.gui.Dialogs;
 import org.eomasters.gui.Highlighter;
+import org.eomasters.snap.gui.ProductSelectionDialog;
+import org.eomasters.snap.gui.ProductSelectionDialog.ProductSelection;
 import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.gpf.descriptor.OperatorDescriptor;
 import org.esa.snap.core.gpf.ui.DefaultIOParametersPanel;
@@ -42,6 +49,7 @@ import org.esa.snap.core.gpf.ui.DefaultSingleTargetProductDialog;
 import org.esa.snap.core.gpf.ui.OperatorMenu;
 import org.esa.snap.core.gpf.ui.OperatorParameterSupport;
 import org.esa.snap.core.gpf.ui.SourceProductSelector;
+import org.esa.snap.core.gpf.ui.TargetProductSelectorModel;
 import org.esa.snap.ui.AppContext;
 import org.esa.snap.ui.ModelessDialog;
 
@@ -71,12 +79,24 @@ public class OperatorDialog extends ModelessDialog {
    * @param appContext         the application context
    */
   public OperatorDialog(OperatorDescriptor operatorDescriptor, String title, String helpId, AppContext appContext) {
-    super(appContext.getApplicationWindow(), title, ID_APPLY_CLOSE_HELP, helpId);
+    this(operatorDescriptor, title, helpId, appContext, new JButton("Estimate"), new JButton("Run Batch..."));
+  }
+
+  private OperatorDialog(OperatorDescriptor operatorDescriptor, String title, String helpId, AppContext appContext,
+      JButton estimateButton, JButton batchButton) {
+    super(appContext.getApplicationWindow(), title, ID_APPLY_CLOSE_HELP, new Object[]{estimateButton, batchButton},
+        helpId);
     this.operatorDescriptor = operatorDescriptor;
     this.appContext = appContext;
     productSuffix = "_" + (operatorDescriptor.getAlias() != null ? operatorDescriptor.getAlias() : "").toLowerCase();
     tabbedPane = new JTabbedPane();
     renameApplyButtonToRun();
+    batchButton.setMnemonic('B');
+    batchButton.setToolTipText("Run the operator for several source products");
+    batchButton.addActionListener(e -> onBatchApply());
+    estimateButton.setMnemonic('E');
+    estimateButton.setToolTipText("Estimate runtime, memory and output size by processing a few small windows");
+    estimateButton.addActionListener(e -> onEstimate());
   }
 
   /**
@@ -155,16 +175,149 @@ public class OperatorDialog extends ModelessDialog {
 
     final OperatorExecutionDialog worker = new OperatorExecutionDialog(operatorDescriptor.getAlias(),
         targetProductSelector.getModel(), ioPanel.createSourceProductsMap(), parametersPanel.getParametersMap(),
-        getJDialog(), appContext);
+        getJDialog(), appContext).withMaterializeToScratch(targetProductSelector.isMaterializeSelected());
     worker.process();
   }
 
+  /**
+   * Runs the operator for each of the source products selected by the user. The first source product of the operator
+   * is replaced by each selected product, all other inputs and parameters stay as they are. The target products are
+   * written to the selected directory, their names are derived from the source products.
+   */
+  protected void onBatchApply() {
+    if (!canApplyBatch()) {
+      return;
+    }
+    Product currentProduct = ioPanel.getSourceProductSelectorList().get(0).getSelectedProduct();
+    List<ProductSelection> selections = new ArrayList<>();
+    for (Product product : appContext.getProductManager().getProducts()) {
+      selections.add(new ProductSelection(product, product == currentProduct));
+    }
+    ProductSelectionDialog selectionDialog = new ProductSelectionDialog(getJDialog(), selections, getHelpID());
+    if (selectionDialog.show() != ID_OK) {
+      return;
+    }
+    List<Product> products = selections.stream().filter(ProductSelection::isSelected)
+                                       .map(ProductSelection::getProduct).toList();
+    if (products.isEmpty()) {
+      return;
+    }
+
+    HashMap<String, Product> sourceProducts = ioPanel.createSourceProductsMap();
+    String sourceKey = sourceProducts.entrySet().stream().filter(entry -> entry.getValue() == currentProduct)
+                                     .map(Map.Entry::getKey).findFirst().orElse(null);
+    TargetProductSelectorModel model = targetProductSelector.getModel();
+    String extension = model.getProductFile().getName().substring(model.getProductName().length());
+    Map<String, Object> parametersMap = parametersPanel != null ? parametersPanel.getParametersMap() : new HashMap<>();
+    List<BatchExecutionDialog.Job> jobs = new ArrayList<>();
+    List<String> existingFiles = new ArrayList<>();
+    for (Product product : products) {
+      HashMap<String, Product> jobSources = new HashMap<>(sourceProducts);
+      if (sourceKey != null) {
+        jobSources.put(sourceKey, product);
+      }
+      String productName = createTargetProductName(product);
+      File productFile = new File(model.getProductDir(), productName + extension);
+      if (productFile.exists()) {
+        existingFiles.add(productFile.getName());
+      }
+      OperatorExecution.Request request = new OperatorExecution.Request(operatorDescriptor.getAlias(),
+          new HashMap<>(parametersMap), jobSources, productName, productFile, model.getFormatName());
+      jobs.add(new BatchExecutionDialog.Job(request, product));
+    }
+    if (!existingFiles.isEmpty()) {
+      String message = String.format("<html>%d of the output files already exist and will be overwritten.<br>"
+          + "Do you want to continue?", existingFiles.size());
+      if (!Dialogs.confirmation(getTitle(), message, getJDialog())) {
+        return;
+      }
+    }
+    new BatchExecutionDialog(operatorDescriptor.getAlias(), jobs, model.isOpenInAppSelected(), getJDialog(),
+        appContext).process();
+  }
+
+  /**
+   * Estimates the costs of running the operator with the current inputs and parameters and shows them to the user,
+   * together with warnings if the heap or the disk space are likely not sufficient.
+   */
+  protected void onEstimate() {
+    if (!hasValidInputs()) {
+      return;
+    }
+    CostEstimator estimator = new CostEstimator(operatorDescriptor.getAlias(), parametersPanel != null
+        ? parametersPanel.getParametersMap() : new HashMap<>(), ioPanel.createSourceProductsMap());
+    File targetDir = targetProductSelector.getModel().getProductDir();
+    new ProgressMonitorSwingWorker<CostEstimator.Estimate, Object>(getJDialog(), "Estimating Costs") {
+      @Override
+      protected CostEstimator.Estimate doInBackground(ProgressMonitor pm) {
+        return estimator.estimate(targetDir, pm);
+      }
+
+      @Override
+      protected void done() {
+        try {
+          CostEstimator.Estimate estimate = get();
+          StringBuilder sb = new StringBuilder(String.format(
+              "<html>Estimated runtime: <b>%s</b> (with %d threads)<br>"
+                  + "Estimated peak memory: <b>%s</b> of %s<br>"
+                  + "Estimated output size: <b>%s</b> (uncompressed)",
+              OperatorExecution.formatDuration(estimate.runtime()), estimate.parallelism(),
+              CostEstimator.Estimate.formatBytes(estimate.memory()),
+              CostEstimator.Estimate.formatBytes(estimate.maxHeap()),
+              CostEstimator.Estimate.formatBytes(estimate.outputSize())));
+          List<String> warnings = estimate.getWarnings();
+          if (!warnings.isEmpty()) {
+            sb.append("<br><br><b>Warning:</b><ul>");
+            warnings.forEach(warning -> sb.append("<li>").append(warning).append("</li>"));
+            sb.append("</ul>");
+          }
+          Dialogs.message(getJDialog(), getTitle(), sb.toString());
+        } catch (InterruptedException e) {
+          // ignore
+        } catch (Throwable t) {
+          Dialogs.error(getTitle(), "Could not estimate the processing costs.", t.getCause());
+        }
+      }
+    }.executeWithBlocking();
+  }
+
+  private boolean canApplyBatch() {
+    if (!targetProductSelector.getModel().isSaveToFileSelected()) {
+      tabbedPane.setSelectedComponent(ioPanel);
+      Dialogs.message(getJDialog(), getTitle(), "Batch processing requires the target products to be saved.");
+      return false;
+    }
+    return hasValidInputs();
+  }
+
+  private boolean hasValidInputs() {
+    if (parametersPanel != null) {
+      ValidationResult validationResult = parametersPanel.doValidation();
+      if (!validationResult.isValid()) {
+        tabbedPane.setSelectedComponent(parametersScrollPanel);
+        Highlighter.error(validationResult.getComponent(), validationResult.getValidationMessage());
+        return false;
+      }
+    }
+    ArrayList<SourceProductSelector> selectorList = ioPanel.getSourceProductSelectorList();
+    if (selectorList.isEmpty() || selectorList.get(0).getSelectedProduct() == null) {
+      tabbedPane.setSelectedComponent(ioPanel);
+      Dialogs.message(getJDialog(), getTitle(), "Please specify a source product.");
+      return false;
+    }
+    return true;
+  }
+
   private void updateTargetProductName(Product product) {
     if (product != null) {
-      targetProductSelector.getModel().setProductName(product.getName() + "_" + productSuffix);
+      targetProductSelector.getModel().setProductName(createTargetProductName(product));
     }
   }
 
+  private String createTargetProductName(Product product) {
+    return product.getName() + "_" + productSuffix;
+  }
+
   private boolean canApply() {
     if (parametersPanel != null) {
       ValidationResult validationResult = parametersPanel.doValidation();
@@ -0,0 +1,254 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.prefs.Preferences;
+import org.eomasters.audio.Audios;
+import org.eomasters.snap.utils.AsyncProductWriter;
+import org.eomasters.snap.utils.HeapPressureGovernor;
+import org.eomasters.snap.utils.MaskAwareWriteOp;
+import org.eomasters.snap.utils.ResultCache;
+import org.eomasters.snap.utils.WriteOpSettings;
+import org.esa.snap.core.dataio.ProductIO;
+import org.esa.snap.core.dataio.ProductWriter;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.gpf.GPF;
+import org.esa.snap.core.gpf.Operator;
+import org.esa.snap.core.gpf.OperatorException;
+import org.esa.snap.core.gpf.common.WriteOp;
+import org.esa.snap.core.gpf.internal.OperatorExecutor;
+import org.esa.snap.core.gpf.internal.OperatorProductReader;
+import org.esa.snap.core.util.SystemUtils;
+import org.esa.snap.rcp.SnapApp;
+
+/**
+ * Creates the target product of an operator and writes it to a file. Shared by the single and the batch execution.
+ */
+final class OperatorExecution {
+
+  /**
+   * The system property enabling the {@link AsyncProductWriter}, which overlaps computing and writing the tile rows.
+   */
+  static final String ASYNC_WRITE_PROPERTY = "eomasters.snap.asyncWrite";
+
+  private OperatorExecution() {
+  }
+
+  /**
+   * Creates the target product of the operator.
+   *
+   * @param operatorName   the name of the operator
+   * @param parametersMap  the parameters of the operator
+   * @param sourceProducts the source products
+   * @param productName    the name of the target product
+   * @return the target product
+   * @throws OperatorException if the product could not be created
+   */
+  static Product createTargetProduct(String operatorName, Map<String, Object> parametersMap,
+      Map<String, Product> sourceProducts, String productName) {
+    Product targetProduct = GPF.createProduct(operatorName, parametersMap, sourceProducts);
+    if (targetProduct == null) {
+      throw new OperatorException("Target product could not be created.");
+    }
+    targetProduct.setName(productName);
+    return targetProduct;
+  }
+
+  /**
+   * Writes the target product to the given file. If the operator writes the product itself, it is only executed.
+   * The wall time of the writing is logged, so the {@link WriteOp} and the asynchronous path can be compared. While
+   * writing, the {@link HeapPressureGovernor} watches the heap.
+   *
+   * @param targetProduct the target product
+   * @param productFile   the output file
+   * @param formatName    the name of the output format
+   * @param pm            the progress monitor
+   */
+  static void write(Product targetProduct, File productFile, String formatName, ProgressMonitor pm) {
+    Operator operator = getSelfWritingOperator(targetProduct);
+    try (HeapPressureGovernor.Session governor = HeapPressureGovernor.getDefault().engage()) {
+      if (operator != null) {
+        OperatorExecutor.create(operator).execute(pm);
+        return;
+      }
+      boolean async = Boolean.getBoolean(ASYNC_WRITE_PROPERTY);
+      long start = System.nanoTime();
+      if (async) {
+        writeAsync(targetProduct, productFile, formatName, governor, pm);
+      } else {
+        OperatorExecutor.create(createWriteOp(targetProduct, productFile, formatName)).execute(pm);
+      }
+      SystemUtils.LOG.log(Level.INFO, String.format("Wrote %s %s in %d ms", productFile.getName(),
+          async ? "asynchronously" : "with WriteOp",
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+  }
+
+  /**
+   * Writes the target product to several outputs in one pass. Each tile is computed once and handed to the writers of
+   * all outputs. If a writer fails, the other outputs are still written, afterwards the failed outputs are reported by
+   * an {@link OperatorException}.
+   *
+   * @param targetProduct the target product
+   * @param outputs       the output files and formats
+   * @param pm            the progress monitor
+   */
+  static void write(Product targetProduct, List<Output> outputs, ProgressMonitor pm) {
+    if (outputs.size() == 1) {
+      write(targetProduct, outputs.get(0).file(), outputs.get(0).formatName(), pm);
+      return;
+    }
+    if (getSelfWritingOperator(targetProduct) != null) {
+      throw new OperatorException("The operator writes its output itself, it can not be written to several files.");
+    }
+    List<AsyncProductWriter.Target> targets = new ArrayList<>();
+    for (Output output : outputs) {
+      ProductWriter productWriter = ProductIO.getProductWriter(output.formatName());
+      if (productWriter == null) {
+        throw new OperatorException("No writer found for format '" + output.formatName() + "'.");
+      }
+      targets.add(new AsyncProductWriter.Target(productWriter, output.file()));
+    }
+    long start = System.nanoTime();
+    Map<AsyncProductWriter.Target, IOException> failures;
+    try (HeapPressureGovernor.Session governor = HeapPressureGovernor.getDefault().engage()) {
+      AsyncProductWriter asyncWriter = new AsyncProductWriter();
+      governor.addPausable(asyncWriter);
+      failures = asyncWriter.writeProduct(targetProduct, targets, pm);
+    } catch (IOException e) {
+      throw new OperatorException("Could not write " + targetProduct.getName(), e);
+    }
+    SystemUtils.LOG.log(Level.INFO, String.format("Wrote %d outputs of %s in %d ms", outputs.size() - failures.size(),
+        targetProduct.getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    if (!failures.isEmpty()) {
+      StringBuilder sb = new StringBuilder("Could not write");
+      for (Map.Entry<AsyncProductWriter.Target, IOException> failure : failures.entrySet()) {
+        sb.append(String.format("%n%s: %s", failure.getKey().file(), failure.getValue().getMessage()));
+      }
+      throw new OperatorException(sb.toString(), failures.values().iterator().next());
+    }
+  }
+
+  private static void writeAsync(Product targetProduct, File productFile, String formatName,
+      HeapPressureGovernor.Session governor, ProgressMonitor pm) {
+    ProductWriter productWriter = ProductIO.getProductWriter(formatName);
+    if (productWriter == null) {
+      throw new OperatorException("No writer found for format '" + formatName + "'.");
+    }
+    try {
+      AsyncProductWriter asyncWriter = new AsyncProductWriter(productWriter);
+      governor.addPausable(asyncWriter);
+      asyncWriter.writeProduct(targetProduct, productFile, pm);
+    } catch (IOException e) {
+      throw new OperatorException("Could not write " + productFile, e);
+    }
+  }
+
+  private static Operator getSelfWritingOperator(Product targetProduct) {
+    if (targetProduct.getProductReader() instanceof OperatorProductReader) {
+      final OperatorProductReader opReader = (OperatorProductReader) targetProduct.getProductReader();
+      Operator operator = opReader.getOperatorContext().getOperator();
+      if (operator.getSpi().getOperatorDescriptor().isAutoWriteDisabled()) {
+        return operator;
+      }
+    }
+    return null;
+  }
+
+  private static WriteOp createWriteOp(Product targetProduct, File productFile, String formatName) {
+    WriteOp writeOp = new MaskAwareWriteOp(targetProduct, productFile, formatName);
+    writeOp.setDeleteOutputOnFailure(true);
+    WriteOpSettings settings = WriteOpSettings.forProduct(targetProduct);
+    settings.applyTo(writeOp);
+    SystemUtils.LOG.log(Level.INFO, "Writing " + productFile.getName() + ": " + settings);
+    return writeOp;
+  }
+
+  /**
+   * Plays the notification sound if the user has enabled it in the preferences.
+   */
+  static void maybePlaySound() {
+    final Preferences preferences = SnapApp.getDefault().getPreferences();
+    if (preferences.getBoolean(GPF.BEEP_AFTER_PROCESSING_PROPERTY, false)) {
+      Audios.NOTIFICATION.play();
+    }
+  }
+
+  /**
+   * Formats the duration of a processing for display.
+   *
+   * @param duration the duration
+   * @return the formatted duration
+   */
+  static String formatDuration(Duration duration) {
+    return String.format("%02d:%02d:%02d (hh:mm:ss)",
+        duration.toHours(),
+        duration.toMinutesPart(),
+        duration.toSecondsPart());
+  }
+
+  /**
+   * An output file and its format.
+   *
+   * @param file       the output file
+   * @param formatName the name of the output format
+   */
+  record Output(File file, String formatName) {
+  }
+
+  /**
+   * Everything needed to create and write one target product.
+   *
+   * @param operatorName   the name of the operator
+   * @param parametersMap  the parameters of the operator
+   * @param sourceProducts the source products
+   * @param productName    the name of the target product
+   * @param productFile    the output file
+   * @param formatName     the name of the output format
+   */
+  record Request(String operatorName, Map<String, Object> parametersMap, Map<String, Product> sourceProducts,
+                 String productName, File productFile, String formatName) {
+
+    Product createTargetProduct() {
+      return OperatorExecution.createTargetProduct(operatorName, parametersMap, sourceProducts, productName);
+    }
+
+    void write(Product targetProduct, ProgressMonitor pm) {
+      OperatorExecution.write(targetProduct, productFile, formatName, pm);
+    }
+
+    String cacheKey() {
+      return ResultCache.createKey(operatorName, parametersMap, sourceProducts, formatName);
+    }
+  }
+}
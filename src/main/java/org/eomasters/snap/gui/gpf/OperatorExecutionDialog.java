@@ -29,38 +29,68 @@ import com.bc.ceres.core.ProgressMonitor;
 import com.bc.ceres.core.SubProgressMonitor;
 import com.bc.ceres.swing.progress.ProgressMonitorSwingWorker;
 import java.awt.Component;
+import java.awt.Window;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Duration;
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.prefs.Preferences;
-import org.eomasters.audio.Audios;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import org.eomasters.gui.Dialogs;
 import org.eomasters.icons.Icon;
 import org.eomasters.icons.Icons;
+import org.eomasters.snap.utils.ResultCache;
+import org.eomasters.snap.utils.ScratchProductStore;
+import org.esa.snap.core.dataio.ProductIO;
 import org.esa.snap.core.datamodel.Product;
-import org.esa.snap.core.gpf.GPF;
-import org.esa.snap.core.gpf.Operator;
+import org.esa.snap.core.datamodel.ProductManager;
 import org.esa.snap.core.gpf.OperatorCancelException;
-import org.esa.snap.core.gpf.OperatorException;
-import org.esa.snap.core.gpf.common.WriteOp;
-import org.esa.snap.core.gpf.internal.OperatorExecutor;
-import org.esa.snap.core.gpf.internal.OperatorProductReader;
 import org.esa.snap.core.gpf.ui.TargetProductSelectorModel;
-import org.esa.snap.rcp.SnapApp;
+import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.ui.AppContext;
 import org.openide.awt.NotificationDisplayer;
 
 /**
- * A dialog for executing an operator and showing the progress of the processing is the target product shall be written
- * to disk.
+ * Executes an operator as a job of the {@link OperatorJobManager} and informs the user when the job has finished. The
+ * progress is shown in the {@link OperatorJobsDialog}, so the calling dialog stays usable while the job runs. A product
+ * which is only opened in the application is not computed at this point, it is created directly and does not wait for
+ * a free slot of the job manager.
+ *
+ * <p>If the {@link ResultCache} is enabled, written results are stored in it. If the same operator has already been
+ * executed with the same parameters on the same source files, the user can open or copy the cached output instead of
+ * processing again.
+ *
+ * <p>A product which is only opened in the application can be materialized into a {@link ScratchProductStore}. It is
+ * opened right away and filled by a background job, which does not occupy a slot of the job manager. The scratch space
+ * is deleted when the product is closed.
  */
 public class OperatorExecutionDialog {
 
-  private final InternalSwingWorker internalWorker;
+  private static final int OPEN_CACHED = 0;
+  private static final int COPY_CACHED = 1;
+  private static final int PROCESS_AGAIN = 2;
+  private static final String[] CACHE_OPTIONS = {"Open Cached", "Copy to Target", "Process Again", "Cancel"};
+
+  private final String operatorName;
+  private final OperatorExecution.Request request;
+  private final boolean saveToFile;
+  private final boolean openInApp;
+  private final Component parent;
+  private final AppContext appContext;
+  private final String cacheKey;
+  private final List<OperatorExecution.Output> additionalOutputs = new ArrayList<>();
+  private boolean copiedFromCache;
+  private boolean materializeToScratch;
 
   /**
-   * Creates a new progress dialog.
+   * Creates a new execution. The settings of the target product are taken from the model when the execution is
+   * created, later changes of the model do not affect it.
    *
    * @param operatorName   the name of the operator
    * @param model          the model for the target product
@@ -72,131 +102,282 @@ public class OperatorExecutionDialog {
   public OperatorExecutionDialog(String operatorName, TargetProductSelectorModel model,
       Map<String, Product> sourceProducts,
       Map<String, Object> parametersMap, Component parent, AppContext appContext) {
-    internalWorker = new InternalSwingWorker(operatorName, model, sourceProducts, parametersMap, parent, appContext);
+    this.operatorName = operatorName;
+    this.request = new OperatorExecution.Request(operatorName, new HashMap<>(parametersMap),
+        new HashMap<>(sourceProducts), model.getProductName(),
+        model.getProductFile(), model.getFormatName());
+    this.saveToFile = model.isSaveToFileSelected();
+    this.openInApp = model.isOpenInAppSelected();
+    this.parent = parent;
+    this.appContext = appContext;
+    this.cacheKey = saveToFile && ResultCache.getDefault().isEnabled() ? request.cacheKey() : null;
   }
 
 
   /**
-   * Starts the processing of the operator.
+   * Sets whether a product which is only opened in the application is computed into a local scratch space instead of
+   * being computed lazily.
+   *
+   * @param materializeToScratch {@code true} to materialize the product
+   * @return this execution
    */
-  public void process() {
-    internalWorker.executeWithBlocking();
+  public OperatorExecutionDialog withMaterializeToScratch(boolean materializeToScratch) {
+    this.materializeToScratch = materializeToScratch && openInApp && !saveToFile;
+    return this;
   }
 
+  /**
+   * Adds an output to which the target product is written in addition to the target file of the model. All outputs
+   * are written from a single computation of the product. Has no effect if the product is not saved to a file.
+   *
+   * @param productFile the output file
+   * @param formatName  the name of the output format
+   * @return this execution
+   */
+  public OperatorExecutionDialog withAdditionalOutput(File productFile, String formatName) {
+    additionalOutputs.add(new OperatorExecution.Output(productFile, formatName));
+    return this;
+  }
 
-  private static class InternalSwingWorker extends ProgressMonitorSwingWorker<Product, Object> {
-
-    private final AppContext appContext;
-    private final String operatorName;
-    private final Map<String, Product> sourceProducts;
-    private final Map<String, Object> parametersMap;
-    private final TargetProductSelectorModel model;
-    private Duration duration;
-
-    public InternalSwingWorker(String operatorName, TargetProductSelectorModel model,
-        Map<String, Product> sourceProducts,
-        Map<String, Object> parametersMap, Component parent, AppContext appContext) {
-      super(parent, "Processing" + operatorName + "   Product");
-      this.appContext = appContext;
-      this.operatorName = operatorName;
-      this.sourceProducts = sourceProducts;
-      this.parametersMap = parametersMap;
-      this.model = model;
+  /**
+   * Queues the processing of the operator and shows the list of jobs. A product which is only opened in the
+   * application is opened right away, a materialized one is filled by a background job.
+   */
+  public void process() {
+    if (!saveToFile && !openInApp) {
+      throw new IllegalStateException("Neither save to file nor open in app is selected.");
     }
+    if (materializeToScratch) {
+      openMaterialized();
+      return;
+    } else if (!saveToFile) {
+      openLazily();
+      return;
+    }
+    OperatorJob.Work work = this::execute;
+    // the cache only holds the output of the model
+    Path cachedFile = additionalOutputs.isEmpty() ? ResultCache.getDefault().lookup(cacheKey) : null;
+    if (cachedFile != null) {
+      int choice = askForCachedResult(cachedFile);
+      if (choice == OPEN_CACHED) {
+        openCachedResult(cachedFile);
+        return;
+      } else if (choice == COPY_CACHED) {
+        copiedFromCache = true;
+        work = pm -> copyCachedResult(cachedFile, pm);
+      } else if (choice != PROCESS_AGAIN) {
+        return;
+      }
+    }
+    OperatorJobManager.getDefault().submit(createJob(work));
+    showJobs();
+  }
 
+  private OperatorJob createJob(OperatorJob.Work work) {
+    return new OperatorJob(operatorName + ": " + request.productName(), work, this::onFinished);
+  }
 
-    @Override
-    protected Product doInBackground(ProgressMonitor pm) {
-      pm.beginTask("Processing...", 100);
-
-      Instant startTime = Instant.now();
-      Product targetProduct;
-      try {
-        targetProduct = GPF.createProduct(operatorName, parametersMap, sourceProducts);
-        if (targetProduct == null) {
-          throw new OperatorException("Target product could not be created.");
-        }
-
-        targetProduct.setName(model.getProductName());
-
-        if (model.isSaveToFileSelected()) {
-          Operator executionOperator = createExecutionOperator(targetProduct);
-          final OperatorExecutor executor = OperatorExecutor.create(executionOperator);
-          executor.execute(SubProgressMonitor.create(pm, 100));
-        }
+  private void showJobs() {
+    Window window = parent instanceof Window ? (Window) parent : SwingUtilities.getWindowAncestor(parent);
+    OperatorJobsDialog.showJobs(window);
+  }
 
-        duration = Duration.between(startTime, Instant.now());
-      } finally {
-        pm.done();
+  private void openLazily() {
+    new ProgressMonitorSwingWorker<Product, Object>(parent, operatorName) {
+      @Override
+      protected Product doInBackground(ProgressMonitor pm) {
+        return request.createTargetProduct();
       }
-      return targetProduct;
-    }
 
-    @Override
-    protected void done() {
-      try {
-        final Product product = get();
-        if (model.isSaveToFileSelected()) {
-          maybePlaySound();
-          if (model.isOpenInAppSelected()) {
-            appContext.getProductManager().addProduct(product);
-          }
-          Path productFile = model.getProductFile().toPath();
-          final String message = String.format(
-              "<html>Processing completed in <b>%s</b>.<br>"
-                  + "Product has been written to<br><b>%s</b>",
-              formatDuration(duration), productFile);
-          Dialogs.message(null, operatorName, message);
-        } else if (model.isOpenInAppSelected()) {
+      @Override
+      protected void done() {
+        try {
+          Product product = get();
           appContext.getProductManager().addProduct(product);
           NotificationDisplayer.getDefault().notify(operatorName,
               Icons.INFO.getImageIcon(Icon.SIZE_24),
               String.format(
                   "Product '%s' has been opened in %s. The actual processing is deferred until the data is requested.",
                   product.getName(), appContext.getApplicationName()), null, NORMAL);
-        } else {
-          throw new IllegalStateException("Neither save to file nor open in app is selected.");
-        }
-      } catch (InterruptedException e) {
-        // ignore
-      } catch (Throwable t) {
-        if (t.getCause() instanceof OperatorCancelException) {
-          Dialogs.message(null, operatorName, "Processing cancelled.");
-        } else {
-          Dialogs.error(operatorName, "Error during processing.", t.getCause());
+        } catch (InterruptedException e) {
+          // ignore
+        } catch (ExecutionException e) {
+          Dialogs.error(operatorName, "Error during processing.", e.getCause());
         }
       }
+    }.execute();
+  }
+
+  private Product execute(ProgressMonitor pm) throws IOException {
+    pm.beginTask("Processing...", 100);
+    try {
+      Product targetProduct = request.createTargetProduct();
+      if (saveToFile && !additionalOutputs.isEmpty()) {
+        List<OperatorExecution.Output> outputs = new ArrayList<>();
+        outputs.add(new OperatorExecution.Output(request.productFile(), request.formatName()));
+        outputs.addAll(additionalOutputs);
+        OperatorExecution.write(targetProduct, outputs, SubProgressMonitor.create(pm, 100));
+        storeInCache();
+      } else if (saveToFile) {
+        request.write(targetProduct, SubProgressMonitor.create(pm, 100));
+        storeInCache();
+      }
+      return targetProduct;
+    } finally {
+      pm.done();
     }
+  }
+
+  private void openMaterialized() {
+    new ProgressMonitorSwingWorker<Product, Object>(parent, operatorName) {
+      private ScratchProductStore store;
+
+      @Override
+      protected Product doInBackground(ProgressMonitor pm) throws IOException {
+        Product targetProduct = request.createTargetProduct();
+        store = ScratchProductStore.materialize(targetProduct);
+        return targetProduct;
+      }
+
+      @Override
+      protected void done() {
+        try {
+          Product product = get();
+          addMaterialized(product, store);
+          OperatorJobManager.getDefault().submitBackground(createJob(pm -> {
+            store.fill(pm);
+            return product;
+          }));
+          showJobs();
+        } catch (InterruptedException e) {
+          // ignore
+        } catch (ExecutionException e) {
+          Dialogs.error(operatorName, "Error during processing.", e.getCause());
+        }
+      }
+    }.execute();
+  }
 
-    private static void maybePlaySound() {
-      final Preferences preferences = SnapApp.getDefault().getPreferences();
-      if (preferences.getBoolean(GPF.BEEP_AFTER_PROCESSING_PROPERTY, false)) {
-        Audios.NOTIFICATION.play();
+  private void addMaterialized(Product product, ScratchProductStore store) {
+    ProductManager productManager = appContext.getProductManager();
+    productManager.addListener(new ProductManager.Listener() {
+      @Override
+      public void productAdded(ProductManager.Event event) {
       }
+
+      @Override
+      public void productRemoved(ProductManager.Event event) {
+        if (event.getProduct() == product) {
+          productManager.removeListener(this);
+          store.dispose();
+        }
+      }
+    });
+    productManager.addProduct(product);
+  }
+
+  private void storeInCache() {
+    Path productFile = request.productFile().toPath();
+    if (cacheKey == null || !Files.exists(productFile)) {
+      return;
+    }
+    try {
+      ResultCache.getDefault().store(cacheKey, productFile);
+    } catch (IOException e) {
+      SystemUtils.LOG.log(Level.WARNING, "Could not store " + productFile.getFileName() + " in the result cache", e);
     }
+  }
 
-    private String formatDuration(Duration duration) {
-      return String.format("%02d:%02d:%02d (hh:mm:ss)",
-          duration.toHours(),
-          duration.toMinutesPart(),
-          duration.toSecondsPart());
+  private int askForCachedResult(Path cachedFile) {
+    String message = String.format("<html>The result of this processing is already available in the cache:<br>"
+        + "<b>%s</b><br><br>Do you want to open it, copy it to the target file or process again?", cachedFile);
+    return JOptionPane.showOptionDialog(parent, message, operatorName, JOptionPane.DEFAULT_OPTION,
+        JOptionPane.QUESTION_MESSAGE, null, CACHE_OPTIONS, CACHE_OPTIONS[OPEN_CACHED]);
+  }
+
+  private void openCachedResult(Path cachedFile) {
+    // the product is read from the cache directory, so it must not be evicted while it is open
+    ResultCache cache = ResultCache.getDefault();
+    cache.pin(cacheKey);
+    try {
+      Product product = ProductIO.readProduct(cachedFile.toFile());
+      if (product == null) {
+        throw new IOException("No reader found for " + cachedFile);
+      }
+      ProductManager productManager = appContext.getProductManager();
+      productManager.addListener(new ProductManager.Listener() {
+        @Override
+        public void productAdded(ProductManager.Event event) {
+        }
+
+        @Override
+        public void productRemoved(ProductManager.Event event) {
+          if (event.getProduct() == product) {
+            productManager.removeListener(this);
+            cache.unpin(cacheKey);
+          }
+        }
+      });
+      productManager.addProduct(product);
+    } catch (IOException e) {
+      cache.unpin(cacheKey);
+      Dialogs.error(operatorName, "Could not open the cached result.", e);
     }
+  }
 
+  private Product copyCachedResult(Path cachedFile, ProgressMonitor pm) throws IOException {
+    ResultCache cache = ResultCache.getDefault();
+    cache.pin(cacheKey);
+    try {
+      ResultCache.copyOutput(cachedFile, request.productFile().toPath(), request.formatName(), pm);
+      return openInApp ? ProductIO.readProduct(request.productFile()) : null;
+    } finally {
+      cache.unpin(cacheKey);
+    }
+  }
 
-    private Operator createExecutionOperator(Product targetProduct) {
-      if (targetProduct.getProductReader() instanceof OperatorProductReader) {
-        final OperatorProductReader opReader = (OperatorProductReader) targetProduct.getProductReader();
-        Operator operator = opReader.getOperatorContext().getOperator();
-        if (operator.getSpi().getOperatorDescriptor().isAutoWriteDisabled()) {
-          return operator;
+  private void onFinished(OperatorJob job) {
+    switch (job.getState()) {
+      case SUCCEEDED:
+        onSuccess(job);
+        break;
+      case CANCELLED:
+        Dialogs.message(null, operatorName, "Processing cancelled.");
+        break;
+      default:
+        if (job.getError() instanceof OperatorCancelException) {
+          Dialogs.message(null, operatorName, "Processing cancelled.");
+        } else {
+          Dialogs.error(operatorName, "Error during processing.", job.getError());
         }
-      }
-      WriteOp writeOp = new WriteOp(targetProduct, model.getProductFile(), model.getFormatName());
-      writeOp.setDeleteOutputOnFailure(true);
-      writeOp.setWriteEntireTileRows(true);
-      writeOp.setClearCacheAfterRowWrite(false);
-      return writeOp;
     }
+  }
 
+  private void onSuccess(OperatorJob job) {
+    final Product product = job.getResult();
+    if (saveToFile) {
+      OperatorExecution.maybePlaySound();
+      if (openInApp && product != null) {
+        appContext.getProductManager().addProduct(product);
+      } else if (product != null) {
+        // the product has been written and is not used anymore
+        product.dispose();
+      }
+      StringBuilder productFiles = new StringBuilder(request.productFile().toPath().toString());
+      for (OperatorExecution.Output output : additionalOutputs) {
+        productFiles.append("<br>").append(output.file().toPath());
+      }
+      final String message = String.format(
+          "<html>%s in <b>%s</b>.<br>"
+              + "Product has been written to<br><b>%s</b>",
+          copiedFromCache ? "Cached result copied" : "Processing completed",
+          OperatorExecution.formatDuration(job.getDuration()), productFiles);
+      Dialogs.message(null, operatorName, message);
+    } else if (materializeToScratch) {
+      NotificationDisplayer.getDefault().notify(operatorName,
+          Icons.INFO.getImageIcon(Icon.SIZE_24),
+          String.format("Product '%s' has been computed into the local scratch space in %s.", product.getName(),
+              OperatorExecution.formatDuration(job.getDuration())), null, NORMAL);
+    }
   }
 }
@@ -0,0 +1,289 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Consumer;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.gpf.OperatorCancelException;
+
+/**
+ * An operator execution which runs in the background, managed by the {@link OperatorJobManager}.
+ */
+public class OperatorJob {
+
+  /**
+   * The state of a job.
+   */
+  public enum State {
+    QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+    /**
+     * Tells whether the job has finished, successfully or not.
+     *
+     * @return {@code true} if the job will not change anymore
+     */
+    public boolean isFinished() {
+      return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+  }
+
+  /**
+   * The work done by a job.
+   */
+  @FunctionalInterface
+  public interface Work {
+
+    /**
+     * Executes the work.
+     *
+     * @param pm the progress monitor, which also tells whether the job has been cancelled
+     * @return the resulting product
+     * @throws Exception if the work fails
+     */
+    Product execute(ProgressMonitor pm) throws Exception;
+  }
+
+  private final String name;
+  private final Work work;
+  private final Consumer<OperatorJob> finishHandler;
+  private final JobProgressMonitor progressMonitor = new JobProgressMonitor();
+  private volatile int priority;
+  private volatile State state = State.QUEUED;
+  private volatile Product result;
+  private volatile Throwable error;
+  private volatile Instant startTime;
+  private volatile Instant endTime;
+
+  /**
+   * Creates a new job with the default priority 0.
+   *
+   * @param name          the name of the job shown to the user
+   * @param work          the work of the job
+   * @param finishHandler called on the event dispatch thread when the job has finished, may be {@code null}
+   */
+  public OperatorJob(String name, Work work, Consumer<OperatorJob> finishHandler) {
+    this.name = name;
+    this.work = work;
+    this.finishHandler = finishHandler;
+  }
+
+  /**
+   * Returns the name of the job.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the priority. Jobs with a higher priority are started first.
+   *
+   * @return the priority
+   */
+  public int getPriority() {
+    return priority;
+  }
+
+  void setPriority(int priority) {
+    this.priority = priority;
+  }
+
+  /**
+   * Returns the current state.
+   *
+   * @return the state
+   */
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * Returns the progress of a running job.
+   *
+   * @return the progress between 0 and 1
+   */
+  public double getProgress() {
+    return state == State.SUCCEEDED ? 1.0 : progressMonitor.getProgress();
+  }
+
+  /**
+   * Returns the name of the current task, as reported by the work.
+   *
+   * @return the task name, may be {@code null}
+   */
+  public String getTaskName() {
+    return progressMonitor.getTaskName();
+  }
+
+  /**
+   * Returns the product created by the job. The product is only available until the finish handler has been called.
+   *
+   * @return the product, or {@code null} if the job has not succeeded or the product has been released
+   */
+  public Product getResult() {
+    return result;
+  }
+
+  void releaseResult() {
+    result = null;
+  }
+
+  /**
+   * Returns the error of a failed job.
+   *
+   * @return the error, or {@code null} if the job has not failed
+   */
+  public Throwable getError() {
+    return error;
+  }
+
+  /**
+   * Returns how long the job has been running.
+   *
+   * @return the duration, zero if the job has not yet started
+   */
+  public Duration getDuration() {
+    Instant start = startTime;
+    if (start == null) {
+      return Duration.ZERO;
+    }
+    Instant end = endTime;
+    return Duration.between(start, end != null ? end : Instant.now());
+  }
+
+  Consumer<OperatorJob> getFinishHandler() {
+    return finishHandler;
+  }
+
+  /**
+   * Marks a queued job as cancelled or asks a running job to stop.
+   *
+   * @return {@code true} if a queued job has been cancelled immediately
+   */
+  synchronized boolean cancel() {
+    if (state == State.QUEUED) {
+      state = State.CANCELLED;
+      return true;
+    }
+    progressMonitor.setCanceled(true);
+    return false;
+  }
+
+  /**
+   * Runs the work of the job in the calling thread.
+   *
+   * @return {@code false} if the job has been cancelled before it was started
+   */
+  boolean run() {
+    synchronized (this) {
+      if (state != State.QUEUED) {
+        return false;
+      }
+      state = State.RUNNING;
+      startTime = Instant.now();
+    }
+    try {
+      result = work.execute(progressMonitor);
+      state = progressMonitor.isCanceled() ? State.CANCELLED : State.SUCCEEDED;
+    } catch (OperatorCancelException e) {
+      state = State.CANCELLED;
+    } catch (Throwable t) {
+      error = t;
+      state = progressMonitor.isCanceled() ? State.CANCELLED : State.FAILED;
+    } finally {
+      endTime = Instant.now();
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return name + " [" + state + "]";
+  }
+
+  private static class JobProgressMonitor implements ProgressMonitor {
+
+    private volatile double totalWork;
+    private volatile double worked;
+    private volatile String taskName;
+    private volatile boolean canceled;
+
+    @Override
+    public void beginTask(String taskName, int totalWork) {
+      this.taskName = taskName;
+      this.totalWork = totalWork;
+      this.worked = 0;
+    }
+
+    @Override
+    public void done() {
+      worked = totalWork;
+    }
+
+    @Override
+    public void internalWorked(double work) {
+      synchronized (this) {
+        worked = Math.min(totalWork, worked + work);
+      }
+    }
+
+    @Override
+    public boolean isCanceled() {
+      return canceled;
+    }
+
+    @Override
+    public void setCanceled(boolean canceled) {
+      this.canceled = canceled;
+    }
+
+    @Override
+    public void setTaskName(String taskName) {
+      this.taskName = taskName;
+    }
+
+    @Override
+    public void setSubTaskName(String subTaskName) {
+      // only the task name is shown
+    }
+
+    @Override
+    public void worked(int work) {
+      internalWorked(work);
+    }
+
+    double getProgress() {
+      double total = totalWork;
+      return total > 0 ? worked / total : 0;
+    }
+
+    String getTaskName() {
+      return taskName;
+    }
+  }
+}
@@ -0,0 +1,343 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import javax.swing.SwingUtilities;
+import org.esa.snap.core.util.SystemUtils;
+
+/**
+ * Executes {@link OperatorJob}s in the background. Jobs wait in a queue ordered by their priority until one of the
+ * execution slots is free. The order of the queue can be changed by the user as long as the jobs have not started.
+ * The result of a finished job is only available to its finish handler, afterwards the job releases it.
+ *
+ * <p>Jobs submitted by {@link #submitBackground(OperatorJob)} start right away and do not occupy a slot.
+ *
+ * <p>The number of slots is taken from the system property {@value #MAX_CONCURRENT_JOBS_PROPERTY} and defaults to 1,
+ * because each job already computes its tiles in parallel.
+ */
+public class OperatorJobManager {
+
+  /**
+   * The system property defining the number of jobs executed at the same time by the default manager.
+   */
+  public static final String MAX_CONCURRENT_JOBS_PROPERTY = "eomasters.snap.jobs.maxConcurrent";
+
+  private static OperatorJobManager defaultInstance;
+
+  private final List<OperatorJob> queuedJobs = new ArrayList<>();
+  private final List<OperatorJob> runningJobs = new ArrayList<>();
+  private final List<OperatorJob> finishedJobs = new ArrayList<>();
+  private final List<OperatorJob> backgroundJobs = new ArrayList<>();
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  private final ExecutorService executor;
+  private int maxConcurrentJobs;
+
+  /**
+   * Creates a new job manager.
+   *
+   * @param maxConcurrentJobs the number of jobs executed at the same time
+   */
+  public OperatorJobManager(int maxConcurrentJobs) {
+    setMaxConcurrentJobs(maxConcurrentJobs);
+    AtomicInteger threadCount = new AtomicInteger();
+    executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "eom-operator-job-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Returns the job manager shared by the operator dialogs.
+   *
+   * @return the default job manager
+   */
+  public static synchronized OperatorJobManager getDefault() {
+    if (defaultInstance == null) {
+      defaultInstance = new OperatorJobManager(Integer.getInteger(MAX_CONCURRENT_JOBS_PROPERTY, 1));
+    }
+    return defaultInstance;
+  }
+
+  /**
+   * Sets the number of jobs executed at the same time. Already running jobs are not affected if the number is
+   * reduced.
+   *
+   * @param maxConcurrentJobs the number of jobs, at least 1
+   */
+  public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+    if (maxConcurrentJobs < 1) {
+      throw new IllegalArgumentException("At least one concurrent job is required, but got " + maxConcurrentJobs);
+    }
+    synchronized (this) {
+      this.maxConcurrentJobs = maxConcurrentJobs;
+    }
+    dispatch();
+  }
+
+  /**
+   * Returns the number of jobs executed at the same time.
+   *
+   * @return the number of jobs
+   */
+  public synchronized int getMaxConcurrentJobs() {
+    return maxConcurrentJobs;
+  }
+
+  /**
+   * Adds a job to the queue. It is placed behind all queued jobs with the same or a higher priority.
+   *
+   * @param job the job
+   */
+  public void submit(OperatorJob job) {
+    synchronized (this) {
+      if (job.getState() != OperatorJob.State.QUEUED || contains(job)) {
+        throw new IllegalStateException("The job '" + job.getName() + "' has already been submitted.");
+      }
+      queuedJobs.add(findInsertionIndex(job.getPriority()), job);
+    }
+    fireJobChanged(job);
+    dispatch();
+  }
+
+  /**
+   * Starts a job right away, without waiting for and without occupying one of the slots. This is meant for work which
+   * runs for a long time but must not hold back the queued jobs, like filling a scratch store of an opened product.
+   *
+   * @param job the job
+   */
+  public void submitBackground(OperatorJob job) {
+    synchronized (this) {
+      if (job.getState() != OperatorJob.State.QUEUED || contains(job)) {
+        throw new IllegalStateException("The job '" + job.getName() + "' has already been submitted.");
+      }
+      runningJobs.add(job);
+      backgroundJobs.add(job);
+    }
+    executor.execute(() -> execute(job));
+  }
+
+  /**
+   * Returns all jobs known to the manager, the running jobs first, followed by the queued ones in the order they will
+   * be started and the finished jobs.
+   *
+   * @return a snapshot of the jobs
+   */
+  public synchronized List<OperatorJob> getJobs() {
+    List<OperatorJob> jobs = new ArrayList<>(runningJobs);
+    jobs.addAll(queuedJobs);
+    jobs.addAll(finishedJobs);
+    return jobs;
+  }
+
+  /**
+   * Changes the priority of a queued job and moves it accordingly.
+   *
+   * @param job      the job
+   * @param priority the new priority
+   */
+  public void setPriority(OperatorJob job, int priority) {
+    synchronized (this) {
+      if (!queuedJobs.remove(job)) {
+        return;
+      }
+      job.setPriority(priority);
+      queuedJobs.add(findInsertionIndex(priority), job);
+    }
+    fireJobChanged(job);
+  }
+
+  /**
+   * Moves a queued job one position towards the head of the queue. It takes over the priority of the job it passes.
+   *
+   * @param job the job
+   */
+  public void moveUp(OperatorJob job) {
+    move(job, -1);
+  }
+
+  /**
+   * Moves a queued job one position towards the end of the queue. It takes over the priority of the job it passes.
+   *
+   * @param job the job
+   */
+  public void moveDown(OperatorJob job) {
+    move(job, 1);
+  }
+
+  /**
+   * Cancels the job. A queued job is removed from the queue, a running job is asked to stop.
+   *
+   * @param job the job
+   */
+  public void cancel(OperatorJob job) {
+    boolean removed;
+    synchronized (this) {
+      removed = job.cancel() && queuedJobs.remove(job);
+      if (removed) {
+        finishedJobs.add(job);
+      }
+    }
+    if (removed) {
+      fireJobChanged(job);
+      notifyFinished(job);
+    }
+  }
+
+  /**
+   * Removes all finished jobs from the list of jobs.
+   */
+  public void removeFinishedJobs() {
+    List<OperatorJob> removed;
+    synchronized (this) {
+      removed = new ArrayList<>(finishedJobs);
+      finishedJobs.clear();
+    }
+    removed.forEach(this::fireJobChanged);
+  }
+
+  /**
+   * Adds a listener which is informed on the event dispatch thread when a job changes its state or position.
+   *
+   * @param listener the listener
+   */
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a listener.
+   *
+   * @param listener the listener
+   */
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  private void move(OperatorJob job, int offset) {
+    synchronized (this) {
+      int index = queuedJobs.indexOf(job);
+      int newIndex = index + offset;
+      if (index < 0 || newIndex < 0 || newIndex >= queuedJobs.size()) {
+        return;
+      }
+      OperatorJob passed = queuedJobs.get(newIndex);
+      // keep the queue ordered by priority
+      job.setPriority(passed.getPriority());
+      queuedJobs.set(newIndex, job);
+      queuedJobs.set(index, passed);
+    }
+    fireJobChanged(job);
+  }
+
+  private boolean contains(OperatorJob job) {
+    return queuedJobs.contains(job) || runningJobs.contains(job) || finishedJobs.contains(job);
+  }
+
+  private int findInsertionIndex(int priority) {
+    int index = 0;
+    while (index < queuedJobs.size() && queuedJobs.get(index).getPriority() >= priority) {
+      index++;
+    }
+    return index;
+  }
+
+  private void dispatch() {
+    List<OperatorJob> started = new ArrayList<>();
+    synchronized (this) {
+      while (runningJobs.size() - backgroundJobs.size() < maxConcurrentJobs && !queuedJobs.isEmpty()) {
+        OperatorJob job = queuedJobs.remove(0);
+        runningJobs.add(job);
+        started.add(job);
+      }
+    }
+    for (OperatorJob job : started) {
+      executor.execute(() -> execute(job));
+    }
+  }
+
+  private void execute(OperatorJob job) {
+    fireJobChanged(job);
+    try {
+      job.run();
+    } catch (Throwable t) {
+      SystemUtils.LOG.log(Level.SEVERE, "Unexpected error in job " + job.getName(), t);
+    } finally {
+      synchronized (this) {
+        runningJobs.remove(job);
+        backgroundJobs.remove(job);
+        finishedJobs.add(job);
+      }
+      fireJobChanged(job);
+      notifyFinished(job);
+      dispatch();
+    }
+  }
+
+  private void notifyFinished(OperatorJob job) {
+    // finished jobs stay in the list, so they must not keep the product alive after the handler took it over
+    if (job.getFinishHandler() == null) {
+      job.releaseResult();
+      return;
+    }
+    SwingUtilities.invokeLater(() -> {
+      try {
+        job.getFinishHandler().accept(job);
+      } finally {
+        job.releaseResult();
+      }
+    });
+  }
+
+  private void fireJobChanged(OperatorJob job) {
+    if (listeners.isEmpty()) {
+      return;
+    }
+    SwingUtilities.invokeLater(() -> {
+      for (Listener listener : listeners) {
+        listener.jobChanged(job);
+      }
+    });
+  }
+
+  /**
+   * Informed about changes of the jobs.
+   */
+  public interface Listener {
+
+    /**
+     * Called when a job has been added, started, moved, finished or removed.
+     *
+     * @param job the changed job
+     */
+    void jobChanged(OperatorJob job);
+  }
+}
@@ -0,0 +1,212 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Window;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableCellRenderer;
+import net.miginfocom.swing.MigLayout;
+import org.esa.snap.ui.ModelessDialog;
+
+/**
+ * A dialog listing the jobs of an {@link OperatorJobManager}. Queued jobs can be reordered and jobs can be cancelled.
+ */
+public class OperatorJobsDialog extends ModelessDialog {
+
+  private static OperatorJobsDialog instance;
+
+  private final OperatorJobManager jobManager;
+  private final JobTableModel tableModel;
+  private final Timer refreshTimer;
+  private final OperatorJobManager.Listener managerListener;
+  private JTable jobTable;
+
+  /**
+   * Creates a new dialog for the given job manager.
+   *
+   * @param parent     the parent window
+   * @param jobManager the job manager
+   */
+  public OperatorJobsDialog(Window parent, OperatorJobManager jobManager) {
+    super(parent, "Processing Jobs", ID_CLOSE, null);
+    this.jobManager = jobManager;
+    tableModel = new JobTableModel();
+    // the progress of running jobs is not pushed, therefore it is polled
+    refreshTimer = new Timer(500, e -> tableModel.refresh());
+    managerListener = job -> tableModel.refresh();
+  }
+
+  /**
+   * Shows the dialog of the default job manager. If it is already shown, it is brought to the front.
+   *
+   * @param parent the parent window
+   */
+  public static void showJobs(Window parent) {
+    if (instance == null) {
+      instance = new OperatorJobsDialog(parent, OperatorJobManager.getDefault());
+    }
+    if (instance.getJDialog().isVisible()) {
+      instance.getJDialog().toFront();
+    } else {
+      instance.show();
+    }
+  }
+
+  @Override
+  public int show() {
+    setContent(createContentPanel());
+    jobManager.addListener(managerListener);
+    tableModel.refresh();
+    refreshTimer.start();
+    return super.show();
+  }
+
+  @Override
+  public void hide() {
+    refreshTimer.stop();
+    jobManager.removeListener(managerListener);
+    super.hide();
+  }
+
+  private JPanel createContentPanel() {
+    jobTable = new JTable(tableModel);
+    jobTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    jobTable.setShowVerticalLines(false);
+    jobTable.getColumnModel().getColumn(3).setCellRenderer(new ProgressRenderer());
+    JScrollPane scrollPane = new JScrollPane(jobTable);
+    scrollPane.setPreferredSize(new Dimension(600, 200));
+
+    JButton upButton = new JButton("Move Up");
+    upButton.addActionListener(e -> withSelectedJob(jobManager::moveUp));
+    JButton downButton = new JButton("Move Down");
+    downButton.addActionListener(e -> withSelectedJob(jobManager::moveDown));
+    JButton cancelButton = new JButton("Cancel Job");
+    cancelButton.addActionListener(e -> withSelectedJob(jobManager::cancel));
+    JButton clearButton = new JButton("Remove Finished");
+    clearButton.addActionListener(e -> jobManager.removeFinishedJobs());
+    JPanel buttonPanel = new JPanel(new MigLayout("top, left, flowx, gap 5"));
+    buttonPanel.add(upButton);
+    buttonPanel.add(downButton);
+    buttonPanel.add(cancelButton);
+    buttonPanel.add(clearButton);
+
+    JPanel panel = new JPanel(new BorderLayout(5, 5));
+    panel.add(scrollPane, BorderLayout.CENTER);
+    panel.add(buttonPanel, BorderLayout.SOUTH);
+    return panel;
+  }
+
+  private void withSelectedJob(Consumer<OperatorJob> action) {
+    int row = jobTable.getSelectedRow();
+    if (row >= 0) {
+      action.accept(tableModel.getJob(row));
+      tableModel.refresh();
+    }
+  }
+
+  private class JobTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMN_NAMES = {"Job", "Priority", "State", "Progress", "Duration"};
+
+    private List<OperatorJob> jobs = List.of();
+
+    void refresh() {
+      int selectedRow = jobTable != null ? jobTable.getSelectedRow() : -1;
+      OperatorJob selected = selectedRow >= 0 ? getJob(selectedRow) : null;
+      jobs = jobManager.getJobs();
+      fireTableDataChanged();
+      // keep the selection on the same job, its row may have changed
+      int row = jobs.indexOf(selected);
+      if (row >= 0) {
+        jobTable.getSelectionModel().setSelectionInterval(row, row);
+      }
+    }
+
+    OperatorJob getJob(int row) {
+      return jobs.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+      return jobs.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+      return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+      OperatorJob job = jobs.get(rowIndex);
+      switch (columnIndex) {
+        case 0:
+          return job.getName();
+        case 1:
+          return job.getPriority();
+        case 2:
+          return job.getState();
+        case 3:
+          return job.getProgress();
+        case 4:
+          return OperatorExecution.formatDuration(job.getDuration());
+        default:
+          throw new IllegalArgumentException("Invalid column index: " + columnIndex);
+      }
+    }
+  }
+
+  private static class ProgressRenderer implements TableCellRenderer {
+
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+
+    ProgressRenderer() {
+      progressBar.setStringPainted(true);
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus,
+        int row, int column) {
+      progressBar.setValue((int) Math.round((Double) value * 100));
+      return progressBar;
+    }
+  }
+}
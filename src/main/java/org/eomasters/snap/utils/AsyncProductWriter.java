@@ -0,0 +1,602 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import com.bc.ceres.core.ProgressMonitor;
+import com.sun.media.jai.util.SunTileCache;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import javax.media.jai.JAI;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.TileCache;
+import org.esa.snap.core.dataio.ProductWriter;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.gpf.OperatorCancelException;
+import org.esa.snap.core.util.SystemUtils;
+
+/**
+ * Writes a product with computation and writing overlapping. The calling thread computes the tile rows of the bands,
+ * the tiles of a row in parallel by the tile scheduler of JAI, and puts them into a queue. A dedicated thread takes
+ * the rows from the queue and passes them to the {@link ProductWriter}. If the writer falls behind and the rows in
+ * the queue reach the memory budget, the computation waits until the writer has caught up.
+ *
+ * <p>The memory budget defaults to the value of the system property {@value #MEMORY_BUDGET_PROPERTY} in megabytes,
+ * or 256 MB if the property is not set. At least one row is always allowed in the queue, so a row larger than the
+ * budget does not block forever.
+ *
+ * <p>The tiles can be computed in a locality-preserving {@link TileOrder} instead of row by row. The tiles of a
+ * stripe of several tile rows are then computed along the curve, and the rows of the stripe are handed to the writer
+ * in order once the stripe is complete. The order and the height of the stripes default to the system properties
+ * {@value #TILE_ORDER_PROPERTY} and {@value #STRIPE_ROWS_PROPERTY}. The hits and misses of the JAI tile cache during
+ * the writing are logged, so the orders can be compared.
+ *
+ * <p>The product can be written to several {@link Target}s in one pass. Each tile row is computed once and queued for
+ * the writers of all targets, so e.g. an archive and a delivery format are produced from a single computation.
+ *
+ * <p>The writer can be paused, e.g. by the {@link HeapPressureGovernor}. The computation of further rows then waits
+ * while the rows already queued are still written, which frees their memory.
+ */
+public class AsyncProductWriter implements HeapPressureGovernor.Pausable {
+
+  /**
+   * The system property defining the default memory budget of the queue in megabytes.
+   */
+  public static final String MEMORY_BUDGET_PROPERTY = "eomasters.snap.asyncWriter.memoryBudget";
+
+  /**
+   * The system property defining the default {@link TileOrder}, e.g. {@code HILBERT}.
+   */
+  public static final String TILE_ORDER_PROPERTY = "eomasters.snap.asyncWriter.tileOrder";
+
+  /**
+   * The system property defining the default number of tile rows computed together if the order is not row-major.
+   */
+  public static final String STRIPE_ROWS_PROPERTY = "eomasters.snap.asyncWriter.stripeRows";
+
+  private static final long DEFAULT_MEMORY_BUDGET_MB = 256;
+  private static final int DEFAULT_STRIPE_ROWS = 4;
+  private static final long POLL_INTERVAL_MS = 100;
+  private static final int PROGRESS_TICKS = 1000;
+
+  private final ProductWriter writer;
+  private long memoryBudget;
+  private TileOrder tileOrder;
+  private int stripeRows;
+  private long cacheHits;
+  private long cacheMisses;
+  private final AtomicLong computeNanos = new AtomicLong();
+  private final AtomicLong writeNanos = new AtomicLong();
+  private final AtomicLong stallNanos = new AtomicLong();
+  private volatile boolean paused;
+
+  /**
+   * A product writer and the file it writes to.
+   *
+   * @param writer the product writer which encodes the data
+   * @param file   the output file
+   */
+  public record Target(ProductWriter writer, File file) {
+  }
+
+  /**
+   * Creates a new asynchronous writer for several targets, see {@link #writeProduct(Product, List, ProgressMonitor)}.
+   */
+  public AsyncProductWriter() {
+    this(null);
+  }
+
+  /**
+   * Creates a new asynchronous writer.
+   *
+   * @param writer the product writer which encodes the data
+   */
+  public AsyncProductWriter(ProductWriter writer) {
+    this.writer = writer;
+    this.memoryBudget = Long.getLong(MEMORY_BUDGET_PROPERTY, DEFAULT_MEMORY_BUDGET_MB) * 1024 * 1024;
+    this.tileOrder = TileOrder.valueOf(System.getProperty(TILE_ORDER_PROPERTY, TileOrder.ROW_MAJOR.name()));
+    this.stripeRows = tileOrder == TileOrder.ROW_MAJOR ? 1 : Integer.getInteger(STRIPE_ROWS_PROPERTY,
+        DEFAULT_STRIPE_ROWS);
+  }
+
+  /**
+   * Sets the maximum number of bytes held by the rows waiting to be written.
+   *
+   * @param bytes the memory budget in bytes
+   * @return this writer
+   */
+  public AsyncProductWriter withMemoryBudget(long bytes) {
+    if (bytes <= 0) {
+      throw new IllegalArgumentException("The memory budget must be positive, but is " + bytes);
+    }
+    this.memoryBudget = bytes;
+    return this;
+  }
+
+  /**
+   * Sets the order in which the tiles are computed.
+   *
+   * @param order      the tile order
+   * @param stripeRows the number of tile rows computed together along the order
+   * @return this writer
+   */
+  public AsyncProductWriter withTileOrder(TileOrder order, int stripeRows) {
+    if (stripeRows < 1) {
+      throw new IllegalArgumentException("A stripe needs at least one tile row, but got " + stripeRows);
+    }
+    this.tileOrder = order;
+    this.stripeRows = stripeRows;
+    return this;
+  }
+
+  /**
+   * Returns the number of tile requests answered by the JAI tile cache during the last write.
+   *
+   * @return the cache hits, 0 if the cache does not count them
+   */
+  public long getCacheHits() {
+    return cacheHits;
+  }
+
+  /**
+   * Returns the number of tile requests not answered by the JAI tile cache during the last write.
+   *
+   * @return the cache misses, 0 if the cache does not count them
+   */
+  public long getCacheMisses() {
+    return cacheMisses;
+  }
+
+  /**
+   * Returns the time spent on computing the tile rows during the last write.
+   *
+   * @return the compute time
+   */
+  public Duration getComputeTime() {
+    return Duration.ofNanos(computeNanos.get());
+  }
+
+  /**
+   * Returns the time spent by the writer thread on writing during the last write.
+   *
+   * @return the write time
+   */
+  public Duration getWriteTime() {
+    return Duration.ofNanos(writeNanos.get());
+  }
+
+  /**
+   * Returns the time the computation waited because the memory budget was exhausted during the last write.
+   *
+   * @return the stall time
+   */
+  public Duration getStallTime() {
+    return Duration.ofNanos(stallNanos.get());
+  }
+
+  /**
+   * Pauses the computation of further rows. The rows already queued are still written.
+   */
+  @Override
+  public void pause() {
+    paused = true;
+  }
+
+  /**
+   * Resumes the computation of rows.
+   */
+  @Override
+  public void resume() {
+    paused = false;
+  }
+
+  /**
+   * Writes the product to the given file. If writing fails or is cancelled, the output is deleted.
+   *
+   * @param product the product to write
+   * @param file    the output file
+   * @param pm      the progress monitor
+   * @throws IOException             if writing fails
+   * @throws OperatorCancelException if the progress monitor has been cancelled
+   */
+  public void writeProduct(Product product, File file, ProgressMonitor pm) throws IOException {
+    if (writer == null) {
+      throw new IllegalStateException("No product writer given, use writeProduct(Product, List, ProgressMonitor)");
+    }
+    Map<Target, IOException> failures = writeProduct(product, List.of(new Target(writer, file)), pm);
+    if (!failures.isEmpty()) {
+      throw failures.values().iterator().next();
+    }
+  }
+
+  /**
+   * Writes the product to several targets at once. Each tile row is computed once and handed to the writers of all
+   * targets, each writer runs on its own thread. If a writer fails, its output is deleted and the other targets are
+   * still written. The memory budget applies to the rows not yet written by the slowest writer. The progress of the
+   * slowest writer is reported, the sub-task shows the progress of each target. If writing is cancelled, all outputs
+   * are deleted.
+   *
+   * @param product the product to write
+   * @param targets the writers and output files
+   * @param pm      the progress monitor
+   * @return the errors of the failed targets, empty if all targets have been written
+   * @throws IOException             if writing is interrupted
+   * @throws OperatorCancelException if the progress monitor has been cancelled
+   */
+  public Map<Target, IOException> writeProduct(Product product, List<Target> targets, ProgressMonitor pm)
+      throws IOException {
+    computeNanos.set(0);
+    writeNanos.set(0);
+    stallNanos.set(0);
+    long[] cacheCountsAtStart = getCacheCounts();
+    long start = System.nanoTime();
+    Map<Target, IOException> failures = new LinkedHashMap<>();
+    int budgetPermits = toPermits(memoryBudget);
+    List<Sink> sinks = new ArrayList<>();
+    for (Target target : targets) {
+      try {
+        target.writer().writeProductNodes(product, target.file());
+        sinks.add(new Sink(target, budgetPermits));
+      } catch (IOException e) {
+        failures.put(target, e);
+        discardOutput(target.writer());
+      }
+    }
+    List<Band> bands = new ArrayList<>();
+    List<PlanarImage> images = new ArrayList<>();
+    int numRows = 0;
+    for (Band band : product.getBands()) {
+      boolean written = false;
+      PlanarImage image = null;
+      for (Sink sink : sinks) {
+        if (sink.target.writer().shouldWrite(band)) {
+          image = image != null ? image : PlanarImage.wrapRenderedImage(band.getSourceImage().getImage(0));
+          sink.totalRows += image.getNumYTiles();
+          written = true;
+        }
+      }
+      if (written) {
+        bands.add(band);
+        images.add(image);
+        numRows = Math.max(numRows, image.getNumYTiles());
+      }
+    }
+
+    ExecutorService writerThreads = Executors.newFixedThreadPool(Math.max(1, sinks.size()), runnable -> {
+      Thread thread = new Thread(runnable, "eom-async-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (Sink sink : sinks) {
+      sink.writing = writerThreads.submit(() -> {
+        drain(sink);
+        return null;
+      });
+    }
+    pm.beginTask("Writing product", PROGRESS_TICKS);
+    boolean success = false;
+    try {
+      int reported = 0;
+      for (int stripe = 0; stripe < numRows && !sinks.isEmpty(); stripe += stripeRows) {
+        for (int i = 0; i < bands.size() && !sinks.isEmpty(); i++) {
+          PlanarImage image = images.get(i);
+          int stripeHeight = Math.min(stripeRows, image.getNumYTiles() - stripe);
+          if (stripeHeight <= 0) {
+            continue;
+          }
+          awaitResume(sinks, failures, pm);
+          long computeStart = System.nanoTime();
+          List<TileRow> tileRows = computeStripe(bands.get(i), image, stripe, stripeHeight, budgetPermits);
+          computeNanos.addAndGet(System.nanoTime() - computeStart);
+          for (TileRow tileRow : tileRows) {
+            for (Sink sink : new ArrayList<>(sinks)) {
+              if (sink.target.writer().shouldWrite(tileRow.band) && acquire(sink, tileRow.permits, failures, pm)) {
+                sink.queue.put(tileRow);
+              }
+            }
+            reported = reportProgress(sinks, reported, pm);
+          }
+        }
+      }
+      for (Sink sink : sinks) {
+        sink.queue.put(TileRow.END);
+      }
+      for (Sink sink : new ArrayList<>(sinks)) {
+        try {
+          waitFor(sink.writing);
+          sink.target.writer().flush();
+          sink.target.writer().close();
+        } catch (IOException e) {
+          fail(sink, e, sinks, failures);
+        }
+      }
+      pm.worked(PROGRESS_TICKS - reported);
+      success = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing " + product.getName(), e);
+    } finally {
+      if (!success) {
+        for (Sink sink : sinks) {
+          if (!sink.failed) {
+            stopWriting(sink);
+            discardOutput(sink.target.writer());
+          }
+        }
+      }
+      writerThreads.shutdownNow();
+      pm.done();
+    }
+    long[] cacheCounts = getCacheCounts();
+    cacheHits = cacheCounts[0] - cacheCountsAtStart[0];
+    cacheMisses = cacheCounts[1] - cacheCountsAtStart[1];
+    for (Sink sink : sinks) {
+      SystemUtils.LOG.log(Level.INFO, String.format(
+          "Wrote %s asynchronously in %d ms: computing %d ms, writing %d ms, computation waited %d ms for the "
+              + "writer, tile order %s, tile cache hits %d, misses %d",
+          sink.target.file().getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+          getComputeTime().toMillis(), getWriteTime().toMillis(), getStallTime().toMillis(), tileOrder, cacheHits,
+          cacheMisses));
+    }
+    return failures;
+  }
+
+  private void drain(Sink sink) throws IOException, InterruptedException {
+    while (true) {
+      TileRow row = sink.queue.take();
+      if (row == TileRow.END) {
+        return;
+      }
+      long writeStart = System.nanoTime();
+      Rectangle rect = row.rectangle;
+      sink.target.writer().writeBandRasterData(row.band, rect.x, rect.y, rect.width, rect.height, row.data,
+          ProgressMonitor.NULL);
+      writeNanos.addAndGet(System.nanoTime() - writeStart);
+      sink.budget.release(row.permits);
+      sink.writtenRows.incrementAndGet();
+    }
+  }
+
+  private boolean acquire(Sink sink, int permits, Map<Target, IOException> failures, ProgressMonitor pm)
+      throws InterruptedException {
+    long stallStart = System.nanoTime();
+    try {
+      while (true) {
+        if (sink.writing.isDone()) {
+          waitFor(sink.writing);
+        }
+        if (pm.isCanceled()) {
+          throw new OperatorCancelException("Writing has been cancelled.");
+        }
+        if (sink.budget.tryAcquire(permits, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (IOException e) {
+      fail(sink, e, null, failures);
+      return false;
+    } finally {
+      stallNanos.addAndGet(System.nanoTime() - stallStart);
+    }
+  }
+
+  private void awaitResume(List<Sink> sinks, Map<Target, IOException> failures, ProgressMonitor pm)
+      throws InterruptedException {
+    long stallStart = System.nanoTime();
+    while (paused) {
+      for (Sink sink : new ArrayList<>(sinks)) {
+        if (sink.writing.isDone()) {
+          try {
+            waitFor(sink.writing);
+          } catch (IOException e) {
+            fail(sink, e, sinks, failures);
+          }
+        }
+      }
+      if (pm.isCanceled()) {
+        throw new OperatorCancelException("Writing has been cancelled.");
+      }
+      Thread.sleep(POLL_INTERVAL_MS);
+    }
+    stallNanos.addAndGet(System.nanoTime() - stallStart);
+  }
+
+  private void fail(Sink sink, IOException error, List<Sink> sinks, Map<Target, IOException> failures) {
+    sink.failed = true;
+    stopWriting(sink);
+    if (sinks != null) {
+      sinks.remove(sink);
+    }
+    failures.put(sink.target, error);
+    discardOutput(sink.target.writer());
+    SystemUtils.LOG.log(Level.WARNING, "Writing " + sink.target.file().getName() + " failed", error);
+  }
+
+  private static int reportProgress(List<Sink> sinks, int reported, ProgressMonitor pm) {
+    sinks.removeIf(sink -> sink.failed);
+    if (sinks.isEmpty()) {
+      return reported;
+    }
+    int progress = PROGRESS_TICKS;
+    StringBuilder subTask = new StringBuilder();
+    for (Sink sink : sinks) {
+      int written = sink.writtenRows.get();
+      progress = Math.min(progress, sink.totalRows == 0 ? PROGRESS_TICKS
+          : (int) ((long) written * PROGRESS_TICKS / sink.totalRows));
+      if (sinks.size() > 1) {
+        subTask.append(subTask.length() > 0 ? ", " : "").append(sink.target.file().getName())
+               .append(' ').append(written).append('/').append(sink.totalRows);
+      }
+    }
+    if (subTask.length() > 0) {
+      pm.setSubTaskName(subTask.toString());
+    }
+    pm.worked(progress - reported);
+    return progress;
+  }
+
+  private static void waitFor(Future<?> writing) throws IOException, InterruptedException {
+    try {
+      writing.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Writing failed", e.getCause());
+    } catch (CancellationException e) {
+      throw new IOException("Writing has been cancelled", e);
+    }
+  }
+
+  /**
+   * Stops the writer thread of the sink and waits until it has returned, because product writers are not thread-safe
+   * and must not be closed while a row is still being written. The rows not yet written are dropped. The thread is not
+   * interrupted, which could close the channel of the writer in the middle of a row.
+   */
+  private static void stopWriting(Sink sink) {
+    sink.queue.clear();
+    sink.queue.add(TileRow.END);
+    boolean interrupted = Thread.interrupted();
+    try {
+      while (true) {
+        try {
+          sink.writing.get();
+          return;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException | CancellationException e) {
+          // the error has already been reported or the output is discarded anyway
+          return;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static void discardOutput(ProductWriter productWriter) {
+    try {
+      productWriter.close();
+      productWriter.deleteOutput();
+    } catch (IOException e) {
+      SystemUtils.LOG.log(Level.WARNING, "Could not delete incomplete output", e);
+    }
+  }
+
+  private List<TileRow> computeStripe(Band band, PlanarImage image, int firstRow, int numRows, int maxPermits) {
+    int minTileY = image.getMinTileY() + firstRow;
+    Point[] tileIndices = tileOrder.arrange(image.getMinTileX(), minTileY, image.getNumXTiles(), numRows);
+    // an OpImage computes the tiles in parallel, roughly in the given order
+    Raster[] tiles = image.getTiles(tileIndices);
+    List<TileRow> rows = new ArrayList<>(numRows);
+    for (int tileY = minTileY; tileY < minTileY + numRows; tileY++) {
+      Rectangle rowRect = new Rectangle(image.getMinX(), image.tileYToY(tileY), image.getWidth(),
+          image.getTileHeight()).intersection(image.getBounds());
+      SampleModel sampleModel = image.getSampleModel().createCompatibleSampleModel(rowRect.width, rowRect.height);
+      WritableRaster rowRaster = Raster.createWritableRaster(sampleModel, rowRect.getLocation());
+      for (int t = 0; t < tiles.length; t++) {
+        if (tileIndices[t].y == tileY) {
+          rowRaster.setRect(tiles[t]);
+        }
+      }
+      Object elems = rowRaster.getDataElements(rowRect.x, rowRect.y, rowRect.width, rowRect.height, null);
+      ProductData data = ProductData.createInstance(band.getDataType(), elems);
+      long bytes = (long) rowRect.width * rowRect.height * ProductData.getElemSize(band.getDataType());
+      rows.add(new TileRow(band, rowRect, data, Math.min(toPermits(bytes), maxPermits)));
+    }
+    return rows;
+  }
+
+  private static long[] getCacheCounts() {
+    TileCache cache = JAI.getDefaultInstance().getTileCache();
+    if (cache instanceof SunTileCache) {
+      SunTileCache sunCache = (SunTileCache) cache;
+      return new long[]{sunCache.getCacheHitCount(), sunCache.getCacheMissCount()};
+    }
+    return new long[2];
+  }
+
+  private static int toPermits(long bytes) {
+    // one permit per kilobyte keeps the count within the range of an int
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (bytes + 1023) / 1024));
+  }
+
+  private static final class Sink {
+
+    final Target target;
+    final BlockingQueue<TileRow> queue = new LinkedBlockingQueue<>();
+    final Semaphore budget;
+    final AtomicInteger writtenRows = new AtomicInteger();
+    Future<?> writing;
+    int totalRows;
+    volatile boolean failed;
+
+    Sink(Target target, int budgetPermits) {
+      this.target = target;
+      this.budget = new Semaphore(budgetPermits);
+    }
+  }
+
+  private static final class TileRow {
+
+    static final TileRow END = new TileRow(null, null, null, 0);
+
+    final Band band;
+    final Rectangle rectangle;
+    final ProductData data;
+    final int permits;
+
+    TileRow(Band band, Rectangle rectangle, ProductData data, int permits) {
+      this.band = band;
+      this.rectangle = rectangle;
+      this.data = data;
+      this.permits = permits;
+    }
+  }
+}
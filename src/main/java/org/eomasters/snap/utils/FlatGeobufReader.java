@@ -0,0 +1,467 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Reads the geometries of a <a href="https://flatgeobuf.org">FlatGeobuf</a> file. If the file contains a packed
+ * Hilbert R-tree, only the features intersecting the requested envelope are read. The index is memory-mapped and the
+ * features are fetched with positional reads, so files larger than 2 GB are supported as well. Feature properties are
+ * not decoded.
+ */
+final class FlatGeobufReader implements Closeable {
+
+  private static final byte[] MAGIC = {0x66, 0x67, 0x62, 0x03, 0x66, 0x67, 0x62};
+  private static final int NODE_ITEM_BYTES = 40;
+
+  private static final int POINT = 1;
+  private static final int LINE_STRING = 2;
+  private static final int POLYGON = 3;
+  private static final int MULTI_POINT = 4;
+  private static final int MULTI_LINE_STRING = 5;
+  private static final int MULTI_POLYGON = 6;
+  private static final int GEOMETRY_COLLECTION = 7;
+
+  // field indices of the flatbuffer tables, see header.fbs and feature.fbs of the FlatGeobuf specification
+  private static final int HEADER_GEOMETRY_TYPE = 2;
+  private static final int HEADER_FEATURES_COUNT = 8;
+  private static final int HEADER_INDEX_NODE_SIZE = 9;
+  private static final int HEADER_CRS = 10;
+  private static final int CRS_ORG = 0;
+  private static final int CRS_CODE = 1;
+  private static final int CRS_WKT = 4;
+  private static final int FEATURE_GEOMETRY = 0;
+  private static final int GEOMETRY_ENDS = 0;
+  private static final int GEOMETRY_XY = 1;
+  private static final int GEOMETRY_TYPE = 6;
+  private static final int GEOMETRY_PARTS = 7;
+
+  private final FileChannel channel;
+  private final GeometryFactory geometryFactory;
+  private final int geometryType;
+  private final long featuresCount;
+  private final int indexNodeSize;
+  private final String crsOrganization;
+  private final int crsCode;
+  private final String crsWkt;
+  private final long indexOffset;
+  private final long indexSize;
+  private final long featuresOffset;
+  private ByteBuffer featureBuffer = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+
+  /**
+   * Opens the given FlatGeobuf file and reads its header.
+   *
+   * @param file            the FlatGeobuf file
+   * @param geometryFactory the factory used to create the geometries
+   * @throws IOException if the file cannot be read or is not a FlatGeobuf file
+   */
+  FlatGeobufReader(Path file, GeometryFactory geometryFactory) throws IOException {
+    this.geometryFactory = geometryFactory;
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      ByteBuffer prefix = read(0, MAGIC.length + 5);
+      byte[] magic = new byte[MAGIC.length];
+      prefix.get(0, magic);
+      if (!Arrays.equals(MAGIC, magic)) {
+        throw new IOException("Not a FlatGeobuf file (version 3): " + file);
+      }
+      int headerSize = prefix.getInt(8);
+      Table header = Table.root(read(12, headerSize));
+      geometryType = header.getUByte(HEADER_GEOMETRY_TYPE, 0);
+      featuresCount = header.getLong(HEADER_FEATURES_COUNT, 0);
+      indexNodeSize = header.getUShort(HEADER_INDEX_NODE_SIZE, 16);
+      Table crs = header.getTable(HEADER_CRS);
+      crsOrganization = crs != null ? crs.getString(CRS_ORG) : null;
+      crsCode = crs != null ? crs.getInt(CRS_CODE, 0) : 0;
+      crsWkt = crs != null ? crs.getString(CRS_WKT) : null;
+      indexOffset = 12L + headerSize;
+      if (indexNodeSize > 1 && featuresCount > 0) {
+        long[][] levelBounds = levelBounds(featuresCount, indexNodeSize);
+        indexSize = levelBounds[0][1] * NODE_ITEM_BYTES;
+      } else {
+        indexSize = 0;
+      }
+      featuresOffset = indexOffset + indexSize;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the organization of the CRS code, e.g. {@code EPSG}.
+   *
+   * @return the organization or {@code null} if not defined
+   */
+  String getCrsOrganization() {
+    return crsOrganization;
+  }
+
+  /**
+   * Returns the code of the CRS within its organization.
+   *
+   * @return the code or {@code 0} if not defined
+   */
+  int getCrsCode() {
+    return crsCode;
+  }
+
+  /**
+   * Returns the WKT of the CRS.
+   *
+   * @return the WKT or {@code null} if not defined
+   */
+  String getCrsWkt() {
+    return crsWkt;
+  }
+
+  /**
+   * Returns the number of features in the file.
+   *
+   * @return the number of features
+   */
+  long getFeaturesCount() {
+    return featuresCount;
+  }
+
+  /**
+   * Reads the geometries of the features intersecting the given envelope. If the file has no spatial index, all
+   * features are read and the ones not intersecting the envelope are skipped.
+   *
+   * @param envelope the envelope in the CRS of the file or {@code null} to read all geometries
+   * @param consumer receives the geometries
+   * @throws IOException if the file cannot be read
+   */
+  void read(Envelope envelope, Consumer<Geometry> consumer) throws IOException {
+    if (featuresCount == 0) {
+      return;
+    }
+    if (envelope != null && indexSize > 0 && indexSize <= Integer.MAX_VALUE) {
+      for (long offset : searchIndex(envelope)) {
+        Geometry geometry = readGeometry(featuresOffset + offset);
+        if (geometry != null) {
+          consumer.accept(geometry);
+        }
+      }
+    } else {
+      long position = featuresOffset;
+      long fileSize = channel.size();
+      while (position < fileSize) {
+        Geometry geometry = readGeometry(position);
+        if (geometry != null && (envelope == null || envelope.intersects(geometry.getEnvelopeInternal()))) {
+          consumer.accept(geometry);
+        }
+        position += 4L + featureBuffer.limit();
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private long[] searchIndex(Envelope envelope) throws IOException {
+    ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, indexSize)
+                              .order(ByteOrder.LITTLE_ENDIAN);
+    long[][] levelBounds = levelBounds(featuresCount, indexNodeSize);
+    long leafNodesOffset = levelBounds[0][0];
+    long[] hits = new long[64];
+    int numHits = 0;
+    ArrayDeque<long[]> queue = new ArrayDeque<>();
+    queue.add(new long[]{0, levelBounds.length - 1});
+    while (!queue.isEmpty()) {
+      long[] next = queue.poll();
+      long nodeIndex = next[0];
+      int level = (int) next[1];
+      boolean isLeafNode = nodeIndex >= leafNodesOffset;
+      long end = Math.min(nodeIndex + indexNodeSize, levelBounds[level][1]);
+      for (long pos = nodeIndex; pos < end; pos++) {
+        int item = (int) (pos * NODE_ITEM_BYTES);
+        if (envelope.getMaxX() < index.getDouble(item) || envelope.getMaxY() < index.getDouble(item + 8)
+            || envelope.getMinX() > index.getDouble(item + 16) || envelope.getMinY() > index.getDouble(item + 24)) {
+          continue;
+        }
+        long offset = index.getLong(item + 32);
+        if (isLeafNode) {
+          if (numHits == hits.length) {
+            hits = Arrays.copyOf(hits, hits.length * 2);
+          }
+          hits[numHits++] = offset;
+        } else {
+          queue.add(new long[]{offset, level - 1});
+        }
+      }
+    }
+    // reading in file order keeps the access sequential
+    long[] offsets = Arrays.copyOf(hits, numHits);
+    Arrays.sort(offsets);
+    return offsets;
+  }
+
+  /**
+   * Computes the node ranges of the levels of the packed R-tree. The first level contains the leaf nodes, the last
+   * level contains the root node.
+   */
+  static long[][] levelBounds(long numItems, int nodeSize) {
+    List<Long> levelNumNodes = new ArrayList<>();
+    long n = numItems;
+    long numNodes = n;
+    levelNumNodes.add(n);
+    do {
+      n = (n + nodeSize - 1) / nodeSize;
+      numNodes += n;
+      levelNumNodes.add(n);
+    } while (n != 1);
+    long[][] levelBounds = new long[levelNumNodes.size()][];
+    n = numNodes;
+    for (int i = 0; i < levelBounds.length; i++) {
+      long levelSize = levelNumNodes.get(i);
+      n -= levelSize;
+      levelBounds[i] = new long[]{n, n + levelSize};
+    }
+    return levelBounds;
+  }
+
+  private Geometry readGeometry(long position) throws IOException {
+    int featureSize = read(position, 4).getInt(0);
+    if (featureBuffer.capacity() < featureSize) {
+      featureBuffer = ByteBuffer.allocate(featureSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    featureBuffer.clear().limit(featureSize);
+    readFully(position + 4, featureBuffer);
+    Table geometry = Table.root(featureBuffer).getTable(FEATURE_GEOMETRY);
+    return geometry != null ? decode(geometry, geometryType) : null;
+  }
+
+  private Geometry decode(Table geometry, int defaultType) {
+    int type = geometry.getUByte(GEOMETRY_TYPE, 0);
+    if (type == 0) {
+      type = defaultType;
+    }
+    switch (type) {
+      case POINT: {
+        Coordinate[] coordinates = coordinates(geometry);
+        return coordinates.length > 0 ? geometryFactory.createPoint(coordinates[0]) : null;
+      }
+      case LINE_STRING:
+        return geometryFactory.createLineString(coordinates(geometry));
+      case POLYGON:
+        return decodePolygon(geometry);
+      case MULTI_POINT:
+        return geometryFactory.createMultiPointFromCoords(coordinates(geometry));
+      case MULTI_LINE_STRING: {
+        List<Coordinate[]> parts = split(geometry, coordinates(geometry));
+        LineString[] lines = new LineString[parts.size()];
+        for (int i = 0; i < lines.length; i++) {
+          lines[i] = geometryFactory.createLineString(parts.get(i));
+        }
+        return geometryFactory.createMultiLineString(lines);
+      }
+      case MULTI_POLYGON: {
+        Polygon[] polygons = new Polygon[geometry.getVectorLength(GEOMETRY_PARTS)];
+        for (int i = 0; i < polygons.length; i++) {
+          polygons[i] = decodePolygon(geometry.getTableElement(GEOMETRY_PARTS, i));
+        }
+        return geometryFactory.createMultiPolygon(polygons);
+      }
+      case GEOMETRY_COLLECTION: {
+        List<Geometry> geometries = new ArrayList<>();
+        for (int i = 0; i < geometry.getVectorLength(GEOMETRY_PARTS); i++) {
+          Geometry part = decode(geometry.getTableElement(GEOMETRY_PARTS, i), 0);
+          if (part != null) {
+            geometries.add(part);
+          }
+        }
+        return geometryFactory.createGeometryCollection(geometries.toArray(new Geometry[0]));
+      }
+      default:
+        // curves, surfaces and TINs are not supported
+        return null;
+    }
+  }
+
+  private Polygon decodePolygon(Table geometry) {
+    List<Coordinate[]> rings = split(geometry, coordinates(geometry));
+    if (rings.isEmpty()) {
+      return geometryFactory.createPolygon((LinearRing) null, null);
+    }
+    LinearRing shell = geometryFactory.createLinearRing(rings.get(0));
+    LinearRing[] holes = new LinearRing[rings.size() - 1];
+    for (int i = 0; i < holes.length; i++) {
+      holes[i] = geometryFactory.createLinearRing(rings.get(i + 1));
+    }
+    return geometryFactory.createPolygon(shell, holes);
+  }
+
+  private static Coordinate[] coordinates(Table geometry) {
+    int numValues = geometry.getVectorLength(GEOMETRY_XY);
+    int start = geometry.getVectorStart(GEOMETRY_XY);
+    ByteBuffer buffer = geometry.buffer;
+    Coordinate[] coordinates = new Coordinate[numValues / 2];
+    for (int i = 0; i < coordinates.length; i++) {
+      int pos = start + i * 16;
+      coordinates[i] = new Coordinate(buffer.getDouble(pos), buffer.getDouble(pos + 8));
+    }
+    return coordinates;
+  }
+
+  private static List<Coordinate[]> split(Table geometry, Coordinate[] coordinates) {
+    List<Coordinate[]> parts = new ArrayList<>();
+    int numEnds = geometry.getVectorLength(GEOMETRY_ENDS);
+    if (numEnds == 0) {
+      if (coordinates.length > 0) {
+        parts.add(coordinates);
+      }
+      return parts;
+    }
+    int start = geometry.getVectorStart(GEOMETRY_ENDS);
+    int from = 0;
+    for (int i = 0; i < numEnds; i++) {
+      int to = geometry.buffer.getInt(start + i * 4);
+      parts.add(Arrays.copyOfRange(coordinates, from, to));
+      from = to;
+    }
+    return parts;
+  }
+
+  private ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(position, buffer);
+    return buffer;
+  }
+
+  private void readFully(long position, ByteBuffer buffer) throws IOException {
+    int start = buffer.position();
+    while (buffer.hasRemaining()) {
+      int numRead = channel.read(buffer, position + buffer.position() - start);
+      if (numRead < 0) {
+        throw new IOException("Unexpected end of FlatGeobuf file.");
+      }
+    }
+    buffer.flip();
+  }
+
+  /**
+   * Minimal access to a flatbuffer table as defined by the FlatBuffers binary format.
+   */
+  private static final class Table {
+
+    private final ByteBuffer buffer;
+    private final int position;
+    private final int vtable;
+    private final int vtableSize;
+
+    private Table(ByteBuffer buffer, int position) {
+      this.buffer = buffer;
+      this.position = position;
+      vtable = position - buffer.getInt(position);
+      vtableSize = Short.toUnsignedInt(buffer.getShort(vtable));
+    }
+
+    static Table root(ByteBuffer buffer) {
+      return new Table(buffer, buffer.getInt(0));
+    }
+
+    int getUByte(int field, int defaultValue) {
+      int offset = fieldOffset(field);
+      return offset != 0 ? Byte.toUnsignedInt(buffer.get(position + offset)) : defaultValue;
+    }
+
+    int getUShort(int field, int defaultValue) {
+      int offset = fieldOffset(field);
+      return offset != 0 ? Short.toUnsignedInt(buffer.getShort(position + offset)) : defaultValue;
+    }
+
+    int getInt(int field, int defaultValue) {
+      int offset = fieldOffset(field);
+      return offset != 0 ? buffer.getInt(position + offset) : defaultValue;
+    }
+
+    long getLong(int field, long defaultValue) {
+      int offset = fieldOffset(field);
+      return offset != 0 ? buffer.getLong(position + offset) : defaultValue;
+    }
+
+    String getString(int field) {
+      int offset = fieldOffset(field);
+      if (offset == 0) {
+        return null;
+      }
+      int start = indirect(position + offset);
+      byte[] bytes = new byte[buffer.getInt(start)];
+      buffer.get(start + 4, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    Table getTable(int field) {
+      int offset = fieldOffset(field);
+      return offset != 0 ? new Table(buffer, indirect(position + offset)) : null;
+    }
+
+    int getVectorLength(int field) {
+      int offset = fieldOffset(field);
+      return offset != 0 ? buffer.getInt(indirect(position + offset)) : 0;
+    }
+
+    int getVectorStart(int field) {
+      int offset = fieldOffset(field);
+      return offset != 0 ? indirect(position + offset) + 4 : 0;
+    }
+
+    Table getTableElement(int field, int index) {
+      return new Table(buffer, indirect(getVectorStart(field) + index * 4));
+    }
+
+    private int fieldOffset(int field) {
+      int entry = 4 + field * 2;
+      return entry < vtableSize ? Short.toUnsignedInt(buffer.getShort(vtable + entry)) : 0;
+    }
+
+    private int indirect(int offsetPosition) {
+      return offsetPosition + buffer.getInt(offsetPosition);
+    }
+  }
+}
@@ -0,0 +1,263 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Reads the geometries of a GeoJSON file (RFC 7946). The file is parsed as a stream, only the geometry of the feature
+ * currently read is kept in memory. Feature properties are skipped.
+ */
+final class GeoJsonReader {
+
+  private final GeometryFactory geometryFactory;
+
+  /**
+   * Creates a new reader.
+   *
+   * @param geometryFactory the factory used to create the geometries
+   */
+  GeoJsonReader(GeometryFactory geometryFactory) {
+    this.geometryFactory = geometryFactory;
+  }
+
+  /**
+   * Reads the geometries of the given file which intersect the envelope. The file can contain a
+   * {@code FeatureCollection}, a single {@code Feature} or a single geometry.
+   *
+   * @param file     the GeoJSON file
+   * @param envelope the envelope in WGS84 coordinates or {@code null} to read all geometries
+   * @param consumer receives the geometries
+   * @throws IOException if the file cannot be read or is not valid GeoJSON
+   */
+  void read(Path file, Envelope envelope, Consumer<Geometry> consumer) throws IOException {
+    try (Reader fileReader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        JsonReader reader = new JsonReader(fileReader)) {
+      Geometry geometry = readObject(reader, g -> accept(g, envelope, consumer));
+      if (geometry != null) {
+        accept(geometry, envelope, consumer);
+      }
+    } catch (IllegalStateException | IllegalArgumentException e) {
+      throw new IOException("Invalid GeoJSON file: " + file, e);
+    }
+  }
+
+  private static void accept(Geometry geometry, Envelope envelope, Consumer<Geometry> consumer) {
+    if (envelope == null || envelope.intersects(geometry.getEnvelopeInternal())) {
+      consumer.accept(geometry);
+    }
+  }
+
+  /**
+   * Reads a GeoJSON object. Geometries of features contained in a {@code features} member are handed to the feature
+   * consumer as soon as they are read. The returned geometry is the one described by the object itself, either
+   * directly or by its {@code geometry} member.
+   */
+  private Geometry readObject(JsonReader reader, Consumer<Geometry> featureConsumer) throws IOException {
+    String type = null;
+    Object coordinates = null;
+    List<Geometry> geometries = null;
+    Geometry geometry = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (reader.peek() == JsonToken.NULL) {
+        reader.skipValue();
+        continue;
+      }
+      switch (name) {
+        case "type":
+          type = reader.nextString();
+          break;
+        case "coordinates":
+          coordinates = readCoordinates(reader);
+          break;
+        case "geometry":
+          geometry = readObject(reader, featureConsumer);
+          break;
+        case "geometries":
+          geometries = new ArrayList<>();
+          reader.beginArray();
+          while (reader.hasNext()) {
+            Geometry part = readObject(reader, featureConsumer);
+            if (part != null) {
+              geometries.add(part);
+            }
+          }
+          reader.endArray();
+          break;
+        case "features":
+          reader.beginArray();
+          while (reader.hasNext()) {
+            Geometry featureGeometry = readObject(reader, featureConsumer);
+            if (featureGeometry != null) {
+              featureConsumer.accept(featureGeometry);
+            }
+          }
+          reader.endArray();
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    if (type == null) {
+      throw new IOException("GeoJSON object without type at " + reader.getPath());
+    }
+    switch (type) {
+      case "FeatureCollection":
+        return null;
+      case "Feature":
+        return geometry;
+      case "GeometryCollection":
+        return geometries != null ? geometryFactory.createGeometryCollection(geometries.toArray(new Geometry[0]))
+            : null;
+      default:
+        // empty geometries are skipped like geometries without coordinates
+        return containsPosition(coordinates) ? createGeometry(type, coordinates) : null;
+    }
+  }
+
+  private static boolean containsPosition(Object coordinates) {
+    if (coordinates instanceof List<?> list) {
+      return list.stream().anyMatch(GeoJsonReader::containsPosition);
+    }
+    return coordinates != null;
+  }
+
+  private Geometry createGeometry(String type, Object coordinates) throws IOException {
+    switch (type) {
+      case "Point":
+        return geometryFactory.createPoint(toCoordinate(coordinates));
+      case "MultiPoint":
+        return geometryFactory.createMultiPointFromCoords(toCoordinates(coordinates));
+      case "LineString":
+        return geometryFactory.createLineString(toCoordinates(coordinates));
+      case "MultiLineString": {
+        List<Object> lines = toList(coordinates);
+        LineString[] lineStrings = new LineString[lines.size()];
+        for (int i = 0; i < lineStrings.length; i++) {
+          lineStrings[i] = geometryFactory.createLineString(toCoordinates(lines.get(i)));
+        }
+        return geometryFactory.createMultiLineString(lineStrings);
+      }
+      case "Polygon":
+        return createPolygon(coordinates);
+      case "MultiPolygon": {
+        List<Object> polygonList = toList(coordinates);
+        Polygon[] polygons = new Polygon[polygonList.size()];
+        for (int i = 0; i < polygons.length; i++) {
+          polygons[i] = createPolygon(polygonList.get(i));
+        }
+        return geometryFactory.createMultiPolygon(polygons);
+      }
+      default:
+        throw new IOException("Unsupported GeoJSON geometry type: " + type);
+    }
+  }
+
+  private Polygon createPolygon(Object rings) {
+    List<Object> ringList = toList(rings);
+    if (ringList.isEmpty()) {
+      return geometryFactory.createPolygon((LinearRing) null, null);
+    }
+    LinearRing shell = geometryFactory.createLinearRing(toCoordinates(ringList.get(0)));
+    LinearRing[] holes = new LinearRing[ringList.size() - 1];
+    for (int i = 0; i < holes.length; i++) {
+      holes[i] = geometryFactory.createLinearRing(toCoordinates(ringList.get(i + 1)));
+    }
+    return geometryFactory.createPolygon(shell, holes);
+  }
+
+  private static Coordinate[] toCoordinates(Object positions) {
+    List<Object> positionList = toList(positions);
+    Coordinate[] coordinates = new Coordinate[positionList.size()];
+    for (int i = 0; i < coordinates.length; i++) {
+      coordinates[i] = toCoordinate(positionList.get(i));
+    }
+    return coordinates;
+  }
+
+  private static Coordinate toCoordinate(Object position) {
+    if (!(position instanceof double[] values)) {
+      throw new IllegalArgumentException("Expected a position, but found an array of positions");
+    }
+    return new Coordinate(values[0], values[1]);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Object> toList(Object coordinates) {
+    if (!(coordinates instanceof List<?>)) {
+      throw new IllegalArgumentException("Expected an array of positions, but found a single position");
+    }
+    return (List<Object>) coordinates;
+  }
+
+  /**
+   * Reads a coordinates member. A position is returned as {@code double[]}, all other levels of nesting as
+   * {@code List}.
+   */
+  private static Object readCoordinates(JsonReader reader) throws IOException {
+    reader.beginArray();
+    if (reader.peek() == JsonToken.NUMBER) {
+      double[] position = new double[3];
+      int numValues = 0;
+      while (reader.hasNext()) {
+        double value = reader.nextDouble();
+        if (numValues < position.length) {
+          position[numValues] = value;
+        }
+        numValues++;
+      }
+      reader.endArray();
+      if (numValues < 2) {
+        throw new IOException("Position with less than two values at " + reader.getPath());
+      }
+      return position;
+    }
+    List<Object> list = new ArrayList<>();
+    while (reader.hasNext()) {
+      list.add(readCoordinates(reader));
+    }
+    reader.endArray();
+    return list;
+  }
+}
@@ -0,0 +1,339 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.media.jai.JAI;
+import javax.media.jai.TileCache;
+import javax.media.jai.TileScheduler;
+import org.esa.snap.core.util.SystemUtils;
+
+/**
+ * Watches the heap while operators are executed and reduces the memory demand before it ends in an
+ * {@link OutOfMemoryError}. The governor is notified by the {@link MemoryPoolMXBean}s when the heap used after a
+ * garbage collection exceeds the high threshold. Each step of pressure flushes the JAI tile cache and halves the
+ * parallelism of the JAI tile scheduler. From the second step on, the registered {@link Pausable}s, e.g. the
+ * computation feeding an {@link AsyncProductWriter}, are paused as well. While under pressure the heap is checked
+ * periodically, while paused by the current usage of the heap, because the usage after the last garbage collection
+ * does not change if nothing is allocated. The governor escalates if the usage stays above the high threshold. It
+ * ramps back up step by step once the usage falls below the low threshold, or after it has stayed below the high
+ * threshold for several checks. A pause is limited in time, so an execution finishes slower instead of waiting
+ * forever if the heap does not recover.
+ *
+ * <p>Executions engage the governor for their runtime. Monitoring starts with the first and stops with the last
+ * session, and then the original parallelism is restored.
+ */
+public class HeapPressureGovernor {
+
+  /**
+   * Something which can be paused to let the memory recover.
+   */
+  public interface Pausable {
+
+    /**
+     * Pauses the work. Must not block.
+     */
+    void pause();
+
+    /**
+     * Resumes the work.
+     */
+    void resume();
+  }
+
+  private static final double DEFAULT_HIGH_USAGE = 0.85;
+  private static final double DEFAULT_LOW_USAGE = 0.6;
+  private static final int MAX_LEVEL = 3;
+  private static final int PAUSE_LEVEL = 2;
+  private static final long CHECK_INTERVAL_MS = 2000;
+  private static final int STEP_DOWN_CHECKS = 3;
+  private static final long MAX_PAUSE_MS = 30_000;
+
+  private static HeapPressureGovernor defaultInstance;
+
+  private final double highUsage;
+  private final double lowUsage;
+  private final DoubleSupplier collectionUsage;
+  private final DoubleSupplier currentUsage;
+  private final LongSupplier clock;
+  private final TileScheduler tileScheduler;
+  private final TileCache tileCache;
+  private final List<Pausable> pausables = new CopyOnWriteArrayList<>();
+  private final NotificationListener listener = (notification, handback) -> {
+    if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+      escalate();
+    }
+  };
+  private ScheduledExecutorService checker;
+  private ScheduledFuture<?> checkTask;
+  private int sessions;
+  private int level;
+  private int calmChecks;
+  private long pausedSince;
+  private int originalParallelism;
+
+  /**
+   * Creates a governor for the default JAI instance with the given thresholds.
+   *
+   * @param highUsage the fraction of the heap above which the memory demand is reduced
+   * @param lowUsage  the fraction of the heap below which the reductions are lifted step by step
+   */
+  public HeapPressureGovernor(double highUsage, double lowUsage) {
+    this(highUsage, lowUsage, HeapPressureGovernor::getCollectionUsage, HeapPressureGovernor::getCurrentUsage,
+        System::currentTimeMillis, JAI.getDefaultInstance().getTileScheduler(),
+        JAI.getDefaultInstance().getTileCache());
+  }
+
+  HeapPressureGovernor(double highUsage, double lowUsage, DoubleSupplier heapUsage, LongSupplier clock,
+      TileScheduler tileScheduler, TileCache tileCache) {
+    this(highUsage, lowUsage, heapUsage, heapUsage, clock, tileScheduler, tileCache);
+  }
+
+  private HeapPressureGovernor(double highUsage, double lowUsage, DoubleSupplier collectionUsage,
+      DoubleSupplier currentUsage, LongSupplier clock, TileScheduler tileScheduler, TileCache tileCache) {
+    if (lowUsage >= highUsage) {
+      throw new IllegalArgumentException("The low usage must be below the high usage");
+    }
+    this.highUsage = highUsage;
+    this.lowUsage = lowUsage;
+    this.collectionUsage = collectionUsage;
+    this.currentUsage = currentUsage;
+    this.clock = clock;
+    this.tileScheduler = tileScheduler;
+    this.tileCache = tileCache;
+  }
+
+  /**
+   * Returns the governor shared by all executions, with a high threshold of 85 % and a low threshold of 60 %.
+   *
+   * @return the default governor
+   */
+  public static synchronized HeapPressureGovernor getDefault() {
+    if (defaultInstance == null) {
+      defaultInstance = new HeapPressureGovernor(DEFAULT_HIGH_USAGE, DEFAULT_LOW_USAGE);
+    }
+    return defaultInstance;
+  }
+
+  /**
+   * Starts a session. The heap is watched until all sessions are closed.
+   *
+   * @return the session
+   */
+  public synchronized Session engage() {
+    if (sessions++ == 0) {
+      originalParallelism = tileScheduler.getParallelism();
+      level = 0;
+      calmChecks = 0;
+      installThresholds();
+      checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "eom-heap-governor");
+        thread.setDaemon(true);
+        return thread;
+      });
+      checkTask = checker.scheduleWithFixedDelay(this::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS,
+          TimeUnit.MILLISECONDS);
+    }
+    return new Session();
+  }
+
+  /**
+   * Returns the current step of pressure, 0 if the memory is fine.
+   *
+   * @return the pressure level
+   */
+  public synchronized int getLevel() {
+    return level;
+  }
+
+  synchronized void escalate() {
+    if (sessions == 0 || level >= MAX_LEVEL) {
+      return;
+    }
+    level++;
+    calmChecks = 0;
+    if (level == PAUSE_LEVEL) {
+      pausedSince = clock.getAsLong();
+    }
+    tileCache.flush();
+    apply();
+    SystemUtils.LOG.log(Level.WARNING, String.format(
+        "Heap usage above %d %%, flushed the tile cache and reduced the tile parallelism to %d%s",
+        Math.round(highUsage * 100), tileScheduler.getParallelism(), level == PAUSE_LEVEL ? ", writing paused" : ""));
+  }
+
+  synchronized void check() {
+    if (sessions == 0 || level == 0) {
+      return;
+    }
+    boolean paused = level >= PAUSE_LEVEL;
+    double usage = (paused ? currentUsage : collectionUsage).getAsDouble();
+    if (paused && clock.getAsLong() - pausedSince >= MAX_PAUSE_MS) {
+      // the heap does not recover, continue slowly instead of waiting forever
+      stepDown(usage, PAUSE_LEVEL - 1);
+    } else if (usage > highUsage) {
+      escalate();
+    } else if (usage < lowUsage || ++calmChecks >= STEP_DOWN_CHECKS) {
+      stepDown(usage, level - 1);
+    }
+  }
+
+  private void stepDown(double usage, int newLevel) {
+    boolean resumed = level >= PAUSE_LEVEL && newLevel < PAUSE_LEVEL;
+    level = newLevel;
+    calmChecks = 0;
+    apply();
+    SystemUtils.LOG.log(Level.INFO, String.format("Heap usage at %d %%, tile parallelism back to %d%s",
+        Math.round(usage * 100), tileScheduler.getParallelism(), resumed ? ", writing resumed" : ""));
+  }
+
+  private void apply() {
+    tileScheduler.setParallelism(Math.max(1, originalParallelism >> level));
+    for (Pausable pausable : pausables) {
+      if (level >= PAUSE_LEVEL) {
+        pausable.pause();
+      } else {
+        pausable.resume();
+      }
+    }
+  }
+
+  private synchronized void disengage() {
+    if (--sessions > 0) {
+      return;
+    }
+    checkTask.cancel(false);
+    checker.shutdown();
+    removeThresholds();
+    level = 0;
+    apply();
+  }
+
+  private void installThresholds() {
+    for (MemoryPoolMXBean pool : getObservedPools()) {
+      pool.setCollectionUsageThreshold((long) (pool.getUsage().getMax() * highUsage));
+    }
+    if (ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter emitter) {
+      emitter.addNotificationListener(listener, null, null);
+    }
+  }
+
+  private void removeThresholds() {
+    try {
+      if (ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter emitter) {
+        emitter.removeNotificationListener(listener);
+      }
+    } catch (ListenerNotFoundException e) {
+      // already removed
+    }
+    for (MemoryPoolMXBean pool : getObservedPools()) {
+      pool.setCollectionUsageThreshold(0);
+    }
+  }
+
+  private static List<MemoryPoolMXBean> getObservedPools() {
+    List<MemoryPoolMXBean> pools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid() && pool.isCollectionUsageThresholdSupported()
+          && pool.getUsage().getMax() > 0) {
+        pools.add(pool);
+      }
+    }
+    return pools;
+  }
+
+  private static double getCurrentUsage() {
+    double usage = 0;
+    for (MemoryPoolMXBean pool : getObservedPools()) {
+      usage = Math.max(usage, (double) pool.getUsage().getUsed() / pool.getUsage().getMax());
+    }
+    return usage;
+  }
+
+  private static double getCollectionUsage() {
+    double usage = 0;
+    for (MemoryPoolMXBean pool : getObservedPools()) {
+      if (pool.getCollectionUsage() != null) {
+        usage = Math.max(usage, (double) pool.getCollectionUsage().getUsed() / pool.getUsage().getMax());
+      }
+    }
+    return usage;
+  }
+
+  /**
+   * A period during which the governor watches the heap for an execution.
+   */
+  public final class Session implements AutoCloseable {
+
+    private final List<Pausable> sessionPausables = new ArrayList<>();
+    private boolean closed;
+
+    private Session() {
+    }
+
+    /**
+     * Registers something which is paused under high pressure until the session is closed.
+     *
+     * @param pausable the pausable
+     */
+    public void addPausable(Pausable pausable) {
+      synchronized (HeapPressureGovernor.this) {
+        sessionPausables.add(pausable);
+        pausables.add(pausable);
+        if (level >= PAUSE_LEVEL) {
+          pausable.pause();
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      synchronized (HeapPressureGovernor.this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        pausables.removeAll(sessionPausables);
+        sessionPausables.forEach(Pausable::resume);
+        disengage();
+      }
+    }
+  }
+}
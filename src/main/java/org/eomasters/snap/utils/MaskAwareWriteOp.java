@@ -0,0 +1,72 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.image.RenderedImage;
+import java.io.File;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.gpf.OperatorException;
+import org.esa.snap.core.gpf.common.WriteOp;
+
+/**
+ * A {@link WriteOp} which knows about bands backed by a {@link MaskedOpImage}. The fill value of such bands is
+ * recorded as their no-data value, so readers can tell the masked area from real data.
+ *
+ * <p>Every tile is handed to the {@link WriteOp}, so its bookkeeping of the written tiles stays intact. Tiles entirely
+ * outside the mask are cheap nevertheless, because the {@link MaskedOpImage} returns shared constant fill tiles for
+ * them without computing the source.
+ */
+public class MaskAwareWriteOp extends WriteOp {
+
+  private final Product product;
+
+  /**
+   * Creates a new mask-aware write operator.
+   *
+   * @param targetProduct the product to write
+   * @param file          the output file
+   * @param formatName    the name of the output format
+   */
+  public MaskAwareWriteOp(Product targetProduct, File file, String formatName) {
+    super(targetProduct, file, formatName);
+    this.product = targetProduct;
+  }
+
+  @Override
+  public void initialize() throws OperatorException {
+    for (Band band : product.getBands()) {
+      if (!band.isSourceImageSet()) {
+        continue;
+      }
+      RenderedImage image = band.getSourceImage().getImage(0);
+      if (image instanceof MaskedOpImage) {
+        MaskedOpImage maskedImage = (MaskedOpImage) image;
+        band.setNoDataValue(maskedImage.getFillValue(0));
+        band.setNoDataValueUsed(true);
+      }
+    }
+    super.initialize();
+  }
+}
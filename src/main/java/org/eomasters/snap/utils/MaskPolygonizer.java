@@ -0,0 +1,210 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.util.AffineTransformation;
+import org.locationtech.jts.operation.union.UnaryUnionOp;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+
+/**
+ * Converts the valid area of a mask image, as created by the {@link ValidMaskImageBuilder}, into polygons. A mask
+ * sample is regarded as valid if it is not zero.
+ *
+ * <p>The image is processed tile by tile. Tiles which are entirely valid are added as a single rectangle, tiles which
+ * are entirely invalid are skipped and all other tiles are run-length encoded row by row. Only the rectangles of one
+ * row of tiles are held in memory before they are merged. The areas of the rows are merged in a cascade, so each row
+ * takes part in a logarithmic number of unions instead of being merged into an ever growing result.
+ */
+public class MaskPolygonizer {
+
+  private final GeometryFactory geometryFactory;
+  private double simplifyTolerance;
+  private AffineTransform imageToModelTransform;
+
+  /**
+   * Creates a new polygonizer.
+   */
+  public MaskPolygonizer() {
+    this(new GeometryFactory());
+  }
+
+  /**
+   * Creates a new polygonizer using the given geometry factory.
+   *
+   * @param geometryFactory the factory used to create the geometries
+   */
+  public MaskPolygonizer(GeometryFactory geometryFactory) {
+    this.geometryFactory = geometryFactory;
+  }
+
+  /**
+   * Sets the distance tolerance used to simplify the resulting polygons. The tolerance is given in pixels. By
+   * default, the polygons are not simplified.
+   *
+   * @param tolerance the distance tolerance in pixels
+   * @return this polygonizer
+   */
+  public MaskPolygonizer withSimplifyTolerance(double tolerance) {
+    if (tolerance < 0) {
+      throw new IllegalArgumentException("The simplify tolerance must not be negative");
+    }
+    this.simplifyTolerance = tolerance;
+    return this;
+  }
+
+  /**
+   * Sets the transformation applied to the resulting polygons, e.g. the image-to-model transformation of a raster.
+   * By default, the polygons are returned in image coordinates.
+   *
+   * @param transform the transformation from image to model coordinates
+   * @return this polygonizer
+   */
+  public MaskPolygonizer withImageToModelTransform(AffineTransform transform) {
+    this.imageToModelTransform = transform;
+    return this;
+  }
+
+  /**
+   * Converts the valid area of the given mask image into polygons.
+   *
+   * @param maskImage the mask image
+   * @return the valid area, an empty geometry if no pixel is valid
+   */
+  public Geometry polygonize(RenderedImage maskImage) {
+    return polygonize(maskImage, ProgressMonitor.NULL);
+  }
+
+  /**
+   * Converts the valid area of the given mask image into polygons.
+   *
+   * @param maskImage the mask image
+   * @param pm        the progress monitor
+   * @return the valid area, an empty geometry if no pixel is valid
+   * @throws CancellationException if the progress monitor has been cancelled
+   */
+  public Geometry polygonize(RenderedImage maskImage, ProgressMonitor pm) {
+    Rectangle imageBounds = new Rectangle(maskImage.getMinX(), maskImage.getMinY(), maskImage.getWidth(),
+        maskImage.getHeight());
+    int minTileX = maskImage.getMinTileX();
+    int minTileY = maskImage.getMinTileY();
+    int numXTiles = maskImage.getNumXTiles();
+    int numYTiles = maskImage.getNumYTiles();
+    pm.beginTask("Polygonizing mask", numYTiles + 1);
+    try {
+      CascadedUnion union = new CascadedUnion();
+      for (int tileY = minTileY; tileY < minTileY + numYTiles; tileY++) {
+        if (pm.isCanceled()) {
+          throw new CancellationException("Polygonizing has been cancelled.");
+        }
+        List<Geometry> rectangles = new ArrayList<>();
+        for (int tileX = minTileX; tileX < minTileX + numXTiles; tileX++) {
+          Raster tile = maskImage.getTile(tileX, tileY);
+          Rectangle region = tile.getBounds().intersection(imageBounds);
+          if (region.isEmpty()) {
+            continue;
+          }
+          switch (MaskRuns.classify(tile, region)) {
+            case VALID -> rectangles.add(toPolygon(region));
+            case MIXED -> MaskRuns.collectRectangles(tile, region, r -> rectangles.add(toPolygon(r)));
+            default -> {
+              // nothing valid in this tile
+            }
+          }
+        }
+        if (!rectangles.isEmpty()) {
+          union.add(UnaryUnionOp.union(rectangles));
+        }
+        pm.worked(1);
+      }
+      Geometry result = union.getResult();
+      if (result == null) {
+        return geometryFactory.createPolygon();
+      }
+      if (simplifyTolerance > 0) {
+        result = TopologyPreservingSimplifier.simplify(result, simplifyTolerance);
+      }
+      if (imageToModelTransform != null) {
+        result = toAffineTransformation(imageToModelTransform).transform(result);
+      }
+      pm.worked(1);
+      return result;
+    } finally {
+      pm.done();
+    }
+  }
+
+  private Geometry toPolygon(Rectangle rectangle) {
+    return geometryFactory.toGeometry(new Envelope(rectangle.getMinX(), rectangle.getMaxX(), rectangle.getMinY(),
+        rectangle.getMaxY()));
+  }
+
+  private static AffineTransformation toAffineTransformation(AffineTransform transform) {
+    double[] m = new double[6];
+    transform.getMatrix(m);
+    return new AffineTransformation(m[0], m[2], m[4], m[1], m[3], m[5]);
+  }
+
+  /**
+   * Merges geometries pairwise like a binary counter. A geometry is merged with the previous one once both contain the
+   * same number of added geometries, so neighbouring areas of similar size are merged.
+   */
+  private static class CascadedUnion {
+
+    private final Deque<Geometry> partials = new ArrayDeque<>();
+    private final Deque<Integer> counts = new ArrayDeque<>();
+
+    void add(Geometry geometry) {
+      Geometry merged = geometry;
+      int count = 1;
+      while (!counts.isEmpty() && counts.peek() == count) {
+        merged = partials.pop().union(merged);
+        count += counts.pop();
+      }
+      partials.push(merged);
+      counts.push(count);
+    }
+
+    Geometry getResult() {
+      Geometry result = null;
+      // the most recent partial is the smallest one
+      for (Geometry partial : partials) {
+        result = result == null ? partial : partial.union(result);
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.RenderedImage;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.media.jai.ROI;
+
+/**
+ * A region of interest backed by a mask image, e.g. created by the {@link ValidMaskImageBuilder}. A mask sample is
+ * regarded as inside the region if it is not zero.
+ *
+ * <p>In contrast to a generic {@link ROI}, the queries are answered tile by tile. Each tile of the mask is classified
+ * when it is first needed. Tiles which are entirely inside or outside the region are answered without looking at
+ * their pixels again, and the rectangles of the remaining tiles are derived from run-length encoded rows.
+ */
+public class MaskROI extends ROI {
+
+  private final transient RenderedImage maskImage;
+  private final Rectangle bounds;
+  private final transient AtomicReferenceArray<MaskRuns.Coverage> tileCoverages;
+
+  /**
+   * Creates a new region of interest for the given mask image.
+   *
+   * @param maskImage the single band mask image
+   */
+  public MaskROI(RenderedImage maskImage) {
+    super(maskImage, 1);
+    this.maskImage = maskImage;
+    this.bounds = new Rectangle(maskImage.getMinX(), maskImage.getMinY(), maskImage.getWidth(),
+        maskImage.getHeight());
+    this.tileCoverages = new AtomicReferenceArray<>(maskImage.getNumXTiles() * maskImage.getNumYTiles());
+  }
+
+  /**
+   * Returns the mask image this region is based on.
+   *
+   * @return the mask image
+   */
+  public RenderedImage getMaskImage() {
+    return maskImage;
+  }
+
+  @Override
+  public Rectangle getBounds() {
+    return new Rectangle(bounds);
+  }
+
+  @Override
+  public Rectangle2D getBounds2D() {
+    return getBounds();
+  }
+
+  @Override
+  public boolean contains(int x, int y) {
+    if (!bounds.contains(x, y)) {
+      return false;
+    }
+    int tileX = toTileX(x);
+    int tileY = toTileY(y);
+    return switch (getCoverage(tileX, tileY)) {
+      case VALID -> true;
+      case INVALID -> false;
+      case MIXED -> maskImage.getTile(tileX, tileY).getSample(x, y, 0) != 0;
+    };
+  }
+
+  @Override
+  public boolean contains(Point p) {
+    return contains(p.x, p.y);
+  }
+
+  @Override
+  public boolean contains(Point2D p) {
+    return contains(p.getX(), p.getY());
+  }
+
+  @Override
+  public boolean contains(double x, double y) {
+    return contains((int) Math.floor(x), (int) Math.floor(y));
+  }
+
+  @Override
+  public boolean contains(int x, int y, int w, int h) {
+    return contains(new Rectangle(x, y, w, h));
+  }
+
+  @Override
+  public boolean contains(double x, double y, double w, double h) {
+    return contains(toPixelRectangle(new Rectangle2D.Double(x, y, w, h)));
+  }
+
+  @Override
+  public boolean contains(Rectangle2D r) {
+    return contains(toPixelRectangle(r));
+  }
+
+  @Override
+  public boolean contains(Rectangle rect) {
+    if (rect.isEmpty() || !bounds.contains(rect)) {
+      return false;
+    }
+    return visitTiles(rect, (coverage, tileRegion, tile) -> switch (coverage) {
+      case VALID -> null;
+      case INVALID -> Boolean.FALSE;
+      case MIXED -> MaskRuns.classify(maskImage.getTile(tile.x, tile.y), tileRegion) == MaskRuns.Coverage.VALID
+          ? null : Boolean.FALSE;
+    }, true);
+  }
+
+  @Override
+  public boolean intersects(int x, int y, int w, int h) {
+    return intersects(new Rectangle(x, y, w, h));
+  }
+
+  @Override
+  public boolean intersects(double x, double y, double w, double h) {
+    return intersects(toPixelRectangle(new Rectangle2D.Double(x, y, w, h)));
+  }
+
+  @Override
+  public boolean intersects(Rectangle2D r) {
+    return intersects(toPixelRectangle(r));
+  }
+
+  @Override
+  public boolean intersects(Rectangle rect) {
+    Rectangle region = rect.intersection(bounds);
+    if (region.isEmpty()) {
+      return false;
+    }
+    return visitTiles(region, (coverage, tileRegion, tile) -> switch (coverage) {
+      case VALID -> Boolean.TRUE;
+      case INVALID -> null;
+      case MIXED -> MaskRuns.classify(maskImage.getTile(tile.x, tile.y), tileRegion) != MaskRuns.Coverage.INVALID
+          ? Boolean.TRUE : null;
+    }, false);
+  }
+
+  @Override
+  public LinkedList<Rectangle> getAsRectangleList(int x, int y, int w, int h) {
+    LinkedList<Rectangle> rectangles = new LinkedList<>();
+    Rectangle region = new Rectangle(x, y, w, h).intersection(bounds);
+    if (region.isEmpty()) {
+      return rectangles;
+    }
+    visitTiles(region, (coverage, tileRegion, tile) -> {
+      switch (coverage) {
+        case VALID -> rectangles.add(tileRegion);
+        case MIXED -> MaskRuns.collectRectangles(maskImage.getTile(tile.x, tile.y), tileRegion, rectangles::add);
+        default -> {
+          // nothing inside the region
+        }
+      }
+      return null;
+    }, false);
+    return rectangles;
+  }
+
+  /**
+   * Visits the tiles intersecting the region until the visitor returns a result.
+   */
+  private boolean visitTiles(Rectangle region, TileVisitor visitor, boolean defaultResult) {
+    for (int tileY = toTileY(region.y); tileY <= toTileY(region.y + region.height - 1); tileY++) {
+      for (int tileX = toTileX(region.x); tileX <= toTileX(region.x + region.width - 1); tileX++) {
+        Rectangle tileRegion = getTileBounds(tileX, tileY).intersection(region);
+        Boolean result = visitor.visit(getCoverage(tileX, tileY), tileRegion, new Point(tileX, tileY));
+        if (result != null) {
+          return result;
+        }
+      }
+    }
+    return defaultResult;
+  }
+
+  private MaskRuns.Coverage getCoverage(int tileX, int tileY) {
+    int index = (tileY - maskImage.getMinTileY()) * maskImage.getNumXTiles() + (tileX - maskImage.getMinTileX());
+    MaskRuns.Coverage coverage = tileCoverages.get(index);
+    if (coverage == null) {
+      coverage = MaskRuns.classify(maskImage.getTile(tileX, tileY), getTileBounds(tileX, tileY));
+      tileCoverages.set(index, coverage);
+    }
+    return coverage;
+  }
+
+  private Rectangle getTileBounds(int tileX, int tileY) {
+    Rectangle tileBounds = new Rectangle(
+        maskImage.getTileGridXOffset() + tileX * maskImage.getTileWidth(),
+        maskImage.getTileGridYOffset() + tileY * maskImage.getTileHeight(),
+        maskImage.getTileWidth(), maskImage.getTileHeight());
+    return tileBounds.intersection(bounds);
+  }
+
+  private int toTileX(int x) {
+    return Math.floorDiv(x - maskImage.getTileGridXOffset(), maskImage.getTileWidth());
+  }
+
+  private int toTileY(int y) {
+    return Math.floorDiv(y - maskImage.getTileGridYOffset(), maskImage.getTileHeight());
+  }
+
+  private static Rectangle toPixelRectangle(Rectangle2D r) {
+    int x1 = (int) Math.floor(r.getMinX());
+    int y1 = (int) Math.floor(r.getMinY());
+    int x2 = (int) Math.ceil(r.getMaxX());
+    int y2 = (int) Math.ceil(r.getMaxY());
+    return new Rectangle(x1, y1, x2 - x1, y2 - y1);
+  }
+
+  @FunctionalInterface
+  private interface TileVisitor {
+
+    /**
+     * Visits a tile. Returns the result of the query, or {@code null} to continue with the next tile.
+     */
+    Boolean visit(MaskRuns.Coverage coverage, Rectangle tileRegion, Point tile);
+  }
+}
@@ -0,0 +1,137 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.util.function.Consumer;
+
+/**
+ * Helper for scanning mask rasters row by row. A mask sample is regarded as valid if it is not zero.
+ */
+final class MaskRuns {
+
+  /**
+   * The coverage of a mask region.
+   */
+  enum Coverage {
+    /**
+     * All samples of the region are valid.
+     */
+    VALID,
+    /**
+     * All samples of the region are invalid.
+     */
+    INVALID,
+    /**
+     * The region contains valid and invalid samples.
+     */
+    MIXED
+  }
+
+  private MaskRuns() {
+  }
+
+  /**
+   * Classifies the given region of the mask raster. The scan stops as soon as the region is known to be mixed.
+   *
+   * @param mask   the mask raster
+   * @param region the region to classify, must be contained in the bounds of the raster
+   * @return the coverage of the region
+   */
+  static Coverage classify(Raster mask, Rectangle region) {
+    int[] row = new int[region.width];
+    boolean anyValid = false;
+    boolean anyInvalid = false;
+    for (int y = region.y; y < region.y + region.height; y++) {
+      mask.getSamples(region.x, y, region.width, 1, 0, row);
+      for (int value : row) {
+        if (value != 0) {
+          anyValid = true;
+        } else {
+          anyInvalid = true;
+        }
+        if (anyValid && anyInvalid) {
+          return Coverage.MIXED;
+        }
+      }
+    }
+    return anyValid ? Coverage.VALID : Coverage.INVALID;
+  }
+
+  /**
+   * Collects the valid areas of the given region of the mask raster as rectangles. Each row is run-length encoded,
+   * runs which span the same columns in consecutive rows are merged into a single rectangle.
+   *
+   * @param mask     the mask raster
+   * @param region   the region to scan, must be contained in the bounds of the raster
+   * @param consumer receives the rectangles
+   */
+  static void collectRectangles(Raster mask, Rectangle region, Consumer<Rectangle> consumer) {
+    int[] row = new int[region.width];
+    // open rectangles of the previous row, ordered by their start column
+    Rectangle[] open = new Rectangle[region.width];
+    int numOpen = 0;
+    Rectangle[] next = new Rectangle[region.width];
+    for (int y = region.y; y < region.y + region.height; y++) {
+      mask.getSamples(region.x, y, region.width, 1, 0, row);
+      int numNext = 0;
+      int openIndex = 0;
+      int x = 0;
+      while (x < region.width) {
+        if (row[x] == 0) {
+          x++;
+          continue;
+        }
+        int runStart = x;
+        while (x < region.width && row[x] != 0) {
+          x++;
+        }
+        int runX = region.x + runStart;
+        int runWidth = x - runStart;
+        // close open rectangles which end before this run
+        while (openIndex < numOpen && open[openIndex].x < runX) {
+          consumer.accept(open[openIndex++]);
+        }
+        if (openIndex < numOpen && open[openIndex].x == runX && open[openIndex].width == runWidth) {
+          Rectangle extended = open[openIndex++];
+          extended.height++;
+          next[numNext++] = extended;
+        } else {
+          next[numNext++] = new Rectangle(runX, y, runWidth, 1);
+        }
+      }
+      while (openIndex < numOpen) {
+        consumer.accept(open[openIndex++]);
+      }
+      Rectangle[] swap = open;
+      open = next;
+      next = swap;
+      numOpen = numNext;
+    }
+    for (int i = 0; i < numOpen; i++) {
+      consumer.accept(open[i]);
+    }
+  }
+}
@@ -20,26 +20,44 @@
  * -> http://www.gnu.org/licenses/gpl-3.0.html
  * =========================LICENSE_END==================================
  */
-
 package org.eomasters.snap.utils;
 
+import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
-import java.util.stream.IntStream;
+import java.util.concurrent.Executor;
 import javax.media.jai.ImageLayout;
-import javax.media.jai.PlanarImage;
 import javax.media.jai.PointOpImage;
+import javax.media.jai.RasterAccessor;
+import javax.media.jai.RasterFormatTag;
 
 /**
  * An image which masks another image. Only the pixels in the mask image are used, pixels outside the mask are set to
- * the provided fillValue.
+ * the provided fillValue. All bands of the source image are masked by the same mask, optionally with a different fill
+ * value per band.
+ *
+ * <p>The computation works directly on the backing arrays of the source, mask and destination rasters. A byte mask
+ * with a component sample model, as created by the {@link ValidMaskImageBuilder}, is never copied. If the source, the
+ * mask and this image share the same tile grid, tiles which are entirely valid are passed through from the source and
+ * tiles which are entirely masked share a constant data buffer. Such tiles must not be modified.
+ *
+ * <p>When the tiles are requested in scan order, e.g. by a GPF writer, the source and mask tiles of the next tile row
+ * can be prefetched, see {@link #setPrefetchEnabled(boolean)}.
  */
 public class MaskedOpImage extends PointOpImage {
 
-  private final Number fillValue;
+  private final int[] intFills;
+  private final float[] floatFills;
+  private final double[] doubleFills;
+  private final RasterFormatTag[] formatTags;
+  private final RasterFormatTag maskFormatTag;
+  private final boolean alignedTiles;
+  private final boolean passThrough;
+  private volatile TileRowPrefetcher[] prefetchers;
 
   /**
    * Creates a new masked image.
@@ -49,58 +67,361 @@ public class MaskedOpImage extends PointOpImage {
    * @param fillValue the fill value used for areas outside the mask image
    */
   public MaskedOpImage(RenderedImage source, RenderedImage maskImage, Number fillValue) {
-    super(source, maskImage, new ImageLayout(source), null, false);
-    this.fillValue = fillValue;
+    this(source, maskImage, new Number[]{fillValue});
   }
 
-  @Override
-  protected void computeRect(PlanarImage[] sources, WritableRaster dest, Rectangle destRect) {
-    Raster maskRaster = sources[1].getData(destRect);
-    int[] maskData = new int[destRect.width * destRect.height];
-    maskRaster.getSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, maskData);
-
-    Raster sourceRaster = sources[0].getData(destRect);
-    int sourceDataType = sourceRaster.getSampleModel().getDataType();
-    if (sourceDataType == DataBuffer.TYPE_DOUBLE) {
-      processDouble(sourceRaster, dest, destRect, maskData);
-    } else if (sourceDataType == DataBuffer.TYPE_FLOAT) {
-      processFloat(sourceRaster, dest, destRect, maskData);
+  /**
+   * Creates a new masked image with individual fill values per band.
+   *
+   * @param source     the source image
+   * @param maskImage  the mask image
+   * @param fillValues the fill values used for areas outside the mask image, either one for all bands or one per band
+   *                   of the source image
+   */
+  public MaskedOpImage(RenderedImage source, RenderedImage maskImage, Number[] fillValues) {
+    super(source, maskImage, new ImageLayout(source), null, true);
+    int numBands = source.getSampleModel().getNumBands();
+    if (fillValues.length != 1 && fillValues.length != numBands) {
+      throw new IllegalArgumentException(
+          "Expected 1 or " + numBands + " fill values, but got " + fillValues.length);
+    }
+    this.intFills = new int[numBands];
+    this.floatFills = new float[numBands];
+    this.doubleFills = new double[numBands];
+    for (int b = 0; b < numBands; b++) {
+      Number fillValue = fillValues.length == 1 ? fillValues[0] : fillValues[b];
+      intFills[b] = fillValue.intValue();
+      floatFills[b] = fillValue.floatValue();
+      doubleFills[b] = fillValue.doubleValue();
+    }
+    // the tags are computed separately, otherwise the mask would promote the data type of the source or vice versa
+    this.formatTags = RasterAccessor.findCompatibleTags(new RenderedImage[]{source}, this);
+    this.maskFormatTag = createMaskFormatTag(maskImage);
+    this.alignedTiles = SharedTiles.haveSameTileGrid(this, source) && SharedTiles.haveSameTileGrid(this, maskImage);
+    this.passThrough = alignedTiles && getSampleModel().equals(source.getSampleModel());
+    TileCachePolicy.NEVER.applyTo(this);
+  }
+
+  /**
+   * Returns the mask image which defines the valid area of this image.
+   *
+   * @return the mask image
+   */
+  public RenderedImage getMaskImage() {
+    return getSourceImage(1);
+  }
+
+  /**
+   * Returns the fill value used for the given band outside the mask.
+   *
+   * @param band the band index
+   * @return the fill value
+   */
+  public double getFillValue(int band) {
+    return doubleFills[band];
+  }
+
+  /**
+   * Sets how the tiles of this image are cached. By default, they are not cached, see {@link TileCachePolicy#NEVER}.
+   *
+   * @param policy the tile cache policy
+   */
+  public void setTileCachePolicy(TileCachePolicy policy) {
+    policy.applyTo(this);
+  }
+
+  /**
+   * Enables or disables the prefetching of source and mask tiles. If enabled, and the tiles of this image are
+   * requested row by row, the tiles of the next row are requested in the background by a shared executor. Prefetching
+   * requires that the source, the mask and this image share the same tile grid, otherwise it has no effect. By
+   * default, prefetching is disabled.
+   *
+   * @param enabled whether tiles are prefetched
+   */
+  public void setPrefetchEnabled(boolean enabled) {
+    setPrefetchExecutor(enabled ? TileRowPrefetcher.defaultExecutor() : null);
+  }
+
+  /**
+   * Enables the prefetching of source and mask tiles using the given executor, see
+   * {@link #setPrefetchEnabled(boolean)}.
+   *
+   * @param executor the executor requesting the tiles of the next row, or {@code null} to disable prefetching
+   */
+  public void setPrefetchExecutor(Executor executor) {
+    if (executor == null || !alignedTiles) {
+      prefetchers = null;
     } else {
-      processInt(sourceRaster, dest, destRect, maskData);
+      prefetchers = new TileRowPrefetcher[]{
+          new TileRowPrefetcher(getSourceImage(0), executor),
+          new TileRowPrefetcher(getSourceImage(1), executor)
+      };
+    }
+  }
+
+  static RasterFormatTag createMaskFormatTag(RenderedImage maskImage) {
+    if (maskImage.getSampleModel().getDataType() == DataBuffer.TYPE_BYTE
+        && maskImage.getSampleModel() instanceof ComponentSampleModel) {
+      return new RasterFormatTag(maskImage.getSampleModel(), RasterAccessor.TAG_BYTE_UNCOPIED);
+    }
+    // all other masks, e.g. packed binary masks, are read as int samples
+    return new RasterFormatTag(maskImage.getSampleModel(), RasterAccessor.TAG_INT_COPIED);
+  }
+
+  @Override
+  public Raster computeTile(int tileX, int tileY) {
+    if (!alignedTiles) {
+      return super.computeTile(tileX, tileY);
     }
+    // source and mask tiles match the tiles of this image, so the tiles can be handled directly
+    Raster maskTile = getSourceTile(1, tileX, tileY);
+    Rectangle region = getTileRect(tileX, tileY);
+    Point location = new Point(tileXToX(tileX), tileYToY(tileY));
+    MaskRuns.Coverage coverage = MaskRuns.classify(maskTile, region);
+    if (coverage == MaskRuns.Coverage.INVALID) {
+      return SharedTiles.constantTile(getSampleModel(), doubleFills, location);
+    }
+    Raster sourceTile = getSourceTile(0, tileX, tileY);
+    if (coverage == MaskRuns.Coverage.VALID && passThrough) {
+      return sourceTile;
+    }
+    WritableRaster dest = createWritableRaster(getSampleModel(), location);
+    computeRect(new Raster[]{sourceTile, maskTile}, dest, region);
+    return dest;
+  }
+
+  private Raster getSourceTile(int sourceIndex, int tileX, int tileY) {
+    TileRowPrefetcher[] currentPrefetchers = prefetchers;
+    if (currentPrefetchers != null) {
+      return currentPrefetchers[sourceIndex].getTile(tileX, tileY);
+    }
+    return getSourceImage(sourceIndex).getTile(tileX, tileY);
   }
 
-  private void processInt(Raster sourceRaster, WritableRaster dest, Rectangle destRect, int[] maskData) {
-    int[] destData = new int[destRect.width * destRect.height];
-    sourceRaster.getSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
-    IntStream.range(0, destData.length).forEach(i -> {
-      if (maskData[i] == 0) {
-        destData[i] = fillValue.intValue();
+  @Override
+  protected void computeRect(Raster[] sources, WritableRaster dest, Rectangle destRect) {
+    RasterAccessor s = new RasterAccessor(sources[0], destRect, formatTags[0], getSourceImage(0).getColorModel());
+    RasterAccessor m = new RasterAccessor(sources[1], destRect, maskFormatTag, getSourceImage(1).getColorModel());
+    RasterAccessor d = new RasterAccessor(dest, destRect, formatTags[1], getColorModel());
+    byte[] byteMask = m.getDataType() == DataBuffer.TYPE_BYTE ? m.getByteDataArray(0) : null;
+    int[] intMask = byteMask == null ? m.getIntDataArray(0) : null;
+    switch (d.getDataType()) {
+      case DataBuffer.TYPE_BYTE -> maskByte(s, m, d, byteMask, intMask);
+      case DataBuffer.TYPE_USHORT, DataBuffer.TYPE_SHORT -> maskShort(s, m, d, byteMask, intMask);
+      case DataBuffer.TYPE_INT -> maskInt(s, m, d, byteMask, intMask);
+      case DataBuffer.TYPE_FLOAT -> maskFloat(s, m, d, byteMask, intMask);
+      case DataBuffer.TYPE_DOUBLE -> maskDouble(s, m, d, byteMask, intMask);
+      default -> throw new IllegalStateException("Unsupported data type: " + d.getDataType());
+    }
+    d.copyDataToRaster();
+  }
+
+  // The kernels below differ only in the array type. The mask is read once per tile and each mask line is applied to
+  // all bands while it is still in the cache. Contiguous lines with a byte mask are processed by the VectorKernels if
+  // they are enabled. The check of the mask type is loop invariant and is hoisted out of the loops by the JIT compiler.
+
+  private void maskByte(RasterAccessor s, RasterAccessor m, RasterAccessor d, byte[] byteMask, int[] intMask) {
+    byte[][] src = s.getByteDataArrays();
+    byte[][] dst = d.getByteDataArrays();
+    int[] sBandOffsets = s.getBandOffsets();
+    int[] dBandOffsets = d.getBandOffsets();
+    int sLine = 0;
+    int mLine = m.getBandOffset(0);
+    int dLine = 0;
+    int sPixelStride = s.getPixelStride();
+    int mPixelStride = m.getPixelStride();
+    int dPixelStride = d.getPixelStride();
+    int width = d.getWidth();
+    int height = d.getHeight();
+    boolean vectorized = Vectorization.isEnabled() && byteMask != null
+        && sPixelStride == 1 && mPixelStride == 1 && dPixelStride == 1;
+    for (int y = 0; y < height; y++) {
+      for (int b = 0; b < dst.length; b++) {
+        byte[] srcBand = src[b];
+        byte[] dstBand = dst[b];
+        byte fill = (byte) intFills[b];
+        int sp = sLine + sBandOffsets[b];
+        int mp = mLine;
+        int dp = dLine + dBandOffsets[b];
+        if (vectorized) {
+          VectorKernels.maskByte(srcBand, sp, byteMask, mp, dstBand, dp, width, fill);
+          continue;
+        }
+        for (int x = 0; x < width; x++) {
+          dstBand[dp] = isValid(byteMask, intMask, mp) ? srcBand[sp] : fill;
+          sp += sPixelStride;
+          mp += mPixelStride;
+          dp += dPixelStride;
+        }
+      }
+      sLine += s.getScanlineStride();
+      mLine += m.getScanlineStride();
+      dLine += d.getScanlineStride();
+    }
+  }
+
+  private void maskShort(RasterAccessor s, RasterAccessor m, RasterAccessor d, byte[] byteMask, int[] intMask) {
+    short[][] src = s.getShortDataArrays();
+    short[][] dst = d.getShortDataArrays();
+    int[] sBandOffsets = s.getBandOffsets();
+    int[] dBandOffsets = d.getBandOffsets();
+    int sLine = 0;
+    int mLine = m.getBandOffset(0);
+    int dLine = 0;
+    int sPixelStride = s.getPixelStride();
+    int mPixelStride = m.getPixelStride();
+    int dPixelStride = d.getPixelStride();
+    int width = d.getWidth();
+    int height = d.getHeight();
+    boolean vectorized = Vectorization.isEnabled() && byteMask != null
+        && sPixelStride == 1 && mPixelStride == 1 && dPixelStride == 1;
+    for (int y = 0; y < height; y++) {
+      for (int b = 0; b < dst.length; b++) {
+        short[] srcBand = src[b];
+        short[] dstBand = dst[b];
+        short fill = (short) intFills[b];
+        int sp = sLine + sBandOffsets[b];
+        int mp = mLine;
+        int dp = dLine + dBandOffsets[b];
+        if (vectorized) {
+          VectorKernels.maskShort(srcBand, sp, byteMask, mp, dstBand, dp, width, fill);
+          continue;
+        }
+        for (int x = 0; x < width; x++) {
+          dstBand[dp] = isValid(byteMask, intMask, mp) ? srcBand[sp] : fill;
+          sp += sPixelStride;
+          mp += mPixelStride;
+          dp += dPixelStride;
+        }
       }
-    });
-    dest.setSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
+      sLine += s.getScanlineStride();
+      mLine += m.getScanlineStride();
+      dLine += d.getScanlineStride();
+    }
   }
 
-  private void processFloat(Raster sourceRaster, WritableRaster dest, Rectangle destRect, int[] maskData) {
-    float[] destData = new float[destRect.width * destRect.height];
-    sourceRaster.getSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
-    IntStream.range(0, destData.length).forEach(i -> {
-      if (maskData[i] == 0) {
-        destData[i] = fillValue.floatValue();
+  private void maskInt(RasterAccessor s, RasterAccessor m, RasterAccessor d, byte[] byteMask, int[] intMask) {
+    int[][] src = s.getIntDataArrays();
+    int[][] dst = d.getIntDataArrays();
+    int[] sBandOffsets = s.getBandOffsets();
+    int[] dBandOffsets = d.getBandOffsets();
+    int sLine = 0;
+    int mLine = m.getBandOffset(0);
+    int dLine = 0;
+    int sPixelStride = s.getPixelStride();
+    int mPixelStride = m.getPixelStride();
+    int dPixelStride = d.getPixelStride();
+    int width = d.getWidth();
+    int height = d.getHeight();
+    boolean vectorized = Vectorization.isEnabled() && byteMask != null
+        && sPixelStride == 1 && mPixelStride == 1 && dPixelStride == 1;
+    for (int y = 0; y < height; y++) {
+      for (int b = 0; b < dst.length; b++) {
+        int[] srcBand = src[b];
+        int[] dstBand = dst[b];
+        int fill = intFills[b];
+        int sp = sLine + sBandOffsets[b];
+        int mp = mLine;
+        int dp = dLine + dBandOffsets[b];
+        if (vectorized) {
+          VectorKernels.maskInt(srcBand, sp, byteMask, mp, dstBand, dp, width, fill);
+          continue;
+        }
+        for (int x = 0; x < width; x++) {
+          dstBand[dp] = isValid(byteMask, intMask, mp) ? srcBand[sp] : fill;
+          sp += sPixelStride;
+          mp += mPixelStride;
+          dp += dPixelStride;
+        }
       }
-    });
-    dest.setSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
+      sLine += s.getScanlineStride();
+      mLine += m.getScanlineStride();
+      dLine += d.getScanlineStride();
+    }
   }
 
-  private void processDouble(Raster sourceRaster, WritableRaster dest, Rectangle destRect, int[] maskData) {
-    double[] destData = new double[destRect.width * destRect.height];
-    sourceRaster.getSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
-    IntStream.range(0, destData.length).forEach(i -> {
-      if (maskData[i] == 0) {
-        destData[i] = fillValue.doubleValue();
+  private void maskFloat(RasterAccessor s, RasterAccessor m, RasterAccessor d, byte[] byteMask, int[] intMask) {
+    float[][] src = s.getFloatDataArrays();
+    float[][] dst = d.getFloatDataArrays();
+    int[] sBandOffsets = s.getBandOffsets();
+    int[] dBandOffsets = d.getBandOffsets();
+    int sLine = 0;
+    int mLine = m.getBandOffset(0);
+    int dLine = 0;
+    int sPixelStride = s.getPixelStride();
+    int mPixelStride = m.getPixelStride();
+    int dPixelStride = d.getPixelStride();
+    int width = d.getWidth();
+    int height = d.getHeight();
+    boolean vectorized = Vectorization.isEnabled() && byteMask != null
+        && sPixelStride == 1 && mPixelStride == 1 && dPixelStride == 1;
+    for (int y = 0; y < height; y++) {
+      for (int b = 0; b < dst.length; b++) {
+        float[] srcBand = src[b];
+        float[] dstBand = dst[b];
+        float fill = floatFills[b];
+        int sp = sLine + sBandOffsets[b];
+        int mp = mLine;
+        int dp = dLine + dBandOffsets[b];
+        if (vectorized) {
+          VectorKernels.maskFloat(srcBand, sp, byteMask, mp, dstBand, dp, width, fill);
+          continue;
+        }
+        for (int x = 0; x < width; x++) {
+          dstBand[dp] = isValid(byteMask, intMask, mp) ? srcBand[sp] : fill;
+          sp += sPixelStride;
+          mp += mPixelStride;
+          dp += dPixelStride;
+        }
       }
-    });
-    dest.setSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
+      sLine += s.getScanlineStride();
+      mLine += m.getScanlineStride();
+      dLine += d.getScanlineStride();
+    }
+  }
+
+  private void maskDouble(RasterAccessor s, RasterAccessor m, RasterAccessor d, byte[] byteMask, int[] intMask) {
+    double[][] src = s.getDoubleDataArrays();
+    double[][] dst = d.getDoubleDataArrays();
+    int[] sBandOffsets = s.getBandOffsets();
+    int[] dBandOffsets = d.getBandOffsets();
+    int sLine = 0;
+    int mLine = m.getBandOffset(0);
+    int dLine = 0;
+    int sPixelStride = s.getPixelStride();
+    int mPixelStride = m.getPixelStride();
+    int dPixelStride = d.getPixelStride();
+    int width = d.getWidth();
+    int height = d.getHeight();
+    boolean vectorized = Vectorization.isEnabled() && byteMask != null
+        && sPixelStride == 1 && mPixelStride == 1 && dPixelStride == 1;
+    for (int y = 0; y < height; y++) {
+      for (int b = 0; b < dst.length; b++) {
+        double[] srcBand = src[b];
+        double[] dstBand = dst[b];
+        double fill = doubleFills[b];
+        int sp = sLine + sBandOffsets[b];
+        int mp = mLine;
+        int dp = dLine + dBandOffsets[b];
+        if (vectorized) {
+          VectorKernels.maskDouble(srcBand, sp, byteMask, mp, dstBand, dp, width, fill);
+          continue;
+        }
+        for (int x = 0; x < width; x++) {
+          dstBand[dp] = isValid(byteMask, intMask, mp) ? srcBand[sp] : fill;
+          sp += sPixelStride;
+          mp += mPixelStride;
+          dp += dPixelStride;
+        }
+      }
+      sLine += s.getScanlineStride();
+      mLine += m.getScanlineStride();
+      dLine += d.getScanlineStride();
+    }
+  }
+
+  private static boolean isValid(byte[] byteMask, int[] intMask, int index) {
+    return byteMask != null ? byteMask[index] != 0 : intMask[index] != 0;
   }
 
 }
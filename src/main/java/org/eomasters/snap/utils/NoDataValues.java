@@ -0,0 +1,196 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.util.Arrays;
+
+/**
+ * Describes which sample values are regarded as no-data. No-data can be given as single values, as closed value
+ * ranges, and as NaN or infinity. Instances are immutable, the {@code with} methods return a new instance.
+ */
+public final class NoDataValues {
+
+  /**
+   * No value is regarded as no-data.
+   */
+  public static final NoDataValues NONE = new NoDataValues(new double[0], new double[0], new double[0], false, false);
+
+  private final double[] values;
+  private final double[] rangeMinima;
+  private final double[] rangeMaxima;
+  private final boolean nan;
+  private final boolean infinity;
+  // float samples are compared in float, a sentinel like -9999.9 is not exactly representable as a float
+  private final float[] floatValues;
+  private final float[] floatRangeMinima;
+  private final float[] floatRangeMaxima;
+
+  private NoDataValues(double[] values, double[] rangeMinima, double[] rangeMaxima, boolean nan, boolean infinity) {
+    this.values = values;
+    this.rangeMinima = rangeMinima;
+    this.rangeMaxima = rangeMaxima;
+    this.nan = nan;
+    this.infinity = infinity;
+    this.floatValues = toFloats(values);
+    this.floatRangeMinima = toFloats(rangeMinima);
+    this.floatRangeMaxima = toFloats(rangeMaxima);
+  }
+
+  /**
+   * Creates the no-data description for the given sentinel values.
+   *
+   * @param values the sentinel values
+   * @return the no-data description
+   */
+  public static NoDataValues of(double... values) {
+    return NONE.withValues(values);
+  }
+
+  /**
+   * Adds sentinel values.
+   *
+   * @param values the sentinel values
+   * @return a new no-data description
+   */
+  public NoDataValues withValues(double... values) {
+    double[] newValues = Arrays.copyOf(this.values, this.values.length + values.length);
+    System.arraycopy(values, 0, newValues, this.values.length, values.length);
+    return new NoDataValues(newValues, rangeMinima, rangeMaxima, nan, infinity);
+  }
+
+  /**
+   * Adds a range of values. The minimum and the maximum are part of the range.
+   *
+   * @param min the minimum of the range
+   * @param max the maximum of the range
+   * @return a new no-data description
+   */
+  public NoDataValues withRange(double min, double max) {
+    if (!(min <= max)) {
+      throw new IllegalArgumentException("The minimum must not be greater than the maximum");
+    }
+    double[] newMinima = Arrays.copyOf(rangeMinima, rangeMinima.length + 1);
+    double[] newMaxima = Arrays.copyOf(rangeMaxima, rangeMaxima.length + 1);
+    newMinima[rangeMinima.length] = min;
+    newMaxima[rangeMaxima.length] = max;
+    return new NoDataValues(values, newMinima, newMaxima, nan, infinity);
+  }
+
+  /**
+   * Regards NaN as no-data.
+   *
+   * @return a new no-data description
+   */
+  public NoDataValues withNaN() {
+    return new NoDataValues(values, rangeMinima, rangeMaxima, true, infinity);
+  }
+
+  /**
+   * Regards positive and negative infinity as no-data.
+   *
+   * @return a new no-data description
+   */
+  public NoDataValues withInfinity() {
+    return new NoDataValues(values, rangeMinima, rangeMaxima, nan, true);
+  }
+
+  /**
+   * Tells whether the given value is no-data.
+   *
+   * @param value the value to check
+   * @return {@code true} if the value is no-data
+   */
+  public boolean contains(double value) {
+    if (Double.isNaN(value)) {
+      return nan;
+    }
+    if (infinity && Double.isInfinite(value)) {
+      return true;
+    }
+    for (double v : values) {
+      if (v == value) {
+        return true;
+      }
+    }
+    for (int i = 0; i < rangeMinima.length; i++) {
+      if (value >= rangeMinima[i] && value <= rangeMaxima[i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Tells whether the given float sample is no-data. The sentinel values and ranges are converted to float before
+   * comparing, so a sentinel which is not exactly representable as a float matches the float sample written for it.
+   *
+   * @param value the float sample to check
+   * @return {@code true} if the value is no-data
+   */
+  public boolean containsFloat(float value) {
+    if (Float.isNaN(value)) {
+      return nan;
+    }
+    if (infinity && Float.isInfinite(value)) {
+      return true;
+    }
+    for (float v : floatValues) {
+      if (v == value) {
+        return true;
+      }
+    }
+    for (int i = 0; i < floatRangeMinima.length; i++) {
+      if (value >= floatRangeMinima[i] && value <= floatRangeMaxima[i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Tells whether no value is regarded as no-data.
+   *
+   * @return {@code true} if nothing is no-data
+   */
+  public boolean isEmpty() {
+    return values.length == 0 && rangeMinima.length == 0 && !nan && !infinity;
+  }
+
+  private static float[] toFloats(double[] values) {
+    float[] floats = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floats[i] = (float) values[i];
+    }
+    return floats;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("NoDataValues{values=").append(Arrays.toString(values));
+    for (int i = 0; i < rangeMinima.length; i++) {
+      sb.append(", range=[").append(rangeMinima[i]).append(", ").append(rangeMaxima[i]).append(']');
+    }
+    return sb.append(", nan=").append(nan).append(", infinity=").append(infinity).append('}').toString();
+  }
+}
@@ -0,0 +1,238 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds an image which applies several per-pixel operations to a source image in a single pass. Instead of chaining
+ * e.g. a {@link ReplaceNoDataOpImage}, a {@link MaskedOpImage} and a rescaling operator, where each operator computes
+ * and caches its own tiles, all stages are fused into one operator which reads the source once and writes the
+ * destination once per tile.
+ *
+ * <p>The stages are applied in the order they are added. The samples are processed as double values, the result is
+ * converted to the target data type, by default the data type of the source. Integer results are rounded and clamped
+ * to the range of the data type.
+ *
+ * <pre>{@code
+ * RenderedImage image = new PixelPipeline(source)
+ *     .replaceNoData(NoDataValues.of(0, 65535), Double.NaN)
+ *     .mask(validMask, Double.NaN)
+ *     .scale(0.0001, 0)
+ *     .clamp(0, 1)
+ *     .cast(DataBuffer.TYPE_FLOAT)
+ *     .create();
+ * }</pre>
+ */
+public class PixelPipeline {
+
+  private final RenderedImage source;
+  private final List<PixelStage> stages = new ArrayList<>();
+  private RenderedImage maskImage;
+  private int dataType;
+  private TileCachePolicy tileCachePolicy = TileCachePolicy.NEVER;
+
+  /**
+   * Creates a new pipeline for the given source image.
+   *
+   * @param source the source image
+   */
+  public PixelPipeline(RenderedImage source) {
+    this.source = source;
+    this.dataType = source.getSampleModel().getDataType();
+  }
+
+  /**
+   * Replaces no-data values. As long as the samples of a float source have not been scaled or clamped, they are
+   * compared with the no-data values in float precision, so that sentinels like -9999.9, which are not exactly
+   * representable as float, are found.
+   *
+   * @param noDataValues the values regarded as no-data
+   * @param replacement  the replacement value
+   * @return this pipeline
+   */
+  public PixelPipeline replaceNoData(NoDataValues noDataValues, double replacement) {
+    boolean floatSamples = source.getSampleModel().getDataType() == DataBuffer.TYPE_FLOAT
+        && stages.stream().noneMatch(stage -> stage instanceof ScaleStage || stage instanceof ClampStage);
+    stages.add(floatSamples ? new ReplaceFloatNoDataStage(noDataValues, replacement)
+        : new ReplaceNoDataStage(noDataValues, replacement));
+    return this;
+  }
+
+  /**
+   * Sets all pixels outside the mask to the fill value. A mask sample is regarded as valid if it is not zero. Only one
+   * mask can be used per pipeline, use the {@link ValidMaskImageBuilder} to combine several masks.
+   *
+   * @param maskImage the mask image, must have the same bounds as the source image
+   * @param fillValue the fill value used for areas outside the mask
+   * @return this pipeline
+   */
+  public PixelPipeline mask(RenderedImage maskImage, double fillValue) {
+    if (this.maskImage != null) {
+      throw new IllegalStateException("Only one mask can be used per pipeline");
+    }
+    this.maskImage = maskImage;
+    stages.add(new MaskStage(fillValue));
+    return this;
+  }
+
+  /**
+   * Scales the samples, {@code value * factor + offset}.
+   *
+   * @param factor the scaling factor
+   * @param offset the scaling offset
+   * @return this pipeline
+   */
+  public PixelPipeline scale(double factor, double offset) {
+    stages.add(new ScaleStage(factor, offset));
+    return this;
+  }
+
+  /**
+   * Clamps the samples to the given range. NaN values are not changed.
+   *
+   * @param min the minimum value
+   * @param max the maximum value
+   * @return this pipeline
+   */
+  public PixelPipeline clamp(double min, double max) {
+    if (!(min <= max)) {
+      throw new IllegalArgumentException("The minimum must not be greater than the maximum");
+    }
+    stages.add(new ClampStage(min, max));
+    return this;
+  }
+
+  /**
+   * Sets the data type of the resulting image.
+   *
+   * @param dataType the data type, one of the {@code DataBuffer.TYPE_*} constants
+   * @return this pipeline
+   */
+  public PixelPipeline cast(int dataType) {
+    if (dataType < DataBuffer.TYPE_BYTE || dataType > DataBuffer.TYPE_DOUBLE) {
+      throw new IllegalArgumentException("Unsupported data type: " + dataType);
+    }
+    this.dataType = dataType;
+    return this;
+  }
+
+  /**
+   * Sets how the tiles of the resulting image are cached. By default, they are not cached, see
+   * {@link TileCachePolicy#NEVER}.
+   *
+   * @param policy the tile cache policy
+   * @return this pipeline
+   */
+  public PixelPipeline tileCachePolicy(TileCachePolicy policy) {
+    this.tileCachePolicy = policy;
+    return this;
+  }
+
+  /**
+   * Creates the image which applies all stages.
+   *
+   * @return the fused image
+   */
+  public RenderedImage create() {
+    PixelPipelineOpImage image = new PixelPipelineOpImage(source, maskImage, stages.toArray(new PixelStage[0]),
+        dataType);
+    tileCachePolicy.applyTo(image);
+    return image;
+  }
+
+  /**
+   * A stage of the pipeline. Stages process a whole line of samples at once, so that each loop stays monomorphic and
+   * can be compiled to tight code by the JIT compiler.
+   */
+  interface PixelStage {
+
+    /**
+     * Applies the stage to the samples.
+     *
+     * @param samples the samples of one line
+     * @param mask    the mask samples of the line, zero means invalid. Only present if the pipeline has a mask.
+     * @param length  the number of samples
+     */
+    void apply(double[] samples, int[] mask, int length);
+  }
+
+  private record ReplaceNoDataStage(NoDataValues noDataValues, double replacement) implements PixelStage {
+
+    @Override
+    public void apply(double[] samples, int[] mask, int length) {
+      for (int i = 0; i < length; i++) {
+        if (noDataValues.contains(samples[i])) {
+          samples[i] = replacement;
+        }
+      }
+    }
+  }
+
+  private record ReplaceFloatNoDataStage(NoDataValues noDataValues, double replacement) implements PixelStage {
+
+    @Override
+    public void apply(double[] samples, int[] mask, int length) {
+      for (int i = 0; i < length; i++) {
+        if (noDataValues.containsFloat((float) samples[i])) {
+          samples[i] = replacement;
+        }
+      }
+    }
+  }
+
+  private record MaskStage(double fillValue) implements PixelStage {
+
+    @Override
+    public void apply(double[] samples, int[] mask, int length) {
+      for (int i = 0; i < length; i++) {
+        samples[i] = mask[i] != 0 ? samples[i] : fillValue;
+      }
+    }
+  }
+
+  private record ScaleStage(double factor, double offset) implements PixelStage {
+
+    @Override
+    public void apply(double[] samples, int[] mask, int length) {
+      for (int i = 0; i < length; i++) {
+        samples[i] = samples[i] * factor + offset;
+      }
+    }
+  }
+
+  private record ClampStage(double min, double max) implements PixelStage {
+
+    @Override
+    public void apply(double[] samples, int[] mask, int length) {
+      for (int i = 0; i < length; i++) {
+        double value = samples[i];
+        samples[i] = value < min ? min : value > max ? max : value;
+      }
+    }
+  }
+}
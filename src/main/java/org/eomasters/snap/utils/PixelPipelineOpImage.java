@@ -0,0 +1,236 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.Rectangle;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+import javax.media.jai.ImageLayout;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.PointOpImage;
+import javax.media.jai.RasterAccessor;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.RasterFormatTag;
+import org.eomasters.snap.utils.PixelPipeline.PixelStage;
+
+/**
+ * The image created by the {@link PixelPipeline}. Each line of a tile is read into a buffer of doubles, all stages are
+ * applied and the result is written to the destination.
+ */
+final class PixelPipelineOpImage extends PointOpImage {
+
+  private final PixelStage[] stages;
+  private final boolean hasMask;
+  private final RasterFormatTag sourceFormatTag;
+  private final RasterFormatTag destFormatTag;
+  private final RasterFormatTag maskFormatTag;
+
+  PixelPipelineOpImage(RenderedImage source, RenderedImage maskImage, PixelStage[] stages, int dataType) {
+    super(toSources(source, maskImage), createLayout(source, dataType), null, true);
+    this.stages = stages;
+    this.hasMask = maskImage != null;
+    this.sourceFormatTag = RasterAccessor.findCompatibleTags(new RenderedImage[]{source}, source)[0];
+    this.destFormatTag = RasterAccessor.findCompatibleTags(new RenderedImage[]{this}, this)[1];
+    this.maskFormatTag = hasMask ? MaskedOpImage.createMaskFormatTag(maskImage) : null;
+  }
+
+  private static Vector<RenderedImage> toSources(RenderedImage source, RenderedImage maskImage) {
+    Vector<RenderedImage> sources = new Vector<>();
+    sources.add(source);
+    if (maskImage != null) {
+      sources.add(maskImage);
+    }
+    return sources;
+  }
+
+  private static ImageLayout createLayout(RenderedImage source, int dataType) {
+    ImageLayout layout = new ImageLayout(source);
+    SampleModel sampleModel = source.getSampleModel();
+    if (sampleModel.getDataType() != dataType) {
+      int width = source.getTileWidth();
+      int height = source.getTileHeight();
+      int numBands = sampleModel.getNumBands();
+      SampleModel targetSampleModel = sampleModel instanceof BandedSampleModel
+          ? RasterFactory.createBandedSampleModel(dataType, width, height, numBands)
+          : RasterFactory.createPixelInterleavedSampleModel(dataType, width, height, numBands);
+      layout.setSampleModel(targetSampleModel);
+      ColorModel colorModel = PlanarImage.createColorModel(targetSampleModel);
+      if (colorModel != null) {
+        layout.setColorModel(colorModel);
+      } else {
+        layout.unsetValid(ImageLayout.COLOR_MODEL_MASK);
+      }
+    }
+    return layout;
+  }
+
+  @Override
+  protected void computeRect(Raster[] sources, WritableRaster dest, Rectangle destRect) {
+    RasterAccessor s = new RasterAccessor(sources[0], destRect, sourceFormatTag, getSourceImage(0).getColorModel());
+    RasterAccessor d = new RasterAccessor(dest, destRect, destFormatTag, getColorModel());
+    RasterAccessor m = null;
+    int[] maskLine = null;
+    if (hasMask) {
+      m = new RasterAccessor(sources[1], destRect, maskFormatTag, getSourceImage(1).getColorModel());
+      maskLine = new int[d.getWidth()];
+    }
+    double[] line = new double[d.getWidth()];
+    for (int y = 0; y < d.getHeight(); y++) {
+      if (m != null) {
+        readMaskLine(m, y, maskLine);
+      }
+      for (int b = 0; b < d.getNumBands(); b++) {
+        readLine(s, b, y, line);
+        for (PixelStage stage : stages) {
+          stage.apply(line, maskLine, line.length);
+        }
+        writeLine(d, b, y, line);
+      }
+    }
+    d.copyDataToRaster();
+  }
+
+  private static void readMaskLine(RasterAccessor m, int y, int[] maskLine) {
+    int offset = m.getBandOffset(0) + y * m.getScanlineStride();
+    int stride = m.getPixelStride();
+    if (m.getDataType() == DataBuffer.TYPE_BYTE) {
+      byte[] data = m.getByteDataArray(0);
+      for (int x = 0; x < maskLine.length; x++, offset += stride) {
+        maskLine[x] = data[offset];
+      }
+    } else {
+      int[] data = m.getIntDataArray(0);
+      for (int x = 0; x < maskLine.length; x++, offset += stride) {
+        maskLine[x] = data[offset];
+      }
+    }
+  }
+
+  private static void readLine(RasterAccessor s, int band, int y, double[] line) {
+    int offset = s.getBandOffset(band) + y * s.getScanlineStride();
+    int stride = s.getPixelStride();
+    switch (s.getDataType()) {
+      case DataBuffer.TYPE_BYTE -> {
+        byte[] data = s.getByteDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          line[x] = data[offset] & 0xFF;
+        }
+      }
+      case DataBuffer.TYPE_USHORT -> {
+        short[] data = s.getShortDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          line[x] = data[offset] & 0xFFFF;
+        }
+      }
+      case DataBuffer.TYPE_SHORT -> {
+        short[] data = s.getShortDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          line[x] = data[offset];
+        }
+      }
+      case DataBuffer.TYPE_INT -> {
+        int[] data = s.getIntDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          line[x] = data[offset];
+        }
+      }
+      case DataBuffer.TYPE_FLOAT -> {
+        float[] data = s.getFloatDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          line[x] = data[offset];
+        }
+      }
+      case DataBuffer.TYPE_DOUBLE -> {
+        double[] data = s.getDoubleDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          line[x] = data[offset];
+        }
+      }
+      default -> throw new IllegalStateException("Unsupported data type: " + s.getDataType());
+    }
+  }
+
+  private static void writeLine(RasterAccessor d, int band, int y, double[] line) {
+    int offset = d.getBandOffset(band) + y * d.getScanlineStride();
+    int stride = d.getPixelStride();
+    switch (d.getDataType()) {
+      case DataBuffer.TYPE_BYTE -> {
+        byte[] data = d.getByteDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          data[offset] = (byte) clampRound(line[x], 0, 255);
+        }
+      }
+      case DataBuffer.TYPE_USHORT -> {
+        short[] data = d.getShortDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          data[offset] = (short) clampRound(line[x], 0, 65535);
+        }
+      }
+      case DataBuffer.TYPE_SHORT -> {
+        short[] data = d.getShortDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          data[offset] = (short) clampRound(line[x], Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+      }
+      case DataBuffer.TYPE_INT -> {
+        int[] data = d.getIntDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          data[offset] = clampRound(line[x], Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+      }
+      case DataBuffer.TYPE_FLOAT -> {
+        float[] data = d.getFloatDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          data[offset] = (float) line[x];
+        }
+      }
+      case DataBuffer.TYPE_DOUBLE -> {
+        double[] data = d.getDoubleDataArray(band);
+        for (int x = 0; x < line.length; x++, offset += stride) {
+          data[offset] = line[x];
+        }
+      }
+      default -> throw new IllegalStateException("Unsupported data type: " + d.getDataType());
+    }
+  }
+
+  /**
+   * Rounds the value to the nearest integer within the given range. NaN is converted to zero.
+   */
+  private static int clampRound(double value, int min, int max) {
+    if (value <= min) {
+      return min;
+    }
+    if (value >= max) {
+      return max;
+    }
+    return (int) Math.round(value);
+  }
+}
@@ -23,23 +23,93 @@
 
 package org.eomasters.snap.utils;
 
+import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
 import javax.media.jai.PointOpImage;
 import javax.media.jai.RasterAccessor;
 import javax.media.jai.RasterFormatTag;
-import org.esa.snap.core.gpf.internal.OperatorContext;
 
 public final class ReplaceNaNOpImage extends PointOpImage {
 
   private final double replacementValue;
+  private final boolean passThrough;
 
   public ReplaceNaNOpImage(RenderedImage source, double nanReplacement) {
     super(source, null, null, true);
     this.replacementValue = nanReplacement;
-    OperatorContext.setTileCache(this);
+    // tiles without NaN are passed through and tiles with only NaN share a constant buffer
+    int dataType = getSampleModel().getDataType();
+    this.passThrough = (dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE)
+        && getSampleModel().getNumBands() == 1 && SharedTiles.canPassThrough(this, source);
+    TileCachePolicy.NEVER.applyTo(this);
+  }
+
+  /**
+   * Sets how the tiles of this image are cached. By default, they are not cached, see {@link TileCachePolicy#NEVER}.
+   *
+   * @param policy the tile cache policy
+   */
+  public void setTileCachePolicy(TileCachePolicy policy) {
+    policy.applyTo(this);
+  }
+
+  @Override
+  public Raster computeTile(int tileX, int tileY) {
+    if (!passThrough) {
+      return super.computeTile(tileX, tileY);
+    }
+    Raster sourceTile = getSourceImage(0).getTile(tileX, tileY);
+    Rectangle region = getTileRect(tileX, tileY);
+    Point location = new Point(tileXToX(tileX), tileYToY(tileY));
+    switch (classifyNaN(sourceTile, region)) {
+      case VALID -> {
+        return sourceTile;
+      }
+      case INVALID -> {
+        return SharedTiles.constantTile(getSampleModel(), new double[]{replacementValue}, location);
+      }
+      default -> {
+        // the source tile has already been fetched, it is not requested a second time by super.computeTile
+        WritableRaster dest = createWritableRaster(getSampleModel(), location);
+        computeRect(new Raster[]{sourceTile}, dest, region);
+        return dest;
+      }
+    }
+  }
+
+  /**
+   * Classifies the region of the source tile. {@link MaskRuns.Coverage#VALID} means that no sample is NaN,
+   * {@link MaskRuns.Coverage#INVALID} that all samples are NaN.
+   */
+  private MaskRuns.Coverage classifyNaN(Raster sourceTile, Rectangle region) {
+    RasterAccessor s = new RasterAccessor(sourceTile, region, getFormatTags()[0], getSourceImage(0).getColorModel());
+    float[] floats = s.getDataType() == DataBuffer.TYPE_FLOAT ? s.getFloatDataArray(0) : null;
+    double[] doubles = floats == null ? s.getDoubleDataArray(0) : null;
+    int lineStride = s.getScanlineStride();
+    int pixelStride = s.getPixelStride();
+    boolean anyNaN = false;
+    boolean anyNumber = false;
+    int lineOffset = s.getBandOffset(0);
+    for (int y = 0; y < s.getHeight(); y++) {
+      int pixelOffset = lineOffset;
+      lineOffset += lineStride;
+      for (int x = 0; x < s.getWidth(); x++) {
+        if (floats != null ? Float.isNaN(floats[pixelOffset]) : Double.isNaN(doubles[pixelOffset])) {
+          anyNaN = true;
+        } else {
+          anyNumber = true;
+        }
+        if (anyNaN && anyNumber) {
+          return MaskRuns.Coverage.MIXED;
+        }
+        pixelOffset += pixelStride;
+      }
+    }
+    return anyNaN ? MaskRuns.Coverage.INVALID : MaskRuns.Coverage.VALID;
   }
 
   @Override
@@ -57,15 +127,9 @@ public final class ReplaceNaNOpImage extends PointOpImage {
     int sLineOffset = sBandOffsets[0];
     int dLineOffset = dBandOffsets[0];
     for (int y = 0; y < d.getHeight(); y++) {
-      int sPixelOffset = sLineOffset;
-      int dPixelOffset = dLineOffset;
+      data.replaceNanLine(sLineOffset, sPixelStride, dLineOffset, dPixelStride, d.getWidth(), replacementValue);
       sLineOffset += sLineStride;
       dLineOffset += dLineStride;
-      for (int x = 0; x < d.getWidth(); x++) {
-        data.replaceNan(sPixelOffset, dPixelOffset, replacementValue);
-        sPixelOffset += sPixelStride;
-        dPixelOffset += dPixelStride;
-      }
     }
     d.copyDataToRaster();
   }
@@ -85,7 +149,8 @@ public final class ReplaceNaNOpImage extends PointOpImage {
 
     }
 
-    abstract void replaceNan(int sPixelOffset, int dPixelOffset, double replacement);
+    abstract void replaceNanLine(int sLineOffset, int sPixelStride, int dLineOffset, int dPixelStride, int width,
+        double replacement);
 
 
     private static class DataF extends Data {
@@ -98,15 +163,22 @@ public final class ReplaceNaNOpImage extends PointOpImage {
       }
 
       @Override
-      void replaceNan(int sPixelOffset, int dPixelOffset, double replacement) {
-        float sourceValue = source[sPixelOffset];
-        if (Float.isNaN(sourceValue)) {
-          dest[dPixelOffset] = (float)replacement;
-        } else {
-          dest[dPixelOffset] = sourceValue;
+      void replaceNanLine(int sLineOffset, int sPixelStride, int dLineOffset, int dPixelStride, int width,
+          double replacement) {
+        float replacementValue = (float) replacement;
+        if (Vectorization.isEnabled() && sPixelStride == 1 && dPixelStride == 1) {
+          VectorKernels.replaceNaNFloat(source, sLineOffset, dest, dLineOffset, width, replacementValue);
+          return;
+        }
+        int sPixelOffset = sLineOffset;
+        int dPixelOffset = dLineOffset;
+        for (int x = 0; x < width; x++) {
+          float sourceValue = source[sPixelOffset];
+          dest[dPixelOffset] = Float.isNaN(sourceValue) ? replacementValue : sourceValue;
+          sPixelOffset += sPixelStride;
+          dPixelOffset += dPixelStride;
         }
       }
-
     }
 
     private static class DataD extends Data {
@@ -119,15 +191,22 @@ public final class ReplaceNaNOpImage extends PointOpImage {
       }
 
       @Override
-      void replaceNan(int sPixelOffset, int dPixelOffset, double replacement) {
-        double sourceValue = source[sPixelOffset];
-        if (Double.isNaN(sourceValue)) {
-          dest[dPixelOffset] = replacement;
-        } else {
-          dest[dPixelOffset] = sourceValue;
+      void replaceNanLine(int sLineOffset, int sPixelStride, int dLineOffset, int dPixelStride, int width,
+          double replacement) {
+        double replacementValue = replacement;
+        if (Vectorization.isEnabled() && sPixelStride == 1 && dPixelStride == 1) {
+          VectorKernels.replaceNaNDouble(source, sLineOffset, dest, dLineOffset, width, replacementValue);
+          return;
+        }
+        int sPixelOffset = sLineOffset;
+        int dPixelOffset = dLineOffset;
+        for (int x = 0; x < width; x++) {
+          double sourceValue = source[sPixelOffset];
+          dest[dPixelOffset] = Double.isNaN(sourceValue) ? replacementValue : sourceValue;
+          sPixelOffset += sPixelStride;
+          dPixelOffset += dPixelStride;
         }
       }
-
     }
   }
 }
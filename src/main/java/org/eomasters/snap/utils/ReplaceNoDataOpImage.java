@@ -0,0 +1,287 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import javax.media.jai.ImageLayout;
+import javax.media.jai.PointOpImage;
+import javax.media.jai.RasterAccessor;
+import javax.media.jai.RasterFormatTag;
+
+/**
+ * An image which replaces no-data values of the source image. Which values are no-data is given by
+ * {@link NoDataValues}. All bands of the source are processed, optionally with a different replacement value per band.
+ * Unlike the {@link ReplaceNaNOpImage} all data types are supported.
+ *
+ * <p>For byte and short data the no-data check is a lookup in a table which covers all possible values of the type.
+ */
+public class ReplaceNoDataOpImage extends PointOpImage {
+
+  private final NoDataValues noDataValues;
+  private final int[] intReplacements;
+  private final float[] floatReplacements;
+  private final double[] doubleReplacements;
+  private final boolean[] noDataTable;
+
+  /**
+   * Creates a new image which replaces no-data values.
+   *
+   * @param source       the source image
+   * @param noDataValues the values regarded as no-data
+   * @param replacement  the replacement value
+   */
+  public ReplaceNoDataOpImage(RenderedImage source, NoDataValues noDataValues, Number replacement) {
+    this(source, noDataValues, new Number[]{replacement});
+  }
+
+  /**
+   * Creates a new image which replaces no-data values with individual replacement values per band.
+   *
+   * @param source       the source image
+   * @param noDataValues the values regarded as no-data
+   * @param replacements the replacement values, either one for all bands or one per band of the source image
+   */
+  public ReplaceNoDataOpImage(RenderedImage source, NoDataValues noDataValues, Number[] replacements) {
+    super(source, new ImageLayout(source), null, true);
+    int numBands = source.getSampleModel().getNumBands();
+    if (replacements.length != 1 && replacements.length != numBands) {
+      throw new IllegalArgumentException(
+          "Expected 1 or " + numBands + " replacement values, but got " + replacements.length);
+    }
+    this.noDataValues = noDataValues;
+    this.intReplacements = new int[numBands];
+    this.floatReplacements = new float[numBands];
+    this.doubleReplacements = new double[numBands];
+    for (int b = 0; b < numBands; b++) {
+      Number replacement = replacements.length == 1 ? replacements[0] : replacements[b];
+      intReplacements[b] = replacement.intValue();
+      floatReplacements[b] = replacement.floatValue();
+      doubleReplacements[b] = replacement.doubleValue();
+    }
+    this.noDataTable = createNoDataTable(getSampleModel().getDataType(), noDataValues);
+    TileCachePolicy.NEVER.applyTo(this);
+  }
+
+  /**
+   * Sets how the tiles of this image are cached. By default, they are not cached, see {@link TileCachePolicy#NEVER}.
+   *
+   * @param policy the tile cache policy
+   */
+  public void setTileCachePolicy(TileCachePolicy policy) {
+    policy.applyTo(this);
+  }
+
+  private static boolean[] createNoDataTable(int dataType, NoDataValues noDataValues) {
+    return switch (dataType) {
+      case DataBuffer.TYPE_BYTE -> {
+        boolean[] table = new boolean[256];
+        for (int i = 0; i < table.length; i++) {
+          table[i] = noDataValues.contains(i);
+        }
+        yield table;
+      }
+      case DataBuffer.TYPE_USHORT, DataBuffer.TYPE_SHORT -> {
+        // indexed by the 16 bits of the sample, the value depends on the signedness of the type
+        boolean[] table = new boolean[65536];
+        for (int i = 0; i < table.length; i++) {
+          table[i] = noDataValues.contains(dataType == DataBuffer.TYPE_USHORT ? i : (short) i);
+        }
+        yield table;
+      }
+      default -> null;
+    };
+  }
+
+  @Override
+  protected void computeRect(Raster[] sources, WritableRaster dest, Rectangle destRect) {
+    RasterFormatTag[] formatTags = getFormatTags();
+    RasterAccessor s = new RasterAccessor(sources[0], destRect, formatTags[0], getSourceImage(0).getColorModel());
+    RasterAccessor d = new RasterAccessor(dest, destRect, formatTags[1], getColorModel());
+    switch (d.getDataType()) {
+      case DataBuffer.TYPE_BYTE -> replaceByte(s, d);
+      case DataBuffer.TYPE_USHORT, DataBuffer.TYPE_SHORT -> replaceShort(s, d);
+      case DataBuffer.TYPE_INT -> replaceInt(s, d);
+      case DataBuffer.TYPE_FLOAT -> replaceFloat(s, d);
+      case DataBuffer.TYPE_DOUBLE -> replaceDouble(s, d);
+      default -> throw new IllegalStateException("Unsupported data type: " + d.getDataType());
+    }
+    d.copyDataToRaster();
+  }
+
+  // The kernels below differ only in the array type and the no-data check.
+
+  private void replaceByte(RasterAccessor s, RasterAccessor d) {
+    byte[][] src = s.getByteDataArrays();
+    byte[][] dst = d.getByteDataArrays();
+    int[] sBandOffsets = s.getBandOffsets();
+    int[] dBandOffsets = d.getBandOffsets();
+    int sPixelStride = s.getPixelStride();
+    int dPixelStride = d.getPixelStride();
+    int width = d.getWidth();
+    int height = d.getHeight();
+    for (int b = 0; b < dst.length; b++) {
+      byte[] srcBand = src[b];
+      byte[] dstBand = dst[b];
+      byte replacement = (byte) intReplacements[b];
+      int sLine = sBandOffsets[b];
+      int dLine = dBandOffsets[b];
+      for (int y = 0; y < height; y++) {
+        int sp = sLine;
+        int dp = dLine;
+        for (int x = 0; x < width; x++) {
+          byte value = srcBand[sp];
+          dstBand[dp] = noDataTable[value & 0xFF] ? replacement : value;
+          sp += sPixelStride;
+          dp += dPixelStride;
+        }
+        sLine += s.getScanlineStride();
+        dLine += d.getScanlineStride();
+      }
+    }
+  }
+
+  private void replaceShort(RasterAccessor s, RasterAccessor d) {
+    short[][] src = s.getShortDataArrays();
+    short[][] dst = d.getShortDataArrays();
+    int[] sBandOffsets = s.getBandOffsets();
+    int[] dBandOffsets = d.getBandOffsets();
+    int sPixelStride = s.getPixelStride();
+    int dPixelStride = d.getPixelStride();
+    int width = d.getWidth();
+    int height = d.getHeight();
+    for (int b = 0; b < dst.length; b++) {
+      short[] srcBand = src[b];
+      short[] dstBand = dst[b];
+      short replacement = (short) intReplacements[b];
+      int sLine = sBandOffsets[b];
+      int dLine = dBandOffsets[b];
+      for (int y = 0; y < height; y++) {
+        int sp = sLine;
+        int dp = dLine;
+        for (int x = 0; x < width; x++) {
+          short value = srcBand[sp];
+          dstBand[dp] = noDataTable[value & 0xFFFF] ? replacement : value;
+          sp += sPixelStride;
+          dp += dPixelStride;
+        }
+        sLine += s.getScanlineStride();
+        dLine += d.getScanlineStride();
+      }
+    }
+  }
+
+  private void replaceInt(RasterAccessor s, RasterAccessor d) {
+    int[][] src = s.getIntDataArrays();
+    int[][] dst = d.getIntDataArrays();
+    int[] sBandOffsets = s.getBandOffsets();
+    int[] dBandOffsets = d.getBandOffsets();
+    int sPixelStride = s.getPixelStride();
+    int dPixelStride = d.getPixelStride();
+    int width = d.getWidth();
+    int height = d.getHeight();
+    for (int b = 0; b < dst.length; b++) {
+      int[] srcBand = src[b];
+      int[] dstBand = dst[b];
+      int replacement = intReplacements[b];
+      int sLine = sBandOffsets[b];
+      int dLine = dBandOffsets[b];
+      for (int y = 0; y < height; y++) {
+        int sp = sLine;
+        int dp = dLine;
+        for (int x = 0; x < width; x++) {
+          int value = srcBand[sp];
+          dstBand[dp] = noDataValues.contains(value) ? replacement : value;
+          sp += sPixelStride;
+          dp += dPixelStride;
+        }
+        sLine += s.getScanlineStride();
+        dLine += d.getScanlineStride();
+      }
+    }
+  }
+
+  private void replaceFloat(RasterAccessor s, RasterAccessor d) {
+    float[][] src = s.getFloatDataArrays();
+    float[][] dst = d.getFloatDataArrays();
+    int[] sBandOffsets = s.getBandOffsets();
+    int[] dBandOffsets = d.getBandOffsets();
+    int sPixelStride = s.getPixelStride();
+    int dPixelStride = d.getPixelStride();
+    int width = d.getWidth();
+    int height = d.getHeight();
+    for (int b = 0; b < dst.length; b++) {
+      float[] srcBand = src[b];
+      float[] dstBand = dst[b];
+      float replacement = floatReplacements[b];
+      int sLine = sBandOffsets[b];
+      int dLine = dBandOffsets[b];
+      for (int y = 0; y < height; y++) {
+        int sp = sLine;
+        int dp = dLine;
+        for (int x = 0; x < width; x++) {
+          float value = srcBand[sp];
+          dstBand[dp] = noDataValues.containsFloat(value) ? replacement : value;
+          sp += sPixelStride;
+          dp += dPixelStride;
+        }
+        sLine += s.getScanlineStride();
+        dLine += d.getScanlineStride();
+      }
+    }
+  }
+
+  private void replaceDouble(RasterAccessor s, RasterAccessor d) {
+    double[][] src = s.getDoubleDataArrays();
+    double[][] dst = d.getDoubleDataArrays();
+    int[] sBandOffsets = s.getBandOffsets();
+    int[] dBandOffsets = d.getBandOffsets();
+    int sPixelStride = s.getPixelStride();
+    int dPixelStride = d.getPixelStride();
+    int width = d.getWidth();
+    int height = d.getHeight();
+    for (int b = 0; b < dst.length; b++) {
+      double[] srcBand = src[b];
+      double[] dstBand = dst[b];
+      double replacement = doubleReplacements[b];
+      int sLine = sBandOffsets[b];
+      int dLine = dBandOffsets[b];
+      for (int y = 0; y < height; y++) {
+        int sp = sLine;
+        int dp = dLine;
+        for (int x = 0; x < width; x++) {
+          double value = srcBand[sp];
+          dstBand[dp] = noDataValues.contains(value) ? replacement : value;
+          sp += sPixelStride;
+          dp += dPixelStride;
+        }
+        sLine += s.getScanlineStride();
+        dLine += d.getScanlineStride();
+      }
+    }
+  }
+}
@@ -0,0 +1,480 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import com.bc.ceres.core.ProgressMonitor;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+import org.esa.snap.core.dataio.ProductIO;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.util.SystemUtils;
+
+/**
+ * A cache on disk for the written results of operators. An entry is identified by a key computed from the operator
+ * alias, the parameters, the output format and a fingerprint of each source product, which consists of the path, the
+ * size and the time of the last modification of its file. Thus, a result is found again if the same operator is
+ * executed with the same parameters on unchanged source files, e.g. after a restart.
+ *
+ * <p>The cache keeps a copy of each output in its directory, {@value #CACHE_DIR_PROPERTY} or the SNAP cache directory
+ * by default. The size is limited by the system property {@value #MAX_SIZE_PROPERTY} in megabytes. The cache is
+ * disabled by default and is enabled by setting a limit, e.g. 4096. When the limit is exceeded, the least recently used
+ * entries are evicted, except the pinned ones which are currently in use. The entries are recorded in an index file in
+ * JSON format.
+ */
+public class ResultCache {
+
+  /**
+   * The system property defining the directory of the cache.
+   */
+  public static final String CACHE_DIR_PROPERTY = "eomasters.snap.resultCache.dir";
+
+  /**
+   * The system property defining the maximum size of the cache in megabytes.
+   */
+  public static final String MAX_SIZE_PROPERTY = "eomasters.snap.resultCache.maxSize";
+
+  private static final long DEFAULT_MAX_SIZE_MB = 0;
+  private static final String INDEX_FILE = "index.json";
+  private static final String DIMAP_DATA_DIR_EXTENSION = ".data";
+
+  private static ResultCache defaultInstance;
+
+  private final Path cacheDir;
+  private final long maxSize;
+  private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+  private final Map<String, Integer> pinCounts = new HashMap<>();
+  private Map<String, Entry> entries;
+
+  /**
+   * Creates a cache in the given directory.
+   *
+   * @param cacheDir the directory of the cache
+   * @param maxSize  the maximum size of the cache in bytes, 0 disables the cache
+   */
+  public ResultCache(Path cacheDir, long maxSize) {
+    this.cacheDir = cacheDir;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the cache configured by the system properties.
+   *
+   * @return the default cache
+   */
+  public static synchronized ResultCache getDefault() {
+    if (defaultInstance == null) {
+      String dir = System.getProperty(CACHE_DIR_PROPERTY);
+      Path cacheDir = dir != null ? Path.of(dir)
+          : SystemUtils.getCacheDir().toPath().resolve("eomasters").resolve("results");
+      defaultInstance = new ResultCache(cacheDir, Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE_MB) * 1024 * 1024);
+    }
+    return defaultInstance;
+  }
+
+  /**
+   * Tells if results are cached.
+   *
+   * @return {@code true} if the cache is enabled
+   */
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Computes the key of the result of an operator. The parameters are canonicalized, so the order of the map does not
+   * matter. The result can not be cached if a source product has not been read from a file or has been modified, then
+   * {@code null} is returned.
+   *
+   * @param operatorAlias  the alias of the operator
+   * @param parametersMap  the parameters of the operator
+   * @param sourceProducts the source products
+   * @param formatName     the name of the output format
+   * @return the key, or {@code null} if the result can not be cached
+   */
+  public static String createKey(String operatorAlias, Map<String, Object> parametersMap,
+      Map<String, Product> sourceProducts, String formatName) {
+    StringBuilder sb = new StringBuilder(operatorAlias).append('\n');
+    sb.append(canonicalize(parametersMap)).append('\n');
+    sb.append(formatName).append('\n');
+    for (Map.Entry<String, Product> source : new TreeMap<>(sourceProducts).entrySet()) {
+      String fingerprint = getFingerprint(source.getValue());
+      if (fingerprint == null) {
+        return null;
+      }
+      sb.append(source.getKey()).append('=').append(fingerprint).append('\n');
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /**
+   * Looks up a cached result and marks it as recently used.
+   *
+   * @param key the key of the result
+   * @return the cached output file, or {@code null} if the result is not cached
+   */
+  public synchronized Path lookup(String key) {
+    if (!isEnabled() || key == null) {
+      return null;
+    }
+    Entry entry = getEntries().get(key);
+    if (entry == null) {
+      return null;
+    }
+    Path file = cacheDir.resolve(key).resolve(entry.fileName);
+    if (!Files.exists(file)) {
+      getEntries().remove(key);
+      saveIndex();
+      return null;
+    }
+    entry.lastAccess = System.currentTimeMillis();
+    saveIndex();
+    return file;
+  }
+
+  /**
+   * Copies an output into the cache. If the cache exceeds its size afterwards, the least recently used entries are
+   * evicted. Outputs larger than the cache are not stored.
+   *
+   * @param key        the key of the result
+   * @param outputFile the output file, a DIMAP data directory next to it is copied as well
+   * @throws IOException if copying fails
+   */
+  public synchronized void store(String key, Path outputFile) throws IOException {
+    if (!isEnabled() || key == null) {
+      return;
+    }
+    List<Path> outputPaths = getOutputPaths(outputFile);
+    long size = 0;
+    for (Path path : outputPaths) {
+      size += sizeOf(path);
+    }
+    if (size > maxSize) {
+      SystemUtils.LOG.log(Level.INFO, String.format("Not caching %s, it is larger than the result cache",
+          outputFile.getFileName()));
+      return;
+    }
+    if (isPinned(key)) {
+      SystemUtils.LOG.log(Level.INFO, String.format("Not caching %s, the cached result is in use",
+          outputFile.getFileName()));
+      return;
+    }
+    Path entryDir = cacheDir.resolve(key);
+    remove(key);
+    Files.createDirectories(entryDir);
+    try {
+      for (Path path : outputPaths) {
+        copy(path, entryDir.resolve(path.getFileName()));
+      }
+    } catch (IOException e) {
+      delete(entryDir);
+      throw e;
+    }
+    getEntries().put(key, new Entry(outputFile.getFileName().toString(), size, System.currentTimeMillis()));
+    evict();
+    saveIndex();
+  }
+
+  /**
+   * Protects a cached result from being evicted or replaced, e.g. while it is opened. A result pinned several times
+   * is protected until it has been unpinned as often.
+   *
+   * @param key the key of the result
+   */
+  public synchronized void pin(String key) {
+    pinCounts.merge(key, 1, Integer::sum);
+  }
+
+  /**
+   * Releases a result pinned by {@link #pin(String)}.
+   *
+   * @param key the key of the result
+   */
+  public synchronized void unpin(String key) {
+    pinCounts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+  }
+
+  /**
+   * Copies a cached output to the given file. If the output consists of a DIMAP header and its data directory and the
+   * target has another name, the header would still refer to the data directory of the cached name. In that case, the
+   * cached product is read and written to the target with the given format instead.
+   *
+   * @param cachedFile the cached output file as returned by {@link #lookup(String)}
+   * @param targetFile the target file
+   * @param formatName the name of the output format, used if the product needs to be written
+   * @param pm         the progress monitor
+   * @throws IOException if copying fails
+   */
+  public static void copyOutput(Path cachedFile, Path targetFile, String formatName, ProgressMonitor pm)
+      throws IOException {
+    List<Path> sourcePaths = getOutputPaths(cachedFile);
+    if (sourcePaths.size() > 1 && !cachedFile.getFileName().equals(targetFile.getFileName())) {
+      writeOutput(cachedFile, targetFile, formatName, pm);
+      return;
+    }
+    List<Path> targetPaths = getOutputPaths(targetFile);
+    if (targetPaths.size() > 1) {
+      delete(targetPaths.get(1));
+    }
+    pm.beginTask("Copying cached result", sourcePaths.size());
+    try {
+      copy(cachedFile, targetFile);
+      pm.worked(1);
+      if (sourcePaths.size() > 1) {
+        copy(sourcePaths.get(1), getDataDir(targetFile));
+        pm.worked(1);
+      }
+    } finally {
+      pm.done();
+    }
+  }
+
+  private static void writeOutput(Path cachedFile, Path targetFile, String formatName, ProgressMonitor pm)
+      throws IOException {
+    Product product = ProductIO.readProduct(cachedFile.toFile());
+    if (product == null) {
+      throw new IOException("No reader found for " + cachedFile);
+    }
+    try {
+      ProductIO.writeProduct(product, targetFile.toFile(), formatName, false, pm);
+    } finally {
+      product.dispose();
+    }
+  }
+
+  /**
+   * Returns the total size of the cached outputs.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getSize() {
+    long size = 0;
+    for (Entry entry : getEntries().values()) {
+      size += entry.size;
+    }
+    return size;
+  }
+
+  private void evict() {
+    List<Map.Entry<String, Entry>> lru = new ArrayList<>(getEntries().entrySet());
+    lru.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+    long size = getSize();
+    for (Map.Entry<String, Entry> eldest : lru) {
+      if (size <= maxSize) {
+        break;
+      }
+      if (isPinned(eldest.getKey())) {
+        continue;
+      }
+      size -= eldest.getValue().size;
+      SystemUtils.LOG.log(Level.INFO, "Evicting " + eldest.getValue().fileName + " from the result cache");
+      remove(eldest.getKey());
+    }
+  }
+
+  private boolean isPinned(String key) {
+    return pinCounts.containsKey(key);
+  }
+
+  private void remove(String key) {
+    getEntries().remove(key);
+    try {
+      delete(cacheDir.resolve(key));
+    } catch (IOException e) {
+      SystemUtils.LOG.log(Level.WARNING, "Could not delete cached result " + key, e);
+    }
+  }
+
+  private Map<String, Entry> getEntries() {
+    if (entries == null) {
+      entries = new LinkedHashMap<>();
+      Path indexFile = cacheDir.resolve(INDEX_FILE);
+      if (Files.exists(indexFile)) {
+        try (Reader reader = Files.newBufferedReader(indexFile)) {
+          Map<String, Entry> loaded = gson.fromJson(reader, new TypeToken<Map<String, Entry>>() {}.getType());
+          if (loaded != null) {
+            entries.putAll(loaded);
+          }
+        } catch (IOException | JsonParseException e) {
+          SystemUtils.LOG.log(Level.WARNING, "Could not read the index of the result cache", e);
+        }
+      }
+    }
+    return entries;
+  }
+
+  private void saveIndex() {
+    try {
+      Files.createDirectories(cacheDir);
+      Path tempFile = cacheDir.resolve(INDEX_FILE + ".tmp");
+      try (Writer writer = Files.newBufferedWriter(tempFile)) {
+        gson.toJson(entries, writer);
+      }
+      Files.move(tempFile, cacheDir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      SystemUtils.LOG.log(Level.WARNING, "Could not write the index of the result cache", e);
+    }
+  }
+
+  private static String getFingerprint(Product product) {
+    File file = product.getFileLocation();
+    if (file == null || !file.exists() || product.isModified()) {
+      return null;
+    }
+    try {
+      Path path = file.toPath().toRealPath();
+      return path + "|" + Files.size(path) + "|" + Files.getLastModifiedTime(path).toMillis();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  static String canonicalize(Object value) {
+    if (value == null) {
+      return "null";
+    }
+    if (value instanceof Map<?, ?> map) {
+      TreeMap<String, String> sorted = new TreeMap<>();
+      map.forEach((k, v) -> sorted.put(String.valueOf(k), canonicalize(v)));
+      return sorted.toString();
+    }
+    if (value instanceof Collection<?> collection) {
+      List<String> elements = new ArrayList<>();
+      collection.forEach(e -> elements.add(canonicalize(e)));
+      return elements.toString();
+    }
+    if (value.getClass().isArray()) {
+      List<String> elements = new ArrayList<>();
+      for (int i = 0; i < Array.getLength(value); i++) {
+        elements.add(canonicalize(Array.get(value, i)));
+      }
+      return elements.toString();
+    }
+    return value.getClass().getName() + ":" + value;
+  }
+
+  private static List<Path> getOutputPaths(Path outputFile) {
+    List<Path> paths = new ArrayList<>();
+    paths.add(outputFile);
+    Path dataDir = getDataDir(outputFile);
+    if (Files.isDirectory(dataDir)) {
+      paths.add(dataDir);
+    }
+    return paths;
+  }
+
+  private static Path getDataDir(Path outputFile) {
+    String name = outputFile.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    String baseName = dot > 0 ? name.substring(0, dot) : name;
+    return outputFile.resolveSibling(baseName + DIMAP_DATA_DIR_EXTENSION);
+  }
+
+  private static long sizeOf(Path path) throws IOException {
+    try (Stream<Path> files = Files.walk(path)) {
+      long size = 0;
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (Files.isRegularFile(file)) {
+          size += Files.size(file);
+        }
+      }
+      return size;
+    }
+  }
+
+  private static void copy(Path source, Path target) throws IOException {
+    if (!Files.isDirectory(source)) {
+      Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+      return;
+    }
+    Files.walkFileTree(source, new SimpleFileVisitor<>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.copy(file, target.resolve(source.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static void delete(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(path)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private static final class Entry {
+
+    private String fileName;
+    private long size;
+    private long lastAccess;
+
+    Entry(String fileName, long size, long lastAccess) {
+      this.fileName = fileName;
+      this.size = size;
+      this.lastAccess = lastAccess;
+    }
+  }
+}
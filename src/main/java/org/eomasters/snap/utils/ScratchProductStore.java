@@ -0,0 +1,355 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+import javax.media.jai.ImageLayout;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.SourcelessOpImage;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.VirtualBand;
+import org.esa.snap.core.gpf.OperatorCancelException;
+import org.esa.snap.core.util.SystemUtils;
+
+/**
+ * Materializes the bands of a product into raw files in a local scratch directory. The files are memory-mapped and
+ * the source images of the bands are replaced by images reading from them. A tile which has not been stored yet is
+ * computed from the original image on request and stored, so the product can be viewed while it is filled. The
+ * remaining tiles are computed by {@link #fill(ProgressMonitor)} in {@link TileOrder#HILBERT} order. Once a tile is
+ * stored, it is read from the scratch file and the operator chain is not involved anymore.
+ *
+ * <p>The scratch directory is created in the directory given by the system property {@value #SCRATCH_DIR_PROPERTY},
+ * or in the temporary directory of the system. It is deleted by {@link #dispose()}, which should be called when the
+ * product is closed. Scratch directories of stores not disposed are deleted when the JVM shuts down.
+ */
+public class ScratchProductStore {
+
+  /**
+   * The system property defining the directory in which the scratch directories are created.
+   */
+  public static final String SCRATCH_DIR_PROPERTY = "eomasters.snap.scratchDir";
+
+  private static final Set<ScratchProductStore> OPEN_STORES = ConcurrentHashMap.newKeySet();
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> new ArrayList<>(OPEN_STORES).forEach(
+        ScratchProductStore::dispose), "eom-scratch-cleanup"));
+  }
+
+  private final Path scratchDir;
+  private final List<BandStore> bandStores = new ArrayList<>();
+  private volatile boolean disposed;
+
+  private ScratchProductStore(Path scratchDir) {
+    this.scratchDir = scratchDir;
+  }
+
+  /**
+   * Creates the scratch files for the bands of the product and replaces the source images of the bands. Virtual
+   * bands are not materialized, they are computed from the materialized bands.
+   *
+   * @param product the product to materialize
+   * @return the store
+   * @throws IOException if the scratch files could not be created
+   */
+  public static ScratchProductStore materialize(Product product) throws IOException {
+    String baseDir = System.getProperty(SCRATCH_DIR_PROPERTY, System.getProperty("java.io.tmpdir"));
+    return materialize(product, Path.of(baseDir));
+  }
+
+  static ScratchProductStore materialize(Product product, Path baseDir) throws IOException {
+    Path parent = Files.createDirectories(baseDir);
+    ScratchProductStore store = new ScratchProductStore(Files.createTempDirectory(parent, "eom-scratch-"));
+    OPEN_STORES.add(store);
+    try {
+      for (Band band : product.getBands()) {
+        if (band instanceof VirtualBand) {
+          continue;
+        }
+        PlanarImage image = PlanarImage.wrapRenderedImage(band.getSourceImage().getImage(0));
+        BandStore bandStore = new BandStore(image, store.scratchDir.resolve(store.bandStores.size() + ".raw"));
+        store.bandStores.add(bandStore);
+        band.setSourceImage(new ScratchOpImage(bandStore));
+      }
+    } catch (IOException e) {
+      store.dispose();
+      throw e;
+    }
+    SystemUtils.LOG.log(Level.INFO, String.format("Materializing %s into %s", product.getName(), store.scratchDir));
+    return store;
+  }
+
+  /**
+   * Computes and stores all tiles which have not been stored yet. Returns early if the store is disposed.
+   *
+   * @param pm the progress monitor
+   * @throws OperatorCancelException if the progress monitor has been cancelled
+   */
+  public void fill(ProgressMonitor pm) {
+    int totalTiles = 0;
+    for (BandStore bandStore : bandStores) {
+      totalTiles += bandStore.image.getNumXTiles() * bandStore.image.getNumYTiles();
+    }
+    pm.beginTask("Materializing product", totalTiles);
+    try {
+      for (BandStore bandStore : bandStores) {
+        PlanarImage image = bandStore.image;
+        Point[] tiles = TileOrder.HILBERT.arrange(image.getMinTileX(), image.getMinTileY(), image.getNumXTiles(),
+            image.getNumYTiles());
+        for (Point tile : tiles) {
+          if (disposed) {
+            return;
+          }
+          if (pm.isCanceled()) {
+            throw new OperatorCancelException("Materializing has been cancelled.");
+          }
+          bandStore.getTile(tile.x, tile.y);
+          pm.worked(1);
+        }
+      }
+    } finally {
+      pm.done();
+    }
+  }
+
+  /**
+   * Returns the directory holding the scratch files.
+   *
+   * @return the scratch directory
+   */
+  public Path getScratchDir() {
+    return scratchDir;
+  }
+
+  /**
+   * Closes the scratch files and deletes the scratch directory. Tiles already handed out stay valid.
+   */
+  public void dispose() {
+    disposed = true;
+    OPEN_STORES.remove(this);
+    for (BandStore bandStore : bandStores) {
+      try {
+        bandStore.channel.close();
+      } catch (IOException e) {
+        SystemUtils.LOG.log(Level.WARNING, "Could not close scratch file", e);
+      }
+    }
+    try (Stream<Path> files = Files.walk(scratchDir)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        if (!file.toFile().delete()) {
+          // a mapped file can not be deleted on every platform while it is still mapped
+          file.toFile().deleteOnExit();
+        }
+      }
+    } catch (IOException e) {
+      SystemUtils.LOG.log(Level.WARNING, "Could not delete scratch directory " + scratchDir, e);
+    }
+  }
+
+  private static final class BandStore {
+
+    private final PlanarImage image;
+    private final FileChannel channel;
+    private final Buffer[] rows;
+    // each element is guarded by the lock of the tile
+    private final boolean[] stored;
+    private final Object[] tileLocks;
+    private final int dataType;
+
+    BandStore(PlanarImage image, Path file) throws IOException {
+      this.image = image;
+      this.dataType = image.getSampleModel().getDataType();
+      this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      int elemSize = DataBuffer.getDataTypeSize(dataType) / 8;
+      int numYTiles = image.getNumYTiles();
+      rows = new Buffer[numYTiles];
+      stored = new boolean[image.getNumXTiles() * numYTiles];
+      tileLocks = new Object[stored.length];
+      for (int i = 0; i < tileLocks.length; i++) {
+        tileLocks[i] = new Object();
+      }
+      long offset = 0;
+      for (int i = 0; i < numYTiles; i++) {
+        Rectangle rowBounds = getRowBounds(image.getMinTileY() + i);
+        long rowSize = (long) rowBounds.width * rowBounds.height * elemSize;
+        if (rowSize > Integer.MAX_VALUE) {
+          throw new IOException("A tile row of the image is too large to be mapped");
+        }
+        MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, offset, rowSize);
+        rows[i] = createView(buffer, dataType);
+        offset += rowSize;
+      }
+    }
+
+    Raster getTile(int tileX, int tileY) {
+      int index = getTileIndex(tileX, tileY);
+      // concurrent requests of the same tile wait for the first one, so the tile is computed and stored only once
+      synchronized (tileLocks[index]) {
+        if (stored[index]) {
+          return read(tileX, tileY);
+        }
+        Raster tile = image.getTile(tileX, tileY);
+        write(tile, tileX, tileY);
+        stored[index] = true;
+        return tile;
+      }
+    }
+
+    private Raster read(int tileX, int tileY) {
+      Rectangle bounds = getTileBounds(tileX, tileY);
+      WritableRaster raster = Raster.createWritableRaster(image.getSampleModel().createCompatibleSampleModel(
+          image.getTileWidth(), image.getTileHeight()), new Point(image.tileXToX(tileX), image.tileYToY(tileY)));
+      Buffer row = rows[tileY - image.getMinTileY()];
+      Object line = createArray(bounds.width);
+      for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
+        get(row, getIndex(bounds.x, y, tileY), line);
+        raster.setDataElements(bounds.x, y, bounds.width, 1, line);
+      }
+      return raster;
+    }
+
+    private void write(Raster tile, int tileX, int tileY) {
+      Rectangle bounds = getTileBounds(tileX, tileY);
+      Buffer row = rows[tileY - image.getMinTileY()];
+      Object line = createArray(bounds.width);
+      for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
+        tile.getDataElements(bounds.x, y, bounds.width, 1, line);
+        put(row, getIndex(bounds.x, y, tileY), line);
+      }
+    }
+
+    private int getTileIndex(int tileX, int tileY) {
+      return (tileY - image.getMinTileY()) * image.getNumXTiles() + tileX - image.getMinTileX();
+    }
+
+    private int getIndex(int x, int y, int tileY) {
+      Rectangle rowBounds = getRowBounds(tileY);
+      return (y - rowBounds.y) * rowBounds.width + x - rowBounds.x;
+    }
+
+    private Rectangle getRowBounds(int tileY) {
+      Rectangle row = new Rectangle(image.getMinX(), image.tileYToY(tileY), image.getWidth(), image.getTileHeight());
+      return row.intersection(image.getBounds());
+    }
+
+    private Rectangle getTileBounds(int tileX, int tileY) {
+      return image.getTileRect(tileX, tileY);
+    }
+
+    private Object createArray(int length) {
+      return switch (dataType) {
+        case DataBuffer.TYPE_BYTE -> new byte[length];
+        case DataBuffer.TYPE_USHORT, DataBuffer.TYPE_SHORT -> new short[length];
+        case DataBuffer.TYPE_INT -> new int[length];
+        case DataBuffer.TYPE_FLOAT -> new float[length];
+        case DataBuffer.TYPE_DOUBLE -> new double[length];
+        default -> throw new IllegalArgumentException("Unsupported data type " + dataType);
+      };
+    }
+
+    private static Buffer createView(ByteBuffer buffer, int dataType) {
+      return switch (dataType) {
+        case DataBuffer.TYPE_BYTE -> buffer;
+        case DataBuffer.TYPE_USHORT, DataBuffer.TYPE_SHORT -> buffer.asShortBuffer();
+        case DataBuffer.TYPE_INT -> buffer.asIntBuffer();
+        case DataBuffer.TYPE_FLOAT -> buffer.asFloatBuffer();
+        case DataBuffer.TYPE_DOUBLE -> buffer.asDoubleBuffer();
+        default -> throw new IllegalArgumentException("Unsupported data type " + dataType);
+      };
+    }
+
+    private static void get(Buffer buffer, int index, Object array) {
+      if (buffer instanceof ByteBuffer b) {
+        b.get(index, (byte[]) array);
+      } else if (buffer instanceof ShortBuffer b) {
+        b.get(index, (short[]) array);
+      } else if (buffer instanceof IntBuffer b) {
+        b.get(index, (int[]) array);
+      } else if (buffer instanceof FloatBuffer b) {
+        b.get(index, (float[]) array);
+      } else {
+        ((DoubleBuffer) buffer).get(index, (double[]) array);
+      }
+    }
+
+    private static void put(Buffer buffer, int index, Object array) {
+      if (buffer instanceof ByteBuffer b) {
+        b.put(index, (byte[]) array);
+      } else if (buffer instanceof ShortBuffer b) {
+        b.put(index, (short[]) array);
+      } else if (buffer instanceof IntBuffer b) {
+        b.put(index, (int[]) array);
+      } else if (buffer instanceof FloatBuffer b) {
+        b.put(index, (float[]) array);
+      } else {
+        ((DoubleBuffer) buffer).put(index, (double[]) array);
+      }
+    }
+  }
+
+  private static final class ScratchOpImage extends SourcelessOpImage {
+
+    private final BandStore bandStore;
+
+    ScratchOpImage(BandStore bandStore) {
+      super(new ImageLayout(bandStore.image), null, bandStore.image.getSampleModel(), bandStore.image.getMinX(),
+          bandStore.image.getMinY(), bandStore.image.getWidth(), bandStore.image.getHeight());
+      this.bandStore = bandStore;
+      // reading a stored tile is cheap, the tiles would only duplicate the scratch data in the tile cache
+      TileCachePolicy.NEVER.applyTo(this);
+    }
+
+    @Override
+    public Raster computeTile(int tileX, int tileY) {
+      return bandStore.getTile(tileX, tileY);
+    }
+  }
+}
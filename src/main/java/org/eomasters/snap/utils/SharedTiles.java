@@ -0,0 +1,131 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Helper for operators which hand out tiles without computing them, either the tiles of their source or tiles of a
+ * constant value. The tiles returned by these methods share their data buffer and must not be modified.
+ */
+final class SharedTiles {
+
+  private static final int MAX_CONSTANT_BUFFERS = 32;
+
+  private static final Map<ConstantKey, DataBuffer> CONSTANT_BUFFERS =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ConstantKey, DataBuffer> eldest) {
+          return size() > MAX_CONSTANT_BUFFERS;
+        }
+      };
+
+  private SharedTiles() {
+  }
+
+  /**
+   * Checks whether the tiles of the source image can be used as tiles of the image. This is the case if both images
+   * have the same bounds, tile grid and sample model.
+   *
+   * @param image  the image
+   * @param source the source image
+   * @return {@code true} if the source tiles can be passed through
+   */
+  static boolean canPassThrough(RenderedImage image, RenderedImage source) {
+    return haveSameTileGrid(image, source) && image.getSampleModel().equals(source.getSampleModel());
+  }
+
+  /**
+   * Checks whether both images have the same bounds and tile grid, so that tile indices can be used for both of them.
+   *
+   * @param image1 the first image
+   * @param image2 the second image
+   * @return {@code true} if the tile grids are equal
+   */
+  static boolean haveSameTileGrid(RenderedImage image1, RenderedImage image2) {
+    return image1.getMinX() == image2.getMinX() && image1.getMinY() == image2.getMinY()
+        && image1.getWidth() == image2.getWidth() && image1.getHeight() == image2.getHeight()
+        && image1.getTileWidth() == image2.getTileWidth() && image1.getTileHeight() == image2.getTileHeight()
+        && image1.getTileGridXOffset() == image2.getTileGridXOffset()
+        && image1.getTileGridYOffset() == image2.getTileGridYOffset();
+  }
+
+  /**
+   * Returns a tile filled with constant values. Tiles with the same sample model and values share one data buffer.
+   *
+   * @param sampleModel the sample model of the tile
+   * @param bandValues  the value of each band
+   * @param location    the upper left corner of the tile
+   * @return the constant tile
+   */
+  static Raster constantTile(SampleModel sampleModel, double[] bandValues, Point location) {
+    ConstantKey key = new ConstantKey(sampleModel, bandValues.clone());
+    DataBuffer dataBuffer;
+    synchronized (CONSTANT_BUFFERS) {
+      dataBuffer = CONSTANT_BUFFERS.get(key);
+    }
+    if (dataBuffer == null) {
+      dataBuffer = createConstantBuffer(sampleModel, bandValues);
+      synchronized (CONSTANT_BUFFERS) {
+        DataBuffer existing = CONSTANT_BUFFERS.putIfAbsent(key, dataBuffer);
+        dataBuffer = existing != null ? existing : dataBuffer;
+      }
+    }
+    return Raster.createRaster(sampleModel, dataBuffer, location);
+  }
+
+  private static DataBuffer createConstantBuffer(SampleModel sampleModel, double[] bandValues) {
+    WritableRaster raster = Raster.createWritableRaster(sampleModel, null);
+    double[] line = new double[sampleModel.getWidth()];
+    for (int b = 0; b < sampleModel.getNumBands(); b++) {
+      Arrays.fill(line, bandValues[b]);
+      for (int y = 0; y < sampleModel.getHeight(); y++) {
+        raster.setSamples(0, y, line.length, 1, b, line);
+      }
+    }
+    return raster.getDataBuffer();
+  }
+
+  private record ConstantKey(SampleModel sampleModel, double[] bandValues) {
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ConstantKey other && sampleModel.equals(other.sampleModel)
+          && Arrays.equals(bandValues, other.bandValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * sampleModel.hashCode() + Arrays.hashCode(bandValues);
+    }
+  }
+}
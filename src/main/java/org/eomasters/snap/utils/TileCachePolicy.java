@@ -0,0 +1,86 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import javax.media.jai.JAI;
+import javax.media.jai.OpImage;
+import javax.media.jai.TileCache;
+import org.esa.snap.core.gpf.internal.OperatorContext;
+
+/**
+ * Defines how the tiles of an operator image are cached. Cheap point operations, like the {@link MaskedOpImage}, can
+ * recompute a tile faster than an expensive upstream tile, e.g. of a reprojection, is recomputed after it has been
+ * evicted from the cache. Therefore, they should not compete with such tiles for the capacity of the tile cache.
+ */
+public enum TileCachePolicy {
+
+  /**
+   * The tiles are not cached and are recomputed when they are requested again. This is the default for the point
+   * operations of this library.
+   */
+  NEVER {
+    @Override
+    public void applyTo(OpImage image) {
+      image.setTileCache(null);
+    }
+  },
+  /**
+   * The tiles are cached in the tile cache used by GPF operators.
+   */
+  CACHE {
+    @Override
+    public void applyTo(OpImage image) {
+      OperatorContext.setTileCache(image);
+    }
+  },
+  /**
+   * The tiles are cached in a separate, small tile cache shared by all images with this policy. They do not displace
+   * tiles from the tile cache used by GPF operators. The capacity in megabytes can be configured by the system
+   * property {@value #LOW_PRIORITY_CAPACITY_PROPERTY}, the default is 64 MB.
+   */
+  LOW_PRIORITY {
+    @Override
+    public void applyTo(OpImage image) {
+      image.setTileCache(LowPriorityCache.INSTANCE);
+    }
+  };
+
+  /**
+   * The system property to configure the capacity of the low priority tile cache in megabytes.
+   */
+  public static final String LOW_PRIORITY_CAPACITY_PROPERTY = "eomasters.snap.lowPriorityTileCache.capacity";
+
+  /**
+   * Applies this policy to the given image.
+   *
+   * @param image the image
+   */
+  public abstract void applyTo(OpImage image);
+
+  private static final class LowPriorityCache {
+
+    private static final TileCache INSTANCE = JAI.createTileCache(
+        Long.getLong(LOW_PRIORITY_CAPACITY_PROPERTY, 64L) * 1024L * 1024L);
+  }
+}
@@ -0,0 +1,136 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The order in which the tiles of an image are computed. Curves like the Z-order and the Hilbert curve keep
+ * consecutive tiles close to each other, so the source tiles or chunks needed by a tile are likely still cached when
+ * its neighbours are computed.
+ */
+public enum TileOrder {
+
+  /**
+   * Row by row, from left to right.
+   */
+  ROW_MAJOR {
+    @Override
+    List<Point> arrange(int numXTiles, int numYTiles) {
+      List<Point> points = new ArrayList<>(numXTiles * numYTiles);
+      for (int y = 0; y < numYTiles; y++) {
+        for (int x = 0; x < numXTiles; x++) {
+          points.add(new Point(x, y));
+        }
+      }
+      return points;
+    }
+  },
+
+  /**
+   * The Z-order (Morton) curve, which visits the tiles in quadrants of growing size.
+   */
+  Z_ORDER {
+    @Override
+    List<Point> arrange(int numXTiles, int numYTiles) {
+      List<Point> points = ROW_MAJOR.arrange(numXTiles, numYTiles);
+      points.sort(Comparator.comparingLong(p -> interleave(p.x, p.y)));
+      return points;
+    }
+  },
+
+  /**
+   * The Hilbert curve, on which consecutive tiles are always neighbours if the grid is a square of a power of two.
+   */
+  HILBERT {
+    @Override
+    List<Point> arrange(int numXTiles, int numYTiles) {
+      // the curve covers a square grid of a power of two, tiles outside the image are skipped
+      int size = Math.max(numXTiles, numYTiles);
+      int n = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+      List<Point> points = new ArrayList<>(numXTiles * numYTiles);
+      for (long d = 0; d < (long) n * n; d++) {
+        Point p = hilbertPoint(n, d);
+        if (p.x < numXTiles && p.y < numYTiles) {
+          points.add(p);
+        }
+      }
+      return points;
+    }
+  };
+
+  /**
+   * Arranges the tiles of a grid in this order.
+   *
+   * @param minTileX  the index of the first tile column
+   * @param minTileY  the index of the first tile row
+   * @param numXTiles the number of tile columns
+   * @param numYTiles the number of tile rows
+   * @return the tile indices in the order they shall be computed
+   */
+  public Point[] arrange(int minTileX, int minTileY, int numXTiles, int numYTiles) {
+    List<Point> points = arrange(numXTiles, numYTiles);
+    for (Point point : points) {
+      point.translate(minTileX, minTileY);
+    }
+    return points.toArray(new Point[0]);
+  }
+
+  abstract List<Point> arrange(int numXTiles, int numYTiles);
+
+  private static long interleave(int x, int y) {
+    long z = 0;
+    for (int i = 0; i < 31; i++) {
+      z |= ((long) (x >> i) & 1) << (2 * i);
+      z |= ((long) (y >> i) & 1) << (2 * i + 1);
+    }
+    return z;
+  }
+
+  private static Point hilbertPoint(int n, long d) {
+    int x = 0;
+    int y = 0;
+    long t = d;
+    for (int s = 1; s < n; s *= 2) {
+      int rx = (int) (1 & (t / 2));
+      int ry = (int) (1 & (t ^ rx));
+      if (ry == 0) {
+        if (rx == 1) {
+          x = s - 1 - x;
+          y = s - 1 - y;
+        }
+        int swap = x;
+        x = y;
+        y = swap;
+      }
+      x += s * rx;
+      y += s * ry;
+      t /= 4;
+    }
+    return new Point(x, y);
+  }
+}
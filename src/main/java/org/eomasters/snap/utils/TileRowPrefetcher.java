@@ -0,0 +1,126 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.Point;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the tiles of an image ahead of time when they are requested in scan order. Whenever the tile requests move on
+ * to the next tile row, the tiles of the row after it are requested asynchronously. Thus, the latency of slow sources,
+ * e.g. readers of compressed data, overlaps with the computation of the current row.
+ *
+ * <p>At most one tile row is held in advance. Prefetched tiles of rows which are left behind are discarded.
+ */
+final class TileRowPrefetcher {
+
+  private final RenderedImage image;
+  private final Executor executor;
+  private final AtomicInteger currentRow;
+  private final Map<Point, CompletableFuture<Raster>> prefetched = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new prefetcher.
+   *
+   * @param image    the image whose tiles are prefetched
+   * @param executor the executor computing the prefetched tiles
+   */
+  TileRowPrefetcher(RenderedImage image, Executor executor) {
+    this.image = image;
+    this.executor = executor;
+    this.currentRow = new AtomicInteger(image.getMinTileY() - 1);
+  }
+
+  /**
+   * Returns the executor used by default. It uses daemon threads, so it does not prevent the JVM from exiting.
+   *
+   * @return the default executor
+   */
+  static Executor defaultExecutor() {
+    return DefaultExecutor.INSTANCE;
+  }
+
+  /**
+   * Returns the requested tile. If it has been prefetched, the prefetched tile is returned, otherwise it is requested
+   * from the image.
+   *
+   * @param tileX the x index of the tile
+   * @param tileY the y index of the tile
+   * @return the tile
+   */
+  Raster getTile(int tileX, int tileY) {
+    advance(tileY);
+    CompletableFuture<Raster> future = prefetched.remove(new Point(tileX, tileY));
+    if (future != null) {
+      try {
+        return future.join();
+      } catch (CompletionException | CancellationException e) {
+        // the tile is requested again below, so that an error is reported by the image
+      }
+    }
+    return image.getTile(tileX, tileY);
+  }
+
+  private void advance(int tileY) {
+    int previousRow = currentRow.get();
+    if (previousRow == tileY || !currentRow.compareAndSet(previousRow, tileY)) {
+      return;
+    }
+    prefetched.entrySet().removeIf(entry -> {
+      if (entry.getKey().y < tileY) {
+        // a tile which has not been started yet is not computed anymore
+        entry.getValue().cancel(false);
+        return true;
+      }
+      return false;
+    });
+    int nextRow = tileY + 1;
+    if (previousRow == tileY - 1 && nextRow < image.getMinTileY() + image.getNumYTiles()) {
+      for (int tileX = image.getMinTileX(); tileX < image.getMinTileX() + image.getNumXTiles(); tileX++) {
+        prefetched.computeIfAbsent(new Point(tileX, nextRow),
+            p -> CompletableFuture.supplyAsync(() -> image.getTile(p.x, p.y), executor));
+      }
+    }
+  }
+
+  private static final class DefaultExecutor {
+
+    private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+        Math.max(2, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+          Thread thread = new Thread(runnable, "tile-prefetch");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+}
@@ -34,26 +34,48 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import javax.media.jai.ImageLayout;
 import javax.media.jai.JAI;
 import org.esa.snap.core.datamodel.Mask;
 import org.esa.snap.core.datamodel.PlainFeatureFactory;
 import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.RasterDataNode;
 import org.esa.snap.core.datamodel.VectorDataNode;
+import org.esa.snap.core.dataop.barithm.BandArithmetic;
 import org.esa.snap.core.image.VirtualBandOpImage;
 import org.esa.snap.core.jexp.Term;
 import org.esa.snap.core.util.FeatureUtils;
 import org.esa.snap.core.util.jai.JAIUtils;
 import org.geotools.data.collection.ListFeatureCollection;
-import org.geotools.feature.DefaultFeatureCollection;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.data.shapefile.shp.ShapefileReader;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKTReader;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
 
 
 /**
@@ -65,6 +87,7 @@ public class ValidMaskImageBuilder {
   private static final int VALID = 255;
   private static final Dimension FALL_BACK_TILESIZE = new Dimension(128, 128);
   private final Product sourceProduct;
+  private final RasterDataNode targetRaster;
   private final ArrayList<MaskImage> maskImages = new ArrayList<>();
   private MaskOperation joinOperation;
   private Dimension tileSize;
@@ -77,6 +100,20 @@ public class ValidMaskImageBuilder {
    */
   public ValidMaskImageBuilder(Product product) {
     this.sourceProduct = product;
+    this.targetRaster = null;
+    joinOperation = MaskOperation.AND;
+  }
+
+  /**
+   * Creates a new builder for the given raster. The mask is created at the native resolution of the raster, using its
+   * raster size and image-to-model transformation. This allows masking the bands of a multi-size product without
+   * resampling it first. Expressions may only refer to rasters of the same size as the target raster.
+   *
+   * @param raster the raster defining the grid of the mask, must belong to a product
+   */
+  public ValidMaskImageBuilder(RasterDataNode raster) {
+    this.sourceProduct = raster.getProduct();
+    this.targetRaster = raster;
     joinOperation = MaskOperation.AND;
   }
 
@@ -90,14 +127,82 @@ public class ValidMaskImageBuilder {
     if (maskImages.isEmpty()) {
       return createConstantMask(VALID);
     }
-    RenderedImage mask = maskImages.get(0).create(sourceProduct, getEffectiveTileSize());
-    for (int i = 1; i < maskImages.size(); i++) {
-      MaskImage element = maskImages.get(i);
-      RenderedImage maskImage = element.create(sourceProduct, getEffectiveTileSize());
-      mask = JAI.create(element.getOperationName(), mask, maskImage);
+    List<RenderedImage> images = new ArrayList<>(maskImages.size());
+    for (MaskImage element : maskImages) {
+      images.add(element.create(sourceProduct, getEffectiveTileSize()));
     }
+    return combine(maskImages, images);
+  }
 
-    return mask;
+  /**
+   * Creates the mask image and wraps it as a region of interest, e.g. for JAI statistics operations.
+   *
+   * @return the region of interest
+   * @throws ValidMaskBuilderException if the mask image could not be created
+   */
+  public MaskROI createROI() throws ValidMaskBuilderException {
+    return new MaskROI(create());
+  }
+
+  /**
+   * Creates the mask image asynchronously. The mask sources (expressions, geometries, shapefiles, ...) are prepared
+   * concurrently on the given executor and combined in the order they have been added to this builder.
+   *
+   * @param executor the executor used to prepare the mask sources
+   * @return a future providing the mask image
+   * @see #createAsync(Executor, ProgressMonitor)
+   */
+  public CompletableFuture<RenderedImage> createAsync(Executor executor) {
+    return createAsync(executor, ProgressMonitor.NULL);
+  }
+
+  /**
+   * Creates the mask image asynchronously. The mask sources (expressions, geometries, shapefiles, ...) are prepared
+   * concurrently on the given executor and combined in the order they have been added to this builder.
+   *
+   * <p>The progress monitor is advanced by one unit for each prepared mask source. Cancelling the progress monitor or
+   * the returned future prevents mask sources which are not yet started from being prepared. If the preparation of a
+   * mask source fails, the returned future completes exceptionally with the {@link ValidMaskBuilderException} as
+   * cause.
+   *
+   * @param executor the executor used to prepare the mask sources
+   * @param pm       the progress monitor
+   * @return a future providing the mask image
+   */
+  public CompletableFuture<RenderedImage> createAsync(Executor executor, ProgressMonitor pm) {
+    if (maskImages.isEmpty()) {
+      return CompletableFuture.completedFuture(createConstantMask(VALID));
+    }
+    List<MaskImage> elements = new ArrayList<>(maskImages);
+    Dimension effectiveTileSize = getEffectiveTileSize();
+    pm.beginTask("Preparing mask sources", elements.size());
+
+    CompletableFuture<RenderedImage> result = new CompletableFuture<>();
+    List<CompletableFuture<RenderedImage>> parts = new ArrayList<>(elements.size());
+    AtomicInteger remaining = new AtomicInteger(elements.size());
+    for (MaskImage element : elements) {
+      CompletableFuture<RenderedImage> part = CompletableFuture.supplyAsync(
+          () -> createElement(element, effectiveTileSize, pm), executor);
+      parts.add(part);
+      part.whenComplete((image, throwable) -> {
+        if (throwable != null) {
+          result.completeExceptionally(unwrap(throwable));
+        } else if (remaining.decrementAndGet() == 0) {
+          try {
+            result.complete(combine(elements, parts.stream().map(CompletableFuture::join).toList()));
+          } catch (Throwable t) {
+            result.completeExceptionally(t);
+          }
+        }
+      });
+    }
+    result.whenComplete((image, throwable) -> {
+      if (throwable != null) {
+        parts.forEach(part -> part.cancel(false));
+      }
+      pm.done();
+    });
+    return result;
   }
 
   /**
@@ -182,7 +287,51 @@ public class ValidMaskImageBuilder {
    */
   public ValidMaskImageBuilder withShapeFile(Path shapeFile) {
     if (shapeFile != null) {
-      maskImages.add(new ShapefileImage(joinOperation, shapeFile));
+      maskImages.add(new ShapefileImage(joinOperation, shapeFile, null));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a mask read from a shape file, considering only the features whose attributes match the given filter. The
+   * filter is evaluated on the attributes of the dBASE records while they are read, e.g. {@code attributes ->
+   * "wheat".equals(attributes.get("crop"))}. The geometries of records not matching the filter are not decoded.
+   *
+   * @param shapeFile the path to the shape file
+   * @param filter    the filter applied to the attributes of each record, keyed by the attribute name
+   * @return the current builder instance
+   */
+  public ValidMaskImageBuilder withShapeFile(Path shapeFile, Predicate<Map<String, Object>> filter) {
+    if (shapeFile != null) {
+      maskImages.add(new ShapefileImage(joinOperation, shapeFile, filter));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a mask read from a FlatGeobuf file. If the file contains a spatial index, only the features intersecting the
+   * bounds of the product are read.
+   *
+   * @param flatGeobufFile the path to the FlatGeobuf file
+   * @return the current builder instance
+   */
+  public ValidMaskImageBuilder withFlatGeobuf(Path flatGeobufFile) {
+    if (flatGeobufFile != null) {
+      maskImages.add(new FlatGeobufImage(joinOperation, flatGeobufFile));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a mask read from a GeoJSON file. The file is parsed as a stream and only the features intersecting the bounds
+   * of the product are kept.
+   *
+   * @param geoJsonFile the path to the GeoJSON file
+   * @return the current builder instance
+   */
+  public ValidMaskImageBuilder withGeoJson(Path geoJsonFile) {
+    if (geoJsonFile != null) {
+      maskImages.add(new GeoJsonImage(joinOperation, geoJsonFile));
     }
     return this;
   }
@@ -207,15 +356,60 @@ public class ValidMaskImageBuilder {
    */
   public ValidMaskImageBuilder withShapeFile(URL shapeUrl) {
     if (shapeUrl != null) {
-      maskImages.add(new ShapefileImage(joinOperation, shapeUrl));
+      maskImages.add(new ShapefileImage(joinOperation, shapeUrl, null));
     }
     return this;
   }
 
+  /**
+   * Adds a mask read from a shape file, considering only the features whose attributes match the given filter.
+   *
+   * @param shapeUrl the url of the shape file
+   * @param filter   the filter applied to the attributes of each record, keyed by the attribute name
+   * @return the current builder instance
+   * @see #withShapeFile(Path, Predicate)
+   */
+  public ValidMaskImageBuilder withShapeFile(URL shapeUrl, Predicate<Map<String, Object>> filter) {
+    if (shapeUrl != null) {
+      maskImages.add(new ShapefileImage(joinOperation, shapeUrl, filter));
+    }
+    return this;
+  }
+
+  private RenderedImage createElement(MaskImage element, Dimension tileSize, ProgressMonitor pm) {
+    if (pm.isCanceled()) {
+      throw new CancellationException("Creation of mask image has been cancelled.");
+    }
+    try {
+      return element.create(sourceProduct, tileSize);
+    } catch (ValidMaskBuilderException e) {
+      throw new CompletionException(e);
+    } finally {
+      synchronized (pm) {
+        pm.worked(1);
+      }
+    }
+  }
+
+  private static Throwable unwrap(Throwable throwable) {
+    if (throwable instanceof CompletionException && throwable.getCause() != null) {
+      return throwable.getCause();
+    }
+    return throwable;
+  }
+
+  private static RenderedImage combine(List<MaskImage> elements, List<RenderedImage> images) {
+    RenderedImage mask = images.get(0);
+    for (int i = 1; i < images.size(); i++) {
+      mask = JAI.create(elements.get(i).getOperationName(), mask, images.get(i));
+    }
+    return mask;
+  }
+
   @SuppressWarnings("SameParameterValue")
   private RenderedImage createConstantMask(int value) {
     ParameterBlock pb = new ParameterBlock();
-    Dimension dimension = sourceProduct.getSceneRasterSize();
+    Dimension dimension = getMaskSize();
     pb.add(Float.valueOf(dimension.width));
     pb.add(Float.valueOf(dimension.height));
     pb.add(new Byte[]{(byte) value});
@@ -228,6 +422,10 @@ public class ValidMaskImageBuilder {
     return JAI.create("Constant", pb, new RenderingHints(JAI.KEY_IMAGE_LAYOUT, tileLayout));
   }
 
+  private Dimension getMaskSize() {
+    return targetRaster != null ? targetRaster.getRasterSize() : sourceProduct.getSceneRasterSize();
+  }
+
   private Dimension getEffectiveTileSize() {
     if (tileSize != null) {
       return tileSize;
@@ -238,6 +436,52 @@ public class ValidMaskImageBuilder {
     }
   }
 
+  private RenderedImage createGeometryMask(String name, List<Geometry> geometries, CoordinateReferenceSystem crs,
+      Product product, Dimension tileSize) {
+    SimpleFeatureType featureType = PlainFeatureFactory.createDefaultFeatureType(crs);
+    ListFeatureCollection newCollection = new ListFeatureCollection(featureType);
+    SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType);
+    String idPrefix = "ID" + Long.toHexString(System.currentTimeMillis());
+    for (int i = 0; i < geometries.size(); i++) {
+      SimpleFeature feature = featureBuilder.buildFeature(idPrefix + "_" + i);
+      feature.setDefaultGeometry(geometries.get(i));
+      newCollection.add(feature);
+    }
+    FeatureCollection<SimpleFeatureType, SimpleFeature> features =
+        FeatureUtils.clipFeatureCollectionToProductBounds(newCollection, sourceProduct, null, ProgressMonitor.NULL);
+    return createVectorMask(name, features, product, tileSize);
+  }
+
+  private RenderedImage createVectorMask(String name, FeatureCollection<SimpleFeatureType, SimpleFeature> features,
+      Product product, Dimension tileSize) {
+    VectorDataNode roiNode = new VectorDataNode(name, features);
+    roiNode.setOwner(sourceProduct);
+
+    Dimension dimension = getMaskSize();
+    Mask roiMask = new Mask("m", dimension.width, dimension.height, Mask.VectorDataType.INSTANCE);
+    if (targetRaster != null) {
+      // rasterizes the geometries directly at the grid of the target raster
+      roiMask.setGeoCoding(targetRaster.getGeoCoding());
+    }
+    roiMask.setOwner(sourceProduct);
+    Mask.VectorDataType.setVectorData(roiMask, roiNode);
+    MultiLevelImage sourceImage = roiMask.getSourceImage();
+    return JAIUtils.createTileFormatOp(sourceImage.getImage(0), tileSize.width, tileSize.height);
+  }
+
+  private static Envelope getGeoBounds(Product product, CoordinateReferenceSystem crs)
+      throws ValidMaskBuilderException {
+    Envelope geoBounds = FeatureUtils.createGeoBoundaryPolygon(product).getEnvelopeInternal();
+    if (crs == DefaultGeographicCRS.WGS84) {
+      return geoBounds;
+    }
+    try {
+      return new ReferencedEnvelope(geoBounds, DefaultGeographicCRS.WGS84).transform(crs, true);
+    } catch (TransformException | FactoryException e) {
+      throw new ValidMaskBuilderException("Cannot transform product bounds into CRS of vector data.", e);
+    }
+  }
+
   private enum MaskOperation {
     OR, AND
   }
@@ -272,7 +516,7 @@ public class ValidMaskImageBuilder {
     }
   }
 
-  private static class ValidExprImage extends MaskImage {
+  private class ValidExprImage extends MaskImage {
 
     private final String validExpression;
 
@@ -287,8 +531,18 @@ public class ValidMaskImageBuilder {
         throw new ValidMaskBuilderException("Expression must not be null or empty.");
       }
       Term term = VirtualBandOpImage.parseExpression(validExpression, product);
+      Dimension maskSize = getMaskSize();
+      if (targetRaster != null) {
+        for (RasterDataNode refRaster : BandArithmetic.getRefRasters(term)) {
+          if (!maskSize.equals(refRaster.getRasterSize())) {
+            throw new ValidMaskBuilderException(String.format(
+                "Expression '%s' refers to raster '%s' which differs in size from target raster '%s'.",
+                validExpression, refRaster.getName(), targetRaster.getName()));
+          }
+        }
+      }
       VirtualBandOpImage.Builder builder = VirtualBandOpImage.builder(term).
-                                                             sourceSize(product.getSceneRasterSize())
+                                                             sourceSize(maskSize)
                                                              .tileSize(tileSize)
                                                              .mask(true);
       return builder.create();
@@ -309,44 +563,91 @@ public class ValidMaskImageBuilder {
       if (geometry == null) {
         throw new ValidMaskBuilderException("Geometry must not be null.");
       }
+      return createGeometryMask("WktRoiImage", List.of(geometry), DefaultGeographicCRS.WGS84, product, tileSize);
+    }
+  }
 
-      SimpleFeatureType wktFeatureType = PlainFeatureFactory.createDefaultFeatureType(DefaultGeographicCRS.WGS84);
-      ListFeatureCollection newCollection = new ListFeatureCollection(wktFeatureType);
-      SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(wktFeatureType);
-      SimpleFeature wktFeature = featureBuilder.buildFeature("ID" + Long.toHexString(System.currentTimeMillis()));
-      wktFeature.setDefaultGeometry(geometry);
-      newCollection.add(wktFeature);
-      FeatureCollection<SimpleFeatureType, SimpleFeature> wktFeatures =
-          FeatureUtils.clipFeatureCollectionToProductBounds(newCollection, sourceProduct,
-              null, ProgressMonitor.NULL);
+  private class FlatGeobufImage extends MaskImage {
 
-      VectorDataNode roiNode = new VectorDataNode("WktRoiImage", wktFeatures);
-      roiNode.setOwner(sourceProduct);
+    private final Path file;
 
-      Dimension dimension = product.getSceneRasterSize();
-      Mask wktRoiMask = new Mask("m", dimension.width, dimension.height, Mask.VectorDataType.INSTANCE);
-      Mask.VectorDataType.setVectorData(wktRoiMask, roiNode);
-      wktRoiMask.setOwner(sourceProduct);
-      MultiLevelImage sourceImage = wktRoiMask.getSourceImage();
-      return JAIUtils.createTileFormatOp(sourceImage.getImage(0), tileSize.width, tileSize.height);
+    public FlatGeobufImage(MaskOperation operation, Path file) {
+      super(operation);
+      this.file = file;
+    }
+
+    @Override
+    public RenderedImage create(Product product, Dimension tileSize) throws ValidMaskBuilderException {
+      List<Geometry> geometries = new ArrayList<>();
+      CoordinateReferenceSystem crs;
+      try (FlatGeobufReader reader = new FlatGeobufReader(file, new GeometryFactory())) {
+        crs = getCrs(reader);
+        reader.read(getGeoBounds(product, crs), geometries::add);
+      } catch (IOException e) {
+        throw new ValidMaskBuilderException("Cannot load FlatGeobuf file.", e);
+      }
+      return createGeometryMask("flatGeobufRoiImage", geometries, crs, product, tileSize);
+    }
+
+    private CoordinateReferenceSystem getCrs(FlatGeobufReader reader) throws ValidMaskBuilderException {
+      try {
+        // the code is preferred, GDAL writes WKT2 which can not be parsed by GeoTools
+        String organization = reader.getCrsOrganization() != null ? reader.getCrsOrganization() : "EPSG";
+        if (reader.getCrsCode() > 0) {
+          if (organization.equalsIgnoreCase("EPSG") && reader.getCrsCode() == 4326) {
+            return DefaultGeographicCRS.WGS84;
+          }
+          return CRS.decode(organization + ":" + reader.getCrsCode(), true);
+        }
+        if (reader.getCrsWkt() != null && !reader.getCrsWkt().isEmpty()) {
+          return CRS.parseWKT(reader.getCrsWkt());
+        }
+        return DefaultGeographicCRS.WGS84;
+      } catch (FactoryException e) {
+        throw new ValidMaskBuilderException("Cannot decode CRS of FlatGeobuf file.", e);
+      }
+    }
+  }
+
+  private class GeoJsonImage extends MaskImage {
+
+    private final Path file;
+
+    public GeoJsonImage(MaskOperation operation, Path file) {
+      super(operation);
+      this.file = file;
+    }
+
+    @Override
+    public RenderedImage create(Product product, Dimension tileSize) throws ValidMaskBuilderException {
+      List<Geometry> geometries = new ArrayList<>();
+      try {
+        Envelope geoBounds = getGeoBounds(product, DefaultGeographicCRS.WGS84);
+        new GeoJsonReader(new GeometryFactory()).read(file, geoBounds, geometries::add);
+      } catch (IOException e) {
+        throw new ValidMaskBuilderException("Cannot load GeoJSON file.", e);
+      }
+      return createGeometryMask("geoJsonRoiImage", geometries, DefaultGeographicCRS.WGS84, product, tileSize);
     }
   }
 
   private class ShapefileImage extends MaskImage {
 
     private final File shapeFile;
+    private final Predicate<Map<String, Object>> filter;
 
-    public ShapefileImage(MaskOperation operation, Path shapePath) {
-      this(operation, shapePath.toFile());
+    public ShapefileImage(MaskOperation operation, Path shapePath, Predicate<Map<String, Object>> filter) {
+      this(operation, shapePath.toFile(), filter);
     }
 
-    public ShapefileImage(MaskOperation operation, URL shapeUrl) {
-      this(operation, new File(shapeUrl.getFile()));
+    public ShapefileImage(MaskOperation operation, URL shapeUrl, Predicate<Map<String, Object>> filter) {
+      this(operation, new File(shapeUrl.getFile()), filter);
     }
 
-    public ShapefileImage(MaskOperation operation, File shapeFile) {
+    public ShapefileImage(MaskOperation operation, File shapeFile, Predicate<Map<String, Object>> filter) {
       super(operation);
       this.shapeFile = shapeFile;
+      this.filter = filter;
     }
 
 
@@ -356,22 +657,65 @@ public class ValidMaskImageBuilder {
         throw new ValidMaskBuilderException("Shapefile must not be null.");
       }
 
-      Dimension dimension = product.getSceneRasterSize();
       final FeatureUtils.FeatureCrsProvider crsProvider = new Wgs84CrsProvider(true);
-      DefaultFeatureCollection simpleFeatures;
+      FeatureCollection<SimpleFeatureType, SimpleFeature> simpleFeatures;
       try {
-        simpleFeatures = FeatureUtils.loadShapefileForProduct(shapeFile, sourceProduct,
-            crsProvider, ProgressMonitor.NULL);
+        if (filter == null) {
+          simpleFeatures = FeatureUtils.loadShapefileForProduct(shapeFile, sourceProduct,
+              crsProvider, ProgressMonitor.NULL);
+        } else {
+          simpleFeatures = FeatureUtils.clipFeatureCollectionToProductBounds(readFilteredFeatures(), sourceProduct,
+              crsProvider, ProgressMonitor.NULL);
+        }
       } catch (IOException e) {
         throw new ValidMaskBuilderException("Cannot load shapefile.", e);
       }
-      VectorDataNode shapefileRoiNode = new VectorDataNode("shapefileRoiImage", simpleFeatures);
-      shapefileRoiNode.setOwner(sourceProduct);
+      return createVectorMask("shapefileRoiImage", simpleFeatures, product, tileSize);
+    }
 
-      Mask shapefileMaks = new Mask("m", dimension.width, dimension.height, Mask.VectorDataType.INSTANCE);
-      shapefileMaks.setOwner(sourceProduct);
-      Mask.VectorDataType.setVectorData(shapefileMaks, shapefileRoiNode);
-      return JAIUtils.createTileFormatOp(shapefileMaks.getSourceImage().getImage(0), tileSize.width, tileSize.height);
+    private ListFeatureCollection readFilteredFeatures() throws IOException {
+      ShapefileDataStore dataStore = new ShapefileDataStore(shapeFile.toURI().toURL());
+      try {
+        SimpleFeatureType featureType = dataStore.getSchema();
+        ListFeatureCollection features = new ListFeatureCollection(featureType);
+        ShpFiles shpFiles = new ShpFiles(shapeFile);
+        try (ShapefileReader shpReader = new ShapefileReader(shpFiles, false, true, new GeometryFactory());
+            DbaseFileReader dbfReader = new DbaseFileReader(shpFiles, true, dataStore.getCharset())) {
+          DbaseFileHeader header = dbfReader.getHeader();
+          String[] fieldNames = new String[header.getNumFields()];
+          for (int i = 0; i < fieldNames.length; i++) {
+            fieldNames[i] = header.getFieldName(i);
+          }
+          Object[] values = new Object[fieldNames.length];
+          Map<String, Object> attributes = new HashMap<>();
+          SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType);
+          int recordIndex = 0;
+          while (dbfReader.hasNext() && shpReader.hasNext()) {
+            dbfReader.readEntry(values);
+            // only the record header is read here, the geometry is decoded lazily by shape()
+            ShapefileReader.Record record = shpReader.nextRecord();
+            recordIndex++;
+            for (int i = 0; i < fieldNames.length; i++) {
+              attributes.put(fieldNames[i], values[i]);
+            }
+            if (!filter.test(attributes)) {
+              continue;
+            }
+            Object geometry = record.shape();
+            if (geometry == null) {
+              continue;
+            }
+            featureBuilder.add(geometry);
+            for (Object value : values) {
+              featureBuilder.add(value);
+            }
+            features.add(featureBuilder.buildFeature(featureType.getTypeName() + "." + recordIndex));
+          }
+        }
+        return features;
+      } finally {
+        dataStore.dispose();
+      }
     }
 
   }
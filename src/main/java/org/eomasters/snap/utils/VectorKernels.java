@@ -0,0 +1,255 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Scanline kernels based on the Vector API. The kernels expect contiguous samples, i.e. a pixel stride of one. Only
+ * use this class if {@link Vectorization#isEnabled()} returns {@code true}, otherwise it can not be loaded.
+ *
+ * <p>The masking kernels read the mask as bytes and split the lane bits of each mask vector onto the vectors of the
+ * data type, which have the same shape but fewer lanes.
+ */
+final class VectorKernels {
+
+  private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Short> SHORT_SPECIES = ShortVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Double> DOUBLE_SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  private VectorKernels() {
+  }
+
+  /**
+   * Copies the source samples where the mask is not zero and sets all other samples to the fill value.
+   *
+   * @param src        the source samples
+   * @param srcOffset  the offset of the first source sample
+   * @param mask       the mask samples
+   * @param maskOffset the offset of the first mask sample
+   * @param dst        the destination samples
+   * @param dstOffset  the offset of the first destination sample
+   * @param length     the number of samples
+   * @param fill       the fill value
+   */
+  static void maskByte(byte[] src, int srcOffset, byte[] mask, int maskOffset, byte[] dst, int dstOffset,
+      int length, byte fill) {
+    ByteVector fillVector = ByteVector.broadcast(BYTE_SPECIES, fill);
+    int lanes = BYTE_SPECIES.length();
+    int step = BYTE_SPECIES.length();
+    int x = 0;
+    for (; x <= length - step; x += step) {
+      long validBits = ByteVector.fromArray(BYTE_SPECIES, mask, maskOffset + x).compare(VectorOperators.NE, 0).toLong();
+      for (int part = 0; part < step; part += lanes) {
+        VectorMask<Byte> valid = VectorMask.fromLong(BYTE_SPECIES, validBits >>> part);
+        ByteVector values = ByteVector.fromArray(BYTE_SPECIES, src, srcOffset + x + part);
+        fillVector.blend(values, valid).intoArray(dst, dstOffset + x + part);
+      }
+    }
+    for (; x < length; x++) {
+      dst[dstOffset + x] = mask[maskOffset + x] != 0 ? src[srcOffset + x] : fill;
+    }
+  }
+
+  /**
+   * Copies the source samples where the mask is not zero and sets all other samples to the fill value.
+   *
+   * @param src        the source samples
+   * @param srcOffset  the offset of the first source sample
+   * @param mask       the mask samples
+   * @param maskOffset the offset of the first mask sample
+   * @param dst        the destination samples
+   * @param dstOffset  the offset of the first destination sample
+   * @param length     the number of samples
+   * @param fill       the fill value
+   */
+  static void maskShort(short[] src, int srcOffset, byte[] mask, int maskOffset, short[] dst, int dstOffset,
+      int length, short fill) {
+    ShortVector fillVector = ShortVector.broadcast(SHORT_SPECIES, fill);
+    int lanes = SHORT_SPECIES.length();
+    int step = BYTE_SPECIES.length();
+    int x = 0;
+    for (; x <= length - step; x += step) {
+      long validBits = ByteVector.fromArray(BYTE_SPECIES, mask, maskOffset + x).compare(VectorOperators.NE, 0).toLong();
+      for (int part = 0; part < step; part += lanes) {
+        VectorMask<Short> valid = VectorMask.fromLong(SHORT_SPECIES, validBits >>> part);
+        ShortVector values = ShortVector.fromArray(SHORT_SPECIES, src, srcOffset + x + part);
+        fillVector.blend(values, valid).intoArray(dst, dstOffset + x + part);
+      }
+    }
+    for (; x < length; x++) {
+      dst[dstOffset + x] = mask[maskOffset + x] != 0 ? src[srcOffset + x] : fill;
+    }
+  }
+
+  /**
+   * Copies the source samples where the mask is not zero and sets all other samples to the fill value.
+   *
+   * @param src        the source samples
+   * @param srcOffset  the offset of the first source sample
+   * @param mask       the mask samples
+   * @param maskOffset the offset of the first mask sample
+   * @param dst        the destination samples
+   * @param dstOffset  the offset of the first destination sample
+   * @param length     the number of samples
+   * @param fill       the fill value
+   */
+  static void maskInt(int[] src, int srcOffset, byte[] mask, int maskOffset, int[] dst, int dstOffset,
+      int length, int fill) {
+    IntVector fillVector = IntVector.broadcast(INT_SPECIES, fill);
+    int lanes = INT_SPECIES.length();
+    int step = BYTE_SPECIES.length();
+    int x = 0;
+    for (; x <= length - step; x += step) {
+      long validBits = ByteVector.fromArray(BYTE_SPECIES, mask, maskOffset + x).compare(VectorOperators.NE, 0).toLong();
+      for (int part = 0; part < step; part += lanes) {
+        VectorMask<Integer> valid = VectorMask.fromLong(INT_SPECIES, validBits >>> part);
+        IntVector values = IntVector.fromArray(INT_SPECIES, src, srcOffset + x + part);
+        fillVector.blend(values, valid).intoArray(dst, dstOffset + x + part);
+      }
+    }
+    for (; x < length; x++) {
+      dst[dstOffset + x] = mask[maskOffset + x] != 0 ? src[srcOffset + x] : fill;
+    }
+  }
+
+  /**
+   * Copies the source samples where the mask is not zero and sets all other samples to the fill value.
+   *
+   * @param src        the source samples
+   * @param srcOffset  the offset of the first source sample
+   * @param mask       the mask samples
+   * @param maskOffset the offset of the first mask sample
+   * @param dst        the destination samples
+   * @param dstOffset  the offset of the first destination sample
+   * @param length     the number of samples
+   * @param fill       the fill value
+   */
+  static void maskFloat(float[] src, int srcOffset, byte[] mask, int maskOffset, float[] dst, int dstOffset,
+      int length, float fill) {
+    FloatVector fillVector = FloatVector.broadcast(FLOAT_SPECIES, fill);
+    int lanes = FLOAT_SPECIES.length();
+    int step = BYTE_SPECIES.length();
+    int x = 0;
+    for (; x <= length - step; x += step) {
+      long validBits = ByteVector.fromArray(BYTE_SPECIES, mask, maskOffset + x).compare(VectorOperators.NE, 0).toLong();
+      for (int part = 0; part < step; part += lanes) {
+        VectorMask<Float> valid = VectorMask.fromLong(FLOAT_SPECIES, validBits >>> part);
+        FloatVector values = FloatVector.fromArray(FLOAT_SPECIES, src, srcOffset + x + part);
+        fillVector.blend(values, valid).intoArray(dst, dstOffset + x + part);
+      }
+    }
+    for (; x < length; x++) {
+      dst[dstOffset + x] = mask[maskOffset + x] != 0 ? src[srcOffset + x] : fill;
+    }
+  }
+
+  /**
+   * Copies the source samples where the mask is not zero and sets all other samples to the fill value.
+   *
+   * @param src        the source samples
+   * @param srcOffset  the offset of the first source sample
+   * @param mask       the mask samples
+   * @param maskOffset the offset of the first mask sample
+   * @param dst        the destination samples
+   * @param dstOffset  the offset of the first destination sample
+   * @param length     the number of samples
+   * @param fill       the fill value
+   */
+  static void maskDouble(double[] src, int srcOffset, byte[] mask, int maskOffset, double[] dst, int dstOffset,
+      int length, double fill) {
+    DoubleVector fillVector = DoubleVector.broadcast(DOUBLE_SPECIES, fill);
+    int lanes = DOUBLE_SPECIES.length();
+    int step = BYTE_SPECIES.length();
+    int x = 0;
+    for (; x <= length - step; x += step) {
+      long validBits = ByteVector.fromArray(BYTE_SPECIES, mask, maskOffset + x).compare(VectorOperators.NE, 0).toLong();
+      for (int part = 0; part < step; part += lanes) {
+        VectorMask<Double> valid = VectorMask.fromLong(DOUBLE_SPECIES, validBits >>> part);
+        DoubleVector values = DoubleVector.fromArray(DOUBLE_SPECIES, src, srcOffset + x + part);
+        fillVector.blend(values, valid).intoArray(dst, dstOffset + x + part);
+      }
+    }
+    for (; x < length; x++) {
+      dst[dstOffset + x] = mask[maskOffset + x] != 0 ? src[srcOffset + x] : fill;
+    }
+  }
+
+  /**
+   * Copies the source samples and replaces NaN by the replacement value.
+   *
+   * @param src         the source samples
+   * @param srcOffset   the offset of the first source sample
+   * @param dst         the destination samples
+   * @param dstOffset   the offset of the first destination sample
+   * @param length      the number of samples
+   * @param replacement the replacement value
+   */
+  static void replaceNaNFloat(float[] src, int srcOffset, float[] dst, int dstOffset, int length,
+      float replacement) {
+    int lanes = FLOAT_SPECIES.length();
+    int x = 0;
+    for (; x <= length - lanes; x += lanes) {
+      FloatVector values = FloatVector.fromArray(FLOAT_SPECIES, src, srcOffset + x);
+      values.blend(replacement, values.test(VectorOperators.IS_NAN)).intoArray(dst, dstOffset + x);
+    }
+    for (; x < length; x++) {
+      float value = src[srcOffset + x];
+      dst[dstOffset + x] = Float.isNaN(value) ? replacement : value;
+    }
+  }
+
+  /**
+   * Copies the source samples and replaces NaN by the replacement value.
+   *
+   * @param src         the source samples
+   * @param srcOffset   the offset of the first source sample
+   * @param dst         the destination samples
+   * @param dstOffset   the offset of the first destination sample
+   * @param length      the number of samples
+   * @param replacement the replacement value
+   */
+  static void replaceNaNDouble(double[] src, int srcOffset, double[] dst, int dstOffset, int length,
+      double replacement) {
+    int lanes = DOUBLE_SPECIES.length();
+    int x = 0;
+    for (; x <= length - lanes; x += lanes) {
+      DoubleVector values = DoubleVector.fromArray(DOUBLE_SPECIES, src, srcOffset + x);
+      values.blend(replacement, values.test(VectorOperators.IS_NAN)).intoArray(dst, dstOffset + x);
+    }
+    for (; x < length; x++) {
+      double value = src[srcOffset + x];
+      dst[dstOffset + x] = Double.isNaN(value) ? replacement : value;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+/**
+ * Runtime switch for the {@link VectorKernels}. The vector kernels are used if the {@code jdk.incubator.vector} module
+ * is available, e.g. by starting the JVM with {@code --add-modules jdk.incubator.vector}, and if they are not disabled
+ * by setting the system property {@value #PROPERTY} to {@code false}.
+ *
+ * <p>This class must not reference any type of the incubator module, so that it can be loaded without it.
+ */
+final class Vectorization {
+
+  /**
+   * The system property to disable the vector kernels.
+   */
+  static final String PROPERTY = "eomasters.snap.vectorization";
+
+  private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(PROPERTY, "true"))
+      && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+  private Vectorization() {
+  }
+
+  /**
+   * Tells whether the vector kernels can be used.
+   *
+   * @return {@code true} if the vector kernels are enabled and available
+   */
+  static boolean isEnabled() {
+    return ENABLED;
+  }
+}
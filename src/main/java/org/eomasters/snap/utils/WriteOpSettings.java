@@ -0,0 +1,127 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.Dimension;
+import java.awt.image.RenderedImage;
+import javax.media.jai.JAI;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.gpf.common.WriteOp;
+
+/**
+ * The settings of a {@link WriteOp} chosen from the size of the product and the available memory.
+ *
+ * <p>Writing entire tile rows lets the WriteOp hand one contiguous block per band to the product writer, but the
+ * WriteOp buffers the whole row of every band until the last tile of the row has been computed. This is done only if
+ * the row buffers, together with the computed tiles, use at most a quarter of the free heap. Otherwise, the tiles are
+ * written one by one.
+ *
+ * <p>Clearing the tile cache after each row releases tiles which will not be requested again when the rows are
+ * written in order. It is only done if the product does not fit into the tile cache anyway. Smaller products keep
+ * their tiles, so images computed from the same sources can reuse them.
+ *
+ * @param writeEntireTileRows     whether entire tile rows are written
+ * @param clearCacheAfterRowWrite whether the tile cache is cleared after each row
+ * @param bytesPerTileRow         the estimated size of one row of tiles of all bands
+ * @param rawSize                 the size of the data of all bands
+ * @param freeHeap                the free heap at the time of the decision
+ * @param tileCacheCapacity       the capacity of the tile cache
+ */
+public record WriteOpSettings(boolean writeEntireTileRows, boolean clearCacheAfterRowWrite, long bytesPerTileRow,
+                              long rawSize, long freeHeap, long tileCacheCapacity) {
+
+  private static final int DEFAULT_TILE_HEIGHT = 512;
+
+  /**
+   * Chooses the settings for writing the given product with the current heap and the default JAI tile cache.
+   *
+   * @param product the product to write
+   * @return the settings
+   */
+  public static WriteOpSettings forProduct(Product product) {
+    Runtime runtime = Runtime.getRuntime();
+    long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    long cacheCapacity = JAI.getDefaultInstance().getTileCache().getMemoryCapacity();
+    long bytesPerTileRow = 0;
+    long rawSize = 0;
+    for (Band band : product.getBands()) {
+      int elemSize = ProductData.getElemSize(band.getDataType());
+      int tileHeight = Math.min(getTileHeight(product, band), band.getRasterHeight());
+      bytesPerTileRow += (long) band.getRasterWidth() * tileHeight * elemSize;
+      rawSize += (long) band.getRasterWidth() * band.getRasterHeight() * elemSize;
+    }
+    return decide(bytesPerTileRow, rawSize, freeHeap, cacheCapacity);
+  }
+
+  /**
+   * Chooses the settings for the given sizes.
+   *
+   * @param bytesPerTileRow   the size of one row of tiles of all bands
+   * @param rawSize           the size of the data of all bands
+   * @param freeHeap          the free heap
+   * @param tileCacheCapacity the capacity of the tile cache
+   * @return the settings
+   */
+  public static WriteOpSettings decide(long bytesPerTileRow, long rawSize, long freeHeap, long tileCacheCapacity) {
+    // the row buffers of the WriteOp and the computed tiles of the row
+    boolean writeEntireTileRows = 2 * bytesPerTileRow <= freeHeap / 4;
+    boolean clearCacheAfterRowWrite = rawSize > tileCacheCapacity;
+    return new WriteOpSettings(writeEntireTileRows, clearCacheAfterRowWrite, bytesPerTileRow, rawSize, freeHeap,
+        tileCacheCapacity);
+  }
+
+  /**
+   * Applies the settings to the operator.
+   *
+   * @param writeOp the operator
+   */
+  public void applyTo(WriteOp writeOp) {
+    writeOp.setWriteEntireTileRows(writeEntireTileRows);
+    writeOp.setClearCacheAfterRowWrite(clearCacheAfterRowWrite);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s, %s (tile row %d MB, product %d MB, free heap %d MB, tile cache %d MB)",
+        writeEntireTileRows ? "writing entire tile rows" : "writing tile by tile",
+        clearCacheAfterRowWrite ? "clearing the tile cache after each row" : "keeping the tile cache",
+        toMegabytes(bytesPerTileRow), toMegabytes(rawSize), toMegabytes(freeHeap), toMegabytes(tileCacheCapacity));
+  }
+
+  private static int getTileHeight(Product product, Band band) {
+    if (band.isSourceImageSet()) {
+      RenderedImage image = band.getSourceImage().getImage(0);
+      return image.getTileHeight();
+    }
+    Dimension tileSize = product.getPreferredTileSize();
+    return tileSize != null ? tileSize.height : DEFAULT_TILE_HEIGHT;
+  }
+
+  private static long toMegabytes(long bytes) {
+    return bytes / (1024 * 1024);
+  }
+}
@@ -0,0 +1,123 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.bc.ceres.core.NullProgressMonitor;
+import com.bc.ceres.core.ProgressMonitor;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.esa.snap.core.gpf.OperatorCancelException;
+import org.junit.jupiter.api.Test;
+
+class BatchSchedulerTest {
+
+  private static final long MB = 1024 * 1024;
+
+  @Test
+  void testParallelismLimitedByProcessors() {
+    assertEquals(4, BatchScheduler.computeParallelism(10, 8, 4096 * MB, 10 * MB));
+    assertEquals(1, BatchScheduler.computeParallelism(10, 1, 4096 * MB, 10 * MB));
+  }
+
+  @Test
+  void testParallelismLimitedByHeap() {
+    // half of the free heap is available, which is enough for three working sets
+    assertEquals(3, BatchScheduler.computeParallelism(10, 16, 600 * MB, 100 * MB));
+    assertEquals(1, BatchScheduler.computeParallelism(10, 16, 100 * MB, 100 * MB));
+  }
+
+  @Test
+  void testParallelismLimitedByProducts() {
+    assertEquals(2, BatchScheduler.computeParallelism(2, 16, 4096 * MB, 10 * MB));
+    assertEquals(1, BatchScheduler.computeParallelism(0, 16, 4096 * MB, 10 * MB));
+  }
+
+  @Test
+  void testParallelismWithoutWorkingSet() {
+    assertEquals(8, BatchScheduler.computeParallelism(10, 16, 0, 0));
+  }
+
+  @Test
+  void testCancelledTasksAreNotFailures() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    ProgressMonitor pm = new NullProgressMonitor() {
+      @Override
+      public boolean isCanceled() {
+        return started.getCount() == 0;
+      }
+    };
+    BatchScheduler.Task cancellable = new TestTask("cancellable") {
+      @Override
+      public void execute(ProgressMonitor taskPm) throws InterruptedException {
+        started.countDown();
+        while (!taskPm.isCanceled()) {
+          Thread.sleep(10);
+        }
+        throw new OperatorCancelException("Cancelled");
+      }
+    };
+    BatchScheduler.Task failing = new TestTask("failing") {
+      @Override
+      public void execute(ProgressMonitor taskPm) {
+        throw new IllegalStateException("Failed");
+      }
+    };
+
+    BatchScheduler.Report report = new BatchScheduler(2).run(List.of(failing, cancellable), pm);
+
+    assertTrue(report.cancelled());
+    assertEquals(1, report.getCancelledCount());
+    assertEquals(0, report.getSuccessCount());
+    List<BatchScheduler.Result> failures = report.getFailures();
+    assertEquals(1, failures.size());
+    assertEquals("failing", failures.get(0).name());
+    BatchScheduler.Result cancelled = report.results().stream().filter(BatchScheduler.Result::cancelled)
+                                            .findFirst().orElseThrow();
+    assertEquals("cancellable", cancelled.name());
+    assertNull(cancelled.error());
+  }
+
+  private abstract static class TestTask implements BatchScheduler.Task {
+
+    private final String name;
+
+    TestTask(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public long getSize() {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.bc.ceres.core.NullProgressMonitor;
+import com.bc.ceres.core.ProgressMonitor;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.gpf.GPF;
+import org.esa.snap.core.gpf.OperatorCancelException;
+import org.esa.snap.core.gpf.common.BandMathsOp;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CostEstimatorTest {
+
+  private static final int WIDTH = 600;
+  private static final int HEIGHT = 400;
+  private static final long MB = 1024 * 1024;
+
+  @TempDir
+  Path tempDir;
+
+  @BeforeAll
+  static void beforeAll() {
+    GPF.getDefaultInstance().getOperatorSpiRegistry().loadOperatorSpis();
+  }
+
+  @Test
+  void testOutputSizeIsExtrapolatedToTarget() {
+    CostEstimator.Estimate estimate = createEstimator().estimate(tempDir.toFile(), ProgressMonitor.NULL);
+
+    // the windows are smaller than the product, the output size covers the whole float target band
+    assertEquals((long) WIDTH * HEIGHT * ProductData.getElemSize(ProductData.TYPE_FLOAT32), estimate.outputSize());
+    assertFalse(estimate.runtime().isNegative());
+    assertTrue(estimate.parallelism() >= 1);
+    assertTrue(estimate.memory() > 0);
+    assertTrue(estimate.diskSpace() > 0);
+  }
+
+  @Test
+  void testCancellation() {
+    ProgressMonitor pm = new NullProgressMonitor();
+    pm.setCanceled(true);
+    assertThrows(OperatorCancelException.class, () -> createEstimator().estimate(tempDir.toFile(), pm));
+  }
+
+  @Test
+  void testWarnings() {
+    CostEstimator.Estimate sufficient = new CostEstimator.Estimate(Duration.ofSeconds(1), 1, 100 * MB, 200 * MB,
+        50 * MB, 100 * MB);
+    assertEquals(List.of(), sufficient.getWarnings());
+
+    CostEstimator.Estimate unknownDisk = new CostEstimator.Estimate(Duration.ofSeconds(1), 1, 100 * MB, 200 * MB,
+        50 * MB, -1);
+    assertEquals(List.of(), unknownDisk.getWarnings());
+
+    CostEstimator.Estimate exceeded = new CostEstimator.Estimate(Duration.ofSeconds(1), 1, 300 * MB, 200 * MB,
+        150 * MB, 100 * MB);
+    List<String> warnings = exceeded.getWarnings();
+    assertEquals(2, warnings.size());
+    assertTrue(warnings.get(0).contains(CostEstimator.Estimate.formatBytes(300 * MB)), warnings.get(0));
+    assertTrue(warnings.get(1).contains(CostEstimator.Estimate.formatBytes(150 * MB)), warnings.get(1));
+  }
+
+  private static CostEstimator createEstimator() {
+    Product source = new Product("source", "test", WIDTH, HEIGHT);
+    source.addBand("band", "X * Y", ProductData.TYPE_FLOAT32);
+    BandMathsOp.BandDescriptor descriptor = new BandMathsOp.BandDescriptor();
+    descriptor.name = "result";
+    descriptor.type = ProductData.TYPESTRING_FLOAT32;
+    descriptor.expression = "band * 2";
+    Map<String, Object> parameters = Map.of("targetBands", new BandMathsOp.BandDescriptor[] {descriptor});
+    return new CostEstimator("BandMaths", parameters, Map.of("sourceProduct", source));
+  }
+}
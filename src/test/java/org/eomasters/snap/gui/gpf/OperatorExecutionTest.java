@@ -0,0 +1,106 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.esa.snap.core.dataio.ProductIO;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.gpf.OperatorException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OperatorExecutionTest {
+
+  private static final int WIDTH = 40;
+  private static final int HEIGHT = 30;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testWriteToSeveralOutputs() throws IOException {
+    File dimapFile = tempDir.resolve("result.dim").toFile();
+    File netCdfFile = tempDir.resolve("result.nc").toFile();
+    OperatorExecution.write(createProduct(), List.of(new OperatorExecution.Output(dimapFile, "BEAM-DIMAP"),
+        new OperatorExecution.Output(netCdfFile, "NetCDF4-CF")), ProgressMonitor.NULL);
+
+    assertWritten(dimapFile);
+    assertWritten(netCdfFile);
+  }
+
+  @Test
+  void testUnknownFormatIsRejected() {
+    File dimapFile = tempDir.resolve("result.dim").toFile();
+    File unknownFile = tempDir.resolve("result.xyz").toFile();
+    List<OperatorExecution.Output> outputs = List.of(new OperatorExecution.Output(dimapFile, "BEAM-DIMAP"),
+        new OperatorExecution.Output(unknownFile, "NoSuchFormat"));
+    assertThrows(OperatorException.class,
+        () -> OperatorExecution.write(createProduct(), outputs, ProgressMonitor.NULL));
+    assertFalse(dimapFile.exists());
+  }
+
+  private static void assertWritten(File file) throws IOException {
+    Product product = ProductIO.readProduct(file);
+    assertNotNull(product, file.getName());
+    try {
+      assertEquals(WIDTH, product.getSceneRasterWidth());
+      assertEquals(HEIGHT, product.getSceneRasterHeight());
+      int[] pixels = new int[WIDTH * HEIGHT];
+      product.getBand("band").readPixels(0, 0, WIDTH, HEIGHT, pixels);
+      for (int i = 0; i < pixels.length; i++) {
+        assertEquals(i, pixels[i], file.getName() + ", pixel " + i);
+      }
+    } finally {
+      product.dispose();
+    }
+  }
+
+  private static Product createProduct() {
+    TiledImage image = new TiledImage(0, 0, WIDTH, HEIGHT, 0, 0,
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_INT, 16, 16, 1), null);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        image.setSample(x, y, 0, y * WIDTH + x);
+      }
+    }
+    Product product = new Product("result", "test", WIDTH, HEIGHT);
+    Band band = product.addBand("band", ProductData.TYPE_INT32);
+    band.setSourceImage(image);
+    return product;
+  }
+}
@@ -0,0 +1,227 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.gui.gpf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import org.esa.snap.core.datamodel.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class OperatorJobManagerTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+  }
+
+  @Test
+  void testPriorityInsertion() throws InterruptedException {
+    OperatorJobManager manager = new OperatorJobManager(1);
+    OperatorJob running = startBlockingJob(manager, "running");
+    OperatorJob low1 = createJob("low1", 0);
+    OperatorJob high = createJob("high", 5);
+    OperatorJob low2 = createJob("low2", 0);
+    OperatorJob medium = createJob("medium", 2);
+    manager.submit(low1);
+    manager.submit(high);
+    manager.submit(low2);
+    manager.submit(medium);
+
+    assertEquals(List.of(running, high, medium, low1, low2), manager.getJobs());
+
+    manager.setPriority(low2, 3);
+    assertEquals(List.of(running, high, low2, medium, low1), manager.getJobs());
+  }
+
+  @Test
+  void testMoveUpAndDown() throws InterruptedException {
+    OperatorJobManager manager = new OperatorJobManager(1);
+    OperatorJob running = startBlockingJob(manager, "running");
+    OperatorJob first = createJob("first", 2);
+    OperatorJob second = createJob("second", 1);
+    OperatorJob third = createJob("third", 0);
+    manager.submit(first);
+    manager.submit(second);
+    manager.submit(third);
+
+    manager.moveUp(third);
+    assertEquals(List.of(running, first, third, second), manager.getJobs());
+    assertEquals(1, third.getPriority());
+
+    manager.moveDown(first);
+    assertEquals(List.of(running, third, first, second), manager.getJobs());
+    assertEquals(1, first.getPriority());
+
+    // the head and the end of the queue and the running job do not move
+    manager.moveUp(third);
+    manager.moveDown(second);
+    manager.moveUp(running);
+    assertEquals(List.of(running, third, first, second), manager.getJobs());
+  }
+
+  @Test
+  void testCancelQueuedJob() throws InterruptedException {
+    OperatorJobManager manager = new OperatorJobManager(1);
+    OperatorJob running = startBlockingJob(manager, "running");
+    AtomicBoolean executed = new AtomicBoolean();
+    OperatorJob queued = new OperatorJob("queued", pm -> {
+      executed.set(true);
+      return null;
+    }, null);
+    manager.submit(queued);
+
+    manager.cancel(queued);
+    assertEquals(OperatorJob.State.CANCELLED, queued.getState());
+    assertEquals(List.of(running, queued), manager.getJobs());
+
+    release.countDown();
+    waitFor(() -> running.getState().isFinished());
+    assertEquals(OperatorJob.State.SUCCEEDED, running.getState());
+    assertFalse(executed.get());
+  }
+
+  @Test
+  void testCancelRunningJob() throws InterruptedException {
+    OperatorJobManager manager = new OperatorJobManager(1);
+    CountDownLatch started = new CountDownLatch(1);
+    OperatorJob running = new OperatorJob("running", pm -> {
+      started.countDown();
+      while (!pm.isCanceled()) {
+        Thread.sleep(10);
+      }
+      return null;
+    }, null);
+    manager.submit(running);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    assertEquals(OperatorJob.State.RUNNING, running.getState());
+
+    manager.cancel(running);
+    waitFor(() -> running.getState().isFinished());
+    assertEquals(OperatorJob.State.CANCELLED, running.getState());
+    waitFor(() -> manager.getJobs().equals(List.of(running)));
+  }
+
+  @Test
+  void testSlotDispatch() throws InterruptedException {
+    OperatorJobManager manager = new OperatorJobManager(2);
+    CountDownLatch started = new CountDownLatch(2);
+    OperatorJob first = createBlockingJob("first", started);
+    OperatorJob second = createBlockingJob("second", started);
+    OperatorJob third = createJob("third", 0);
+    manager.submit(first);
+    manager.submit(second);
+    manager.submit(third);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    assertEquals(OperatorJob.State.QUEUED, third.getState());
+
+    manager.setMaxConcurrentJobs(3);
+    waitFor(() -> third.getState() == OperatorJob.State.SUCCEEDED);
+    assertEquals(OperatorJob.State.RUNNING, first.getState());
+    assertEquals(OperatorJob.State.RUNNING, second.getState());
+
+    release.countDown();
+    waitFor(() -> first.getState().isFinished() && second.getState().isFinished());
+    assertEquals(OperatorJob.State.SUCCEEDED, first.getState());
+    assertEquals(OperatorJob.State.SUCCEEDED, second.getState());
+  }
+
+  @Test
+  void testBackgroundJobDoesNotOccupySlot() throws InterruptedException {
+    OperatorJobManager manager = new OperatorJobManager(1);
+    CountDownLatch started = new CountDownLatch(1);
+    OperatorJob background = createBlockingJob("background", started);
+    manager.submitBackground(background);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    OperatorJob queued = createJob("queued", 0);
+    manager.submit(queued);
+    waitFor(() -> queued.getState() == OperatorJob.State.SUCCEEDED);
+    assertEquals(OperatorJob.State.RUNNING, background.getState());
+
+    release.countDown();
+    waitFor(() -> background.getState().isFinished());
+    assertEquals(OperatorJob.State.SUCCEEDED, background.getState());
+  }
+
+  @Test
+  void testResultReleasedAfterFinishHandler() throws InterruptedException {
+    OperatorJobManager manager = new OperatorJobManager(1);
+    Product product = new Product("result", "test", 1, 1);
+    AtomicReference<Product> handed = new AtomicReference<>();
+    OperatorJob job = new OperatorJob("job", pm -> product, finished -> handed.set(finished.getResult()));
+    OperatorJob withoutHandler = new OperatorJob("withoutHandler", pm -> product, null);
+    manager.submit(job);
+    manager.submit(withoutHandler);
+
+    waitFor(() -> handed.get() != null && withoutHandler.getState().isFinished());
+    assertSame(product, handed.get());
+    waitFor(() -> job.getResult() == null);
+    assertEquals(OperatorJob.State.SUCCEEDED, withoutHandler.getState());
+    assertNull(withoutHandler.getResult());
+    assertEquals(List.of(job, withoutHandler), manager.getJobs());
+  }
+
+  private OperatorJob startBlockingJob(OperatorJobManager manager, String name) throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    OperatorJob job = createBlockingJob(name, started);
+    manager.submit(job);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    return job;
+  }
+
+  private OperatorJob createBlockingJob(String name, CountDownLatch started) {
+    return new OperatorJob(name, pm -> {
+      started.countDown();
+      release.await();
+      return null;
+    }, null);
+  }
+
+  private static OperatorJob createJob(String name, int priority) {
+    OperatorJob job = new OperatorJob(name, pm -> null, null);
+    job.setPriority(priority);
+    return job;
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time");
+      Thread.sleep(10);
+    }
+  }
+}
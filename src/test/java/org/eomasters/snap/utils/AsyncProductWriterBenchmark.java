@@ -0,0 +1,159 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.esa.snap.core.dataio.AbstractProductWriter;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link AsyncProductWriter} with writing the tile rows in the computing thread, as the WriteOp does. The
+ * writer simulates the latency of a network file system by sleeping for each written row.
+ *
+ * <p>Run it with {@code mvn test-compile} followed by executing the main method of this class on the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncProductWriterBenchmark {
+
+  private static final int IMAGE_SIZE = 2048;
+  private static final int TILE_SIZE = 512;
+  private static final int NUM_BANDS = 4;
+
+  @Param({"0", "20"})
+  public int writeLatencyMillis;
+
+  private Product product;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(AsyncProductWriterBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup
+  public void setup() {
+    product = new Product("benchmark", "test", IMAGE_SIZE, IMAGE_SIZE);
+    for (int b = 0; b < NUM_BANDS; b++) {
+      TiledImage source = new TiledImage(0, 0, IMAGE_SIZE, IMAGE_SIZE, 0, 0,
+          RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, TILE_SIZE, TILE_SIZE, 1), null);
+      for (int y = 0; y < IMAGE_SIZE; y++) {
+        for (int x = 0; x < IMAGE_SIZE; x++) {
+          source.setSample(x, y, 0, (float) Math.sin(x * y + b));
+        }
+      }
+      // a pipeline which is not cached, so every write computes the tiles again
+      RenderedImage computed = new PixelPipeline(source).scale(2.5, 1.0).clamp(0, 2).create();
+      Band band = new Band("band" + b, ProductData.TYPE_FLOAT32, IMAGE_SIZE, IMAGE_SIZE);
+      band.setSourceImage(computed);
+      product.addBand(band);
+    }
+  }
+
+  @Benchmark
+  public void synchronousWrite() throws IOException {
+    SlowWriter writer = new SlowWriter(writeLatencyMillis);
+    writer.writeProductNodes(product, new File("benchmark.out"));
+    for (int y = 0; y < IMAGE_SIZE; y += TILE_SIZE) {
+      for (Band band : product.getBands()) {
+        Rectangle row = new Rectangle(0, y, IMAGE_SIZE, Math.min(TILE_SIZE, IMAGE_SIZE - y));
+        Raster data = band.getSourceImage().getData(row);
+        float[] samples = data.getSamples(row.x, row.y, row.width, row.height, 0, (float[]) null);
+        writer.writeBandRasterData(band, row.x, row.y, row.width, row.height, ProductData.createInstance(samples),
+            ProgressMonitor.NULL);
+      }
+    }
+    writer.close();
+  }
+
+  @Benchmark
+  public void asynchronousWrite() throws IOException {
+    new AsyncProductWriter(new SlowWriter(writeLatencyMillis)).writeProduct(product, new File("benchmark.out"),
+        ProgressMonitor.NULL);
+  }
+
+  private static class SlowWriter extends AbstractProductWriter {
+
+    private final long latencyMillis;
+
+    SlowWriter(long latencyMillis) {
+      super(null);
+      this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    protected void writeProductNodesImpl() {
+    }
+
+    @Override
+    public void writeBandRasterData(Band band, int offsetX, int offsetY, int width, int height, ProductData data,
+        ProgressMonitor pm) throws IOException {
+      try {
+        Thread.sleep(latencyMillis);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void deleteOutput() {
+    }
+  }
+}
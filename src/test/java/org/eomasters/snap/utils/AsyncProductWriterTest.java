@@ -0,0 +1,240 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.bc.ceres.core.NullProgressMonitor;
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.esa.snap.core.dataio.AbstractProductWriter;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.gpf.OperatorCancelException;
+import org.junit.jupiter.api.Test;
+
+class AsyncProductWriterTest {
+
+  private static final int WIDTH = 100;
+  private static final int HEIGHT = 70;
+
+  @Test
+  void testAllRowsAreWritten() throws IOException {
+    Product product = createProduct();
+    RecordingWriter writer = new RecordingWriter(-1);
+    // the budget is smaller than a row, the writer must not block nevertheless
+    new AsyncProductWriter(writer).withMemoryBudget(1024).writeProduct(product, new File("test.out"),
+        ProgressMonitor.NULL);
+
+    assertTrue(writer.closed);
+    assertEquals(0, writer.deleted);
+    for (int b = 0; b < 2; b++) {
+      int[] expected = new int[WIDTH * HEIGHT];
+      for (int i = 0; i < expected.length; i++) {
+        expected[i] = i + b * 1000;
+      }
+      assertArrayEquals(expected, writer.bands.get(b), "band " + b);
+    }
+    // 3 tile rows per band
+    assertEquals(6, writer.writeCount);
+  }
+
+  @Test
+  void testTileOrderKeepsRowsIntact() throws IOException {
+    Product product = createProduct();
+    RecordingWriter writer = new RecordingWriter(-1);
+    new AsyncProductWriter(writer).withTileOrder(TileOrder.HILBERT, 2).writeProduct(product, new File("test.out"),
+        ProgressMonitor.NULL);
+
+    int[] expected = new int[WIDTH * HEIGHT];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = i;
+    }
+    assertArrayEquals(expected, writer.bands.get(0));
+    assertEquals(6, writer.writeCount);
+  }
+
+  @Test
+  void testWriterFailureDeletesOutput() {
+    Product product = createProduct();
+    RecordingWriter writer = new RecordingWriter(2);
+    assertThrows(IOException.class,
+        () -> new AsyncProductWriter(writer).writeProduct(product, new File("test.out"), ProgressMonitor.NULL));
+    assertEquals(1, writer.deleted);
+  }
+
+  @Test
+  void testCancelWaitsForWriterBeforeDeleting() {
+    Product product = createProduct();
+    SlowWriter writer = new SlowWriter();
+    ProgressMonitor pm = new NullProgressMonitor() {
+      @Override
+      public boolean isCanceled() {
+        return writer.started;
+      }
+    };
+    // a budget of one row makes the computation wait for the writer and notice the cancellation
+    assertThrows(OperatorCancelException.class,
+        () -> new AsyncProductWriter(writer).withMemoryBudget(1024).writeProduct(product, new File("test.out"), pm));
+    assertFalse(writer.closedWhileWriting);
+    RecordingWriter recorded = writer;
+    assertTrue(recorded.closed);
+    assertEquals(1, recorded.deleted);
+    assertEquals(1, recorded.writeCount);
+  }
+
+  private static Product createProduct() {
+    Product product = new Product("test", "test", WIDTH, HEIGHT);
+    for (int b = 0; b < 2; b++) {
+      SampleModel sampleModel = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_INT, 32, 32, 1);
+      TiledImage image = new TiledImage(0, 0, WIDTH, HEIGHT, 0, 0, sampleModel, null);
+      for (int y = 0; y < HEIGHT; y++) {
+        for (int x = 0; x < WIDTH; x++) {
+          image.setSample(x, y, 0, y * WIDTH + x + b * 1000);
+        }
+      }
+      Band band = new Band("band" + b, ProductData.TYPE_INT32, WIDTH, HEIGHT);
+      band.setSourceImage(image);
+      product.addBand(band);
+    }
+    return product;
+  }
+
+  @Test
+  void testFanOutContinuesAfterWriterFailure() throws IOException {
+    Product product = createProduct();
+    RecordingWriter failing = new RecordingWriter(2);
+    RecordingWriter writer = new RecordingWriter(-1);
+    AsyncProductWriter.Target failingTarget = new AsyncProductWriter.Target(failing, new File("failing.out"));
+    Map<AsyncProductWriter.Target, IOException> failures = new AsyncProductWriter().writeProduct(product,
+        List.of(failingTarget, new AsyncProductWriter.Target(writer, new File("test.out"))), ProgressMonitor.NULL);
+
+    assertEquals(Set.of(failingTarget), failures.keySet());
+    assertEquals(1, failing.deleted);
+    assertEquals(0, writer.deleted);
+    assertTrue(writer.closed);
+    int[] expected = new int[WIDTH * HEIGHT];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = i + 1000;
+    }
+    assertArrayEquals(expected, writer.bands.get(1));
+    assertEquals(6, writer.writeCount);
+  }
+
+  private static class RecordingWriter extends AbstractProductWriter {
+
+    private final int failAt;
+    private final List<int[]> bands = new ArrayList<>();
+    private int writeCount;
+    private boolean closed;
+    private int deleted;
+
+    RecordingWriter(int failAt) {
+      super(null);
+      this.failAt = failAt;
+    }
+
+    @Override
+    protected void writeProductNodesImpl() {
+      for (int b = 0; b < getSourceProduct().getNumBands(); b++) {
+        bands.add(new int[WIDTH * HEIGHT]);
+      }
+    }
+
+    @Override
+    public void writeBandRasterData(Band band, int offsetX, int offsetY, int width, int height, ProductData data,
+        ProgressMonitor pm) throws IOException {
+      if (writeCount++ == failAt) {
+        throw new IOException("Disk full");
+      }
+      int[] target = bands.get(getSourceProduct().getBandIndex(band.getName()));
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          target[(offsetY + y) * WIDTH + offsetX + x] = data.getElemIntAt(y * width + x);
+        }
+      }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public void deleteOutput() {
+      deleted++;
+    }
+  }
+
+  private static class SlowWriter extends RecordingWriter {
+
+    private volatile boolean started;
+    private volatile boolean writing;
+    private volatile boolean closedWhileWriting;
+
+    SlowWriter() {
+      super(-1);
+    }
+
+    @Override
+    public void writeBandRasterData(Band band, int offsetX, int offsetY, int width, int height, ProductData data,
+        ProgressMonitor pm) throws IOException {
+      writing = true;
+      started = true;
+      try {
+        Thread.sleep(300);
+        super.writeBandRasterData(band, offsetX, offsetY, width, height, data, pm);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } finally {
+        writing = false;
+      }
+    }
+
+    @Override
+    public void close() {
+      closedWhileWriting |= writing;
+      super.close();
+    }
+  }
+}
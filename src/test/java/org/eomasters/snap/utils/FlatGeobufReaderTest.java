@@ -0,0 +1,94 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+class FlatGeobufReaderTest {
+
+  @Test
+  void testReadHeader() throws Exception {
+    try (FlatGeobufReader reader = new FlatGeobufReader(getParcelsFile(), new GeometryFactory())) {
+      assertEquals(3, reader.getFeaturesCount());
+      assertEquals("EPSG", reader.getCrsOrganization());
+      assertEquals(4326, reader.getCrsCode());
+      assertNull(reader.getCrsWkt());
+    }
+  }
+
+  @Test
+  void testReadAll() throws Exception {
+    List<Geometry> geometries = new ArrayList<>();
+    try (FlatGeobufReader reader = new FlatGeobufReader(getParcelsFile(), new GeometryFactory())) {
+      reader.read(null, geometries::add);
+    }
+    assertEquals(3, geometries.size());
+    Polygon maize = (Polygon) geometries.get(1);
+    assertEquals(1, maize.getNumInteriorRing());
+    assertEquals(2.25 - 0.04, maize.getArea(), 1.0e-10);
+  }
+
+  @Test
+  void testReadWithSpatialIndex() throws Exception {
+    try (FlatGeobufReader reader = new FlatGeobufReader(getParcelsFile(), new GeometryFactory())) {
+      List<Geometry> geometries = new ArrayList<>();
+      reader.read(new Envelope(0, 10, -10, 0), geometries::add);
+      assertEquals(2, geometries.size());
+
+      geometries.clear();
+      reader.read(new Envelope(99, 102, 9, 12), geometries::add);
+      assertEquals(1, geometries.size());
+      assertEquals(new Envelope(100, 101, 10, 11), geometries.get(0).getEnvelopeInternal());
+
+      geometries.clear();
+      reader.read(new Envelope(50, 60, 0, 1), geometries::add);
+      assertEquals(0, geometries.size());
+    }
+  }
+
+  @Test
+  void testLevelBounds() {
+    long[][] levelBounds = FlatGeobufReader.levelBounds(1000, 16);
+    assertEquals(4, levelBounds.length);
+    assertArrayEquals(new long[]{68, 1068}, levelBounds[0]);
+    assertArrayEquals(new long[]{5, 68}, levelBounds[1]);
+    assertArrayEquals(new long[]{1, 5}, levelBounds[2]);
+    assertArrayEquals(new long[]{0, 1}, levelBounds[3]);
+  }
+
+  private Path getParcelsFile() throws Exception {
+    return Path.of(getClass().getResource("parcels.fgb").toURI());
+  }
+}
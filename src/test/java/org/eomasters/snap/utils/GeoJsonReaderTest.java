@@ -0,0 +1,133 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+class GeoJsonReaderTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testReadFeatureCollection() throws IOException {
+    Path file = write("{\"features\": [\n"
+        + "  {\"geometry\": {\"coordinates\": [1.0, 2.0], \"type\": \"Point\"}, \"type\": \"Feature\"},\n"
+        + "  {\"type\": \"Feature\", \"properties\": {\"type\": \"ignored\"}, \"geometry\": {\"type\": \"Polygon\",\n"
+        + "    \"coordinates\": [[[0, 0], [4, 0], [4, 4], [0, 4], [0, 0]], [[1, 1], [2, 1], [2, 2], [1, 2], [1, 1]]]}},\n"
+        + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"MultiPolygon\",\n"
+        + "    \"coordinates\": [[[[10, 10], [11, 10], [11, 11], [10, 10]]], [[[20, 20], [21, 20], [21, 21], [20, 20]]]]}},\n"
+        + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"GeometryCollection\", \"geometries\": [\n"
+        + "    {\"type\": \"LineString\", \"coordinates\": [[0, 0], [1, 1, 5]]},\n"
+        + "    {\"type\": \"MultiPoint\", \"coordinates\": [[0, 0], [1, 1]]}]}},\n"
+        + "  {\"type\": \"Feature\", \"geometry\": null}\n"
+        + "], \"type\": \"FeatureCollection\"}");
+    List<Geometry> geometries = read(file, null);
+
+    assertEquals(4, geometries.size());
+    assertTrue(geometries.get(0) instanceof Point);
+    assertEquals(16 - 1, geometries.get(1).getArea(), 1.0e-10);
+    assertEquals(1, ((Polygon) geometries.get(1)).getNumInteriorRing());
+    assertEquals(2, ((MultiPolygon) geometries.get(2)).getNumGeometries());
+    assertEquals(2, ((GeometryCollection) geometries.get(3)).getNumGeometries());
+  }
+
+  @Test
+  void testReadWithEnvelope() throws IOException {
+    Path file = write("{\"type\": \"FeatureCollection\", \"features\": [\n"
+        + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1.0, 2.0]}},\n"
+        + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [100.0, 2.0]}}\n"
+        + "]}");
+    List<Geometry> geometries = read(file, new Envelope(0, 10, 0, 10));
+
+    assertEquals(1, geometries.size());
+    assertEquals(1.0, geometries.get(0).getCoordinate().x);
+  }
+
+  @Test
+  void testReadSingleGeometry() throws IOException {
+    Path file = write("{\"type\": \"Polygon\", \"coordinates\": [[[0, 0], [4, 0], [4, 4], [0, 4], [0, 0]]]}");
+    List<Geometry> geometries = read(file, null);
+
+    assertEquals(1, geometries.size());
+    assertEquals(16, geometries.get(0).getArea(), 1.0e-10);
+  }
+
+  @Test
+  void testReadInvalid() throws IOException {
+    Path file = write("{\"features\": [{\"geometry\": {\"coordinates\": [1.0, 2.0]}}]}");
+    assertThrows(IOException.class, () -> read(file, null));
+  }
+
+  @Test
+  void testEmptyGeometriesAreSkipped() throws IOException {
+    Path file = write("{\"type\": \"FeatureCollection\", \"features\": [\n"
+        + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": []}},\n"
+        + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"Polygon\", \"coordinates\": []}},\n"
+        + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"Polygon\", \"coordinates\": [[]]}},\n"
+        + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1.0, 2.0]}}\n"
+        + "]}");
+    List<Geometry> geometries = read(file, null);
+
+    assertEquals(1, geometries.size());
+    assertEquals(1.0, geometries.get(0).getCoordinate().x);
+  }
+
+  @Test
+  void testReadWrongNesting() throws IOException {
+    Path point = write("{\"type\": \"Point\", \"coordinates\": [[1.0, 2.0]]}");
+    assertThrows(IOException.class, () -> read(point, null));
+    Path polygon = write("{\"type\": \"Polygon\", \"coordinates\": [[0, 0], [4, 0], [4, 4], [0, 0]]}");
+    assertThrows(IOException.class, () -> read(polygon, null));
+  }
+
+  private Path write(String content) throws IOException {
+    Path file = tempDir.resolve("test.geojson");
+    Files.writeString(file, content);
+    return file;
+  }
+
+  private static List<Geometry> read(Path file, Envelope envelope) throws IOException {
+    List<Geometry> geometries = new ArrayList<>();
+    new GeoJsonReader(new GeometryFactory()).read(file, envelope, geometries::add);
+    return geometries;
+  }
+}
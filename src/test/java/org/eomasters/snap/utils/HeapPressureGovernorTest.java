@@ -0,0 +1,178 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.media.jai.JAI;
+import javax.media.jai.TileScheduler;
+import org.junit.jupiter.api.Test;
+
+class HeapPressureGovernorTest {
+
+  @Test
+  void testEscalatesAndRecovers() {
+    TileScheduler scheduler = JAI.createTileScheduler();
+    scheduler.setParallelism(8);
+    double[] usage = {0.9};
+    HeapPressureGovernor governor = new HeapPressureGovernor(0.85, 0.6, () -> usage[0], () -> 0L, scheduler,
+        JAI.createTileCache(1024 * 1024));
+    TestPausable pausable = new TestPausable();
+    try (HeapPressureGovernor.Session session = governor.engage()) {
+      session.addPausable(pausable);
+      governor.escalate();
+      assertEquals(1, governor.getLevel());
+      assertEquals(4, scheduler.getParallelism());
+      assertFalse(pausable.paused);
+
+      governor.check();
+      assertEquals(2, governor.getLevel());
+      assertEquals(2, scheduler.getParallelism());
+      assertTrue(pausable.paused);
+
+      usage[0] = 0.7;
+      governor.check();
+      assertEquals(2, governor.getLevel());
+
+      usage[0] = 0.5;
+      governor.check();
+      assertEquals(1, governor.getLevel());
+      assertFalse(pausable.paused);
+      governor.check();
+      assertEquals(0, governor.getLevel());
+      assertEquals(8, scheduler.getParallelism());
+    }
+  }
+
+  @Test
+  void testClosingRestoresParallelism() {
+    TileScheduler scheduler = JAI.createTileScheduler();
+    scheduler.setParallelism(4);
+    HeapPressureGovernor governor = new HeapPressureGovernor(0.85, 0.6, () -> 0.95, () -> 0L, scheduler,
+        JAI.createTileCache(1024 * 1024));
+    TestPausable pausable = new TestPausable();
+    HeapPressureGovernor.Session first = governor.engage();
+    HeapPressureGovernor.Session second = governor.engage();
+    second.addPausable(pausable);
+    governor.escalate();
+    governor.escalate();
+    governor.escalate();
+    governor.escalate();
+    assertEquals(3, governor.getLevel());
+    assertEquals(1, scheduler.getParallelism());
+    assertTrue(pausable.paused);
+
+    second.close();
+    assertFalse(pausable.paused);
+    assertEquals(1, scheduler.getParallelism());
+    first.close();
+    assertEquals(0, governor.getLevel());
+    assertEquals(4, scheduler.getParallelism());
+  }
+
+  @Test
+  void testStepsDownBetweenThresholds() {
+    TileScheduler scheduler = JAI.createTileScheduler();
+    scheduler.setParallelism(8);
+    double[] usage = {0.9};
+    HeapPressureGovernor governor = new HeapPressureGovernor(0.85, 0.6, () -> usage[0], () -> 0L, scheduler,
+        JAI.createTileCache(1024 * 1024));
+    TestPausable pausable = new TestPausable();
+    try (HeapPressureGovernor.Session session = governor.engage()) {
+      session.addPausable(pausable);
+      governor.escalate();
+      governor.escalate();
+      assertTrue(pausable.paused);
+
+      // the usage stays between the thresholds, the governor steps down after some checks nevertheless
+      usage[0] = 0.7;
+      governor.check();
+      governor.check();
+      assertEquals(2, governor.getLevel());
+      governor.check();
+      assertEquals(1, governor.getLevel());
+      assertFalse(pausable.paused);
+      governor.check();
+      governor.check();
+      governor.check();
+      assertEquals(0, governor.getLevel());
+      assertEquals(8, scheduler.getParallelism());
+    }
+  }
+
+  @Test
+  void testPauseIsLimited() {
+    TileScheduler scheduler = JAI.createTileScheduler();
+    scheduler.setParallelism(8);
+    long[] time = {0};
+    HeapPressureGovernor governor = new HeapPressureGovernor(0.85, 0.6, () -> 0.95, () -> time[0], scheduler,
+        JAI.createTileCache(1024 * 1024));
+    TestPausable pausable = new TestPausable();
+    try (HeapPressureGovernor.Session session = governor.engage()) {
+      session.addPausable(pausable);
+      governor.escalate();
+      governor.escalate();
+      assertTrue(pausable.paused);
+
+      time[0] = 10_000;
+      governor.check();
+      assertEquals(3, governor.getLevel());
+      assertTrue(pausable.paused);
+
+      // the heap does not recover, writing continues after the pause limit
+      time[0] = 30_000;
+      governor.check();
+      assertEquals(1, governor.getLevel());
+      assertFalse(pausable.paused);
+
+      // and is paused again for another period
+      governor.check();
+      assertEquals(2, governor.getLevel());
+      assertTrue(pausable.paused);
+      time[0] = 59_000;
+      governor.check();
+      assertTrue(pausable.paused);
+      time[0] = 60_000;
+      governor.check();
+      assertFalse(pausable.paused);
+    }
+  }
+
+  private static class TestPausable implements HeapPressureGovernor.Pausable {
+
+    private boolean paused;
+
+    @Override
+    public void pause() {
+      paused = true;
+    }
+
+    @Override
+    public void resume() {
+      paused = false;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.esa.snap.core.dataio.ProductIO;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MaskAwareWriteOpTest {
+
+  private static final int W = 64;
+  private static final int H = 48;
+  private static final int TILE_SIZE = 16;
+  private static final int VALID_WIDTH = 24;
+  private static final float FILL_VALUE = -1f;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testWriteNetCdf4Cf() throws IOException {
+    assertMaskedProductWritten("NetCDF4-CF", "masked.nc");
+  }
+
+  @Test
+  void testWriteZnap() throws IOException {
+    assertMaskedProductWritten("ZNAP", "masked.znap");
+  }
+
+  private void assertMaskedProductWritten(String formatName, String fileName) throws IOException {
+    File file = tempDir.resolve(fileName).toFile();
+    new MaskAwareWriteOp(createMaskedProduct(), file, formatName).writeProduct(ProgressMonitor.NULL);
+
+    Product written = ProductIO.readProduct(file);
+    assertNotNull(written);
+    try {
+      assertEquals(W, written.getSceneRasterWidth());
+      assertEquals(H, written.getSceneRasterHeight());
+      Band band = written.getBand("data");
+      assertNotNull(band);
+      assertTrue(band.isNoDataValueUsed());
+      assertEquals(FILL_VALUE, band.getNoDataValue());
+
+      float[] samples = new float[W * H];
+      band.readPixels(0, 0, W, H, samples);
+      for (int y = 0; y < H; y++) {
+        for (int x = 0; x < W; x++) {
+          float expected = x < VALID_WIDTH ? y * W + x : FILL_VALUE;
+          assertEquals(expected, samples[y * W + x], "Incorrect value at (" + x + "," + y + ")");
+        }
+      }
+    } finally {
+      written.dispose();
+    }
+  }
+
+  private static Product createMaskedProduct() {
+    TiledImage source = new TiledImage(0, 0, W, H, 0, 0,
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, TILE_SIZE, TILE_SIZE, 1), null);
+    TiledImage mask = new TiledImage(0, 0, W, H, 0, 0,
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_BYTE, TILE_SIZE, TILE_SIZE, 1), null);
+    for (int y = 0; y < H; y++) {
+      for (int x = 0; x < W; x++) {
+        source.setSample(x, y, 0, (float) (y * W + x));
+        mask.setSample(x, y, 0, x < VALID_WIDTH ? 1 : 0);
+      }
+    }
+    Product product = new Product("masked", "test", W, H);
+    product.setPreferredTileSize(TILE_SIZE, TILE_SIZE);
+    Band band = product.addBand("data", ProductData.TYPE_FLOAT32);
+    band.setSourceImage(new MaskedOpImage(source, mask, FILL_VALUE));
+    return product;
+  }
+}
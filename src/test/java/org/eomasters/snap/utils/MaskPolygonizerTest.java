@@ -0,0 +1,160 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.bc.ceres.core.NullProgressMonitor;
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+
+class MaskPolygonizerTest {
+
+  @Test
+  void testClassify() {
+    TiledImage mask = createMask(8, 8, 8);
+    fill(mask, new Rectangle(0, 0, 4, 8));
+    Raster tile = mask.getTile(0, 0);
+    assertEquals(MaskRuns.Coverage.VALID, MaskRuns.classify(tile, new Rectangle(0, 0, 4, 8)));
+    assertEquals(MaskRuns.Coverage.INVALID, MaskRuns.classify(tile, new Rectangle(4, 0, 4, 8)));
+    assertEquals(MaskRuns.Coverage.MIXED, MaskRuns.classify(tile, new Rectangle(0, 0, 8, 8)));
+  }
+
+  @Test
+  void testCollectRectanglesMergesRows() {
+    TiledImage mask = createMask(8, 8, 8);
+    fill(mask, new Rectangle(1, 1, 3, 4));
+    fill(mask, new Rectangle(5, 2, 2, 1));
+    fill(mask, new Rectangle(1, 5, 2, 1));
+    List<Rectangle> rectangles = new ArrayList<>();
+    MaskRuns.collectRectangles(mask.getTile(0, 0), new Rectangle(0, 0, 8, 8), rectangles::add);
+    assertEquals(3, rectangles.size());
+    assertTrue(rectangles.contains(new Rectangle(1, 1, 3, 4)));
+    assertTrue(rectangles.contains(new Rectangle(5, 2, 2, 1)));
+    assertTrue(rectangles.contains(new Rectangle(1, 5, 2, 1)));
+  }
+
+  @Test
+  void testPolygonizeAcrossTiles() {
+    TiledImage mask = createMask(100, 80, 16);
+    fill(mask, new Rectangle(10, 5, 60, 50));
+    clear(mask, new Rectangle(30, 20, 10, 10));
+    Geometry footprint = new MaskPolygonizer().polygonize(mask);
+    assertTrue(footprint instanceof Polygon);
+    assertEquals(1, ((Polygon) footprint).getNumInteriorRing());
+    assertEquals(60 * 50 - 10 * 10, footprint.getArea(), 1.0e-9);
+    assertEquals(new Envelope(10, 70, 5, 55), footprint.getEnvelopeInternal());
+  }
+
+  @Test
+  void testPolygonizeDisjointAreas() {
+    TiledImage mask = createMask(64, 64, 16);
+    fill(mask, new Rectangle(0, 0, 32, 32));
+    fill(mask, new Rectangle(40, 40, 5, 7));
+    Geometry footprint = new MaskPolygonizer().polygonize(mask);
+    assertEquals(2, footprint.getNumGeometries());
+    assertEquals(32 * 32 + 5 * 7, footprint.getArea(), 1.0e-9);
+  }
+
+  @Test
+  void testPolygonizeLargeMask() {
+    // vertical stripes of one pixel width, so the area of every row of tiles touches all stripes
+    int width = 2048;
+    int height = 2048;
+    TiledImage mask = createMask(width, height, 32);
+    for (int x = 0; x < width; x += 2) {
+      fill(mask, new Rectangle(x, 0, 1, height));
+    }
+    Geometry footprint = assertTimeoutPreemptively(Duration.ofSeconds(60),
+        () -> new MaskPolygonizer().polygonize(mask));
+    assertEquals(width / 2, footprint.getNumGeometries());
+    assertEquals((double) width / 2 * height, footprint.getArea(), 1.0e-6);
+    assertEquals(new Envelope(0, width - 1, 0, height), footprint.getEnvelopeInternal());
+  }
+
+  @Test
+  void testPolygonizeEmptyMask() {
+    Geometry footprint = new MaskPolygonizer().polygonize(createMask(20, 20, 8));
+    assertTrue(footprint.isEmpty());
+  }
+
+  @Test
+  void testPolygonizeCancelled() {
+    ProgressMonitor pm = new NullProgressMonitor();
+    pm.setCanceled(true);
+    assertThrows(CancellationException.class, () -> new MaskPolygonizer().polygonize(createMask(20, 20, 8), pm));
+  }
+
+  @Test
+  void testPolygonizeWithTransformAndSimplification() {
+    TiledImage mask = createMask(64, 64, 16);
+    // a staircase, which is straightened by the simplification
+    for (int y = 0; y < 40; y++) {
+      fill(mask, new Rectangle(0, y, 40 - y, 1));
+    }
+    AffineTransform imageToModel = new AffineTransform(0.5, 0, 0, -0.5, 10, 50);
+    Geometry footprint = new MaskPolygonizer().withSimplifyTolerance(1.0).withImageToModelTransform(imageToModel)
+        .polygonize(mask);
+    assertTrue(footprint.getNumPoints() < 10);
+    assertEquals(new Envelope(10, 30, 30, 50), footprint.getEnvelopeInternal());
+  }
+
+  private static TiledImage createMask(int width, int height, int tileSize) {
+    WritableRaster raster = RasterFactory.createBandedRaster(DataBuffer.TYPE_BYTE, tileSize, tileSize, 1, null);
+    return new TiledImage(0, 0, width, height, 0, 0, raster.getSampleModel(), null);
+  }
+
+  private static void fill(TiledImage mask, Rectangle area) {
+    setSamples(mask, area, 255);
+  }
+
+  private static void clear(TiledImage mask, Rectangle area) {
+    setSamples(mask, area, 0);
+  }
+
+  private static void setSamples(TiledImage mask, Rectangle area, int value) {
+    for (int y = area.y; y < area.y + area.height; y++) {
+      for (int x = area.x; x < area.x + area.width; x++) {
+        mask.setSample(x, y, 0, value);
+      }
+    }
+  }
+}
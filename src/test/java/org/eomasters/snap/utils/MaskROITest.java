@@ -0,0 +1,97 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.util.List;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MaskROITest {
+
+  private MaskROI roi;
+
+  @BeforeEach
+  void setUp() {
+    TiledImage mask = new TiledImage(0, 0, 30, 20, 0, 0,
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_BYTE, 10, 10, 1), null);
+    // the first tile is entirely valid, the tile right of it partially
+    for (int y = 0; y < 10; y++) {
+      for (int x = 0; x < 15; x++) {
+        mask.setSample(x, y, 0, 255);
+      }
+    }
+    // a single pixel in the lower right tile
+    mask.setSample(25, 15, 0, 1);
+    roi = new MaskROI(mask);
+  }
+
+  @Test
+  void testContainsPoint() {
+    assertTrue(roi.contains(0, 0));
+    assertTrue(roi.contains(14, 9));
+    assertFalse(roi.contains(15, 9));
+    assertTrue(roi.contains(25, 15));
+    assertFalse(roi.contains(24, 15));
+    assertFalse(roi.contains(-1, 0));
+    assertTrue(roi.contains(25.5, 15.9));
+  }
+
+  @Test
+  void testContainsRectangle() {
+    assertTrue(roi.contains(new Rectangle(0, 0, 15, 10)));
+    assertFalse(roi.contains(new Rectangle(0, 0, 16, 10)));
+    assertFalse(roi.contains(new Rectangle(0, 0, 15, 11)));
+    assertFalse(roi.contains(new Rectangle(20, 0, 50, 5)));
+  }
+
+  @Test
+  void testIntersects() {
+    assertTrue(roi.intersects(new Rectangle(14, 9, 5, 5)));
+    assertFalse(roi.intersects(new Rectangle(15, 10, 10, 5)));
+    assertTrue(roi.intersects(new Rectangle(20, 10, 10, 10)));
+    assertFalse(roi.intersects(new Rectangle(100, 100, 10, 10)));
+  }
+
+  @Test
+  void testGetAsRectangleList() {
+    List<Rectangle> rectangles = roi.getAsRectangleList(0, 0, 30, 20);
+    assertEquals(3, rectangles.size());
+    assertTrue(rectangles.contains(new Rectangle(0, 0, 10, 10)));
+    assertTrue(rectangles.contains(new Rectangle(10, 0, 5, 10)));
+    assertTrue(rectangles.contains(new Rectangle(25, 15, 1, 1)));
+
+    List<Rectangle> clipped = roi.getAsRectangleList(5, 5, 10, 10);
+    assertEquals(2, clipped.size());
+    assertTrue(clipped.contains(new Rectangle(5, 5, 5, 5)));
+    assertTrue(clipped.contains(new Rectangle(10, 5, 5, 5)));
+  }
+}
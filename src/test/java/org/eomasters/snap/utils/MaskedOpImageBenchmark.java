@@ -0,0 +1,183 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import javax.media.jai.ImageLayout;
+import javax.media.jai.OpImage;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.PointOpImage;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link MaskedOpImage} with the implementation it replaced. The tiles are computed directly, bypassing
+ * the tile cache.
+ *
+ * <p>Run it with {@code mvn test-compile} followed by executing the main method of this class on the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MaskedOpImageBenchmark {
+
+  private static final int IMAGE_SIZE = 2048;
+  private static final int TILE_SIZE = 512;
+
+  @Param({"byte", "short", "float", "double"})
+  public String dataType;
+
+  private OpImage legacyImage;
+  private OpImage currentImage;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(MaskedOpImageBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup
+  public void setup() {
+    TiledImage source = createImage(toDataBufferType(dataType));
+    TiledImage mask = createImage(DataBuffer.TYPE_BYTE);
+    Random random = new Random(42);
+    for (int y = 0; y < IMAGE_SIZE; y++) {
+      for (int x = 0; x < IMAGE_SIZE; x++) {
+        source.setSample(x, y, 0, random.nextInt(100));
+        mask.setSample(x, y, 0, random.nextInt(4) == 0 ? 0 : 255);
+      }
+    }
+    legacyImage = new LegacyMaskedOpImage(source, mask, -1);
+    currentImage = new MaskedOpImage(source, mask, -1);
+  }
+
+  @Benchmark
+  public void legacy(Blackhole blackhole) {
+    computeTiles(legacyImage, blackhole);
+  }
+
+  @Benchmark
+  public void current(Blackhole blackhole) {
+    computeTiles(currentImage, blackhole);
+  }
+
+  private static void computeTiles(OpImage image, Blackhole blackhole) {
+    for (int tileY = 0; tileY < image.getNumYTiles(); tileY++) {
+      for (int tileX = 0; tileX < image.getNumXTiles(); tileX++) {
+        blackhole.consume(image.computeTile(tileX, tileY));
+      }
+    }
+  }
+
+  private static TiledImage createImage(int dataBufferType) {
+    SampleModel sampleModel = RasterFactory.createBandedSampleModel(dataBufferType, TILE_SIZE, TILE_SIZE, 1);
+    return new TiledImage(0, 0, IMAGE_SIZE, IMAGE_SIZE, 0, 0, sampleModel, null);
+  }
+
+  private static int toDataBufferType(String dataType) {
+    return switch (dataType) {
+      case "byte" -> DataBuffer.TYPE_BYTE;
+      case "short" -> DataBuffer.TYPE_SHORT;
+      case "float" -> DataBuffer.TYPE_FLOAT;
+      case "double" -> DataBuffer.TYPE_DOUBLE;
+      default -> throw new IllegalArgumentException("Unknown data type: " + dataType);
+    };
+  }
+
+  /**
+   * The implementation of the MaskedOpImage before it was changed to work on the backing arrays.
+   */
+  private static class LegacyMaskedOpImage extends PointOpImage {
+
+    private final Number fillValue;
+
+    LegacyMaskedOpImage(RenderedImage source, RenderedImage maskImage, Number fillValue) {
+      super(source, maskImage, new ImageLayout(source), null, false);
+      this.fillValue = fillValue;
+    }
+
+    @Override
+    protected void computeRect(PlanarImage[] sources, WritableRaster dest, Rectangle destRect) {
+      Raster maskRaster = sources[1].getData(destRect);
+      int[] maskData = new int[destRect.width * destRect.height];
+      maskRaster.getSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, maskData);
+
+      Raster sourceRaster = sources[0].getData(destRect);
+      int sourceDataType = sourceRaster.getSampleModel().getDataType();
+      if (sourceDataType == DataBuffer.TYPE_DOUBLE) {
+        double[] destData = new double[destRect.width * destRect.height];
+        sourceRaster.getSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
+        IntStream.range(0, destData.length).forEach(i -> {
+          if (maskData[i] == 0) {
+            destData[i] = fillValue.doubleValue();
+          }
+        });
+        dest.setSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
+      } else if (sourceDataType == DataBuffer.TYPE_FLOAT) {
+        float[] destData = new float[destRect.width * destRect.height];
+        sourceRaster.getSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
+        IntStream.range(0, destData.length).forEach(i -> {
+          if (maskData[i] == 0) {
+            destData[i] = fillValue.floatValue();
+          }
+        });
+        dest.setSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
+      } else {
+        int[] destData = new int[destRect.width * destRect.height];
+        sourceRaster.getSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
+        IntStream.range(0, destData.length).forEach(i -> {
+          if (maskData[i] == 0) {
+            destData[i] = fillValue.intValue();
+          }
+        });
+        dest.setSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, destData);
+      }
+    }
+  }
+}
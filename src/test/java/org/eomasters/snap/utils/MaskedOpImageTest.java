@@ -24,11 +24,17 @@
 package org.eomasters.snap.utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
 import org.junit.jupiter.api.Test;
 
 public class MaskedOpImageTest {
@@ -86,4 +92,99 @@ public class MaskedOpImageTest {
 
   }
 
+  @Test
+  public void testComputeRectTiledDataTypes() {
+    for (int dataType : new int[]{DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE, DataBuffer.TYPE_SHORT}) {
+      TiledImage sourceImage = createTiledImage(dataType, 20, 12, 8);
+      TiledImage maskImage = createTiledImage(DataBuffer.TYPE_BYTE, 20, 12, 8);
+      for (int y = 0; y < 12; y++) {
+        for (int x = 0; x < 20; x++) {
+          sourceImage.setSample(x, y, 0, x + y * 20);
+          maskImage.setSample(x, y, 0, (x + y) % 3 == 0 ? 0 : 255);
+        }
+      }
+
+      RenderedImage maskedOpImage = new MaskedOpImage(sourceImage, maskImage, -5);
+      Raster data = maskedOpImage.getData();
+      for (int y = 0; y < 12; y++) {
+        for (int x = 0; x < 20; x++) {
+          double expected = (x + y) % 3 == 0 ? -5 : x + y * 20;
+          assertEquals(expected, data.getSampleDouble(x, y, 0), "Incorrect value at (" + x + "," + y + ")");
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testComputeRectMultiBand() {
+    SampleModel[] sampleModels = {
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, 8, 8, 3),
+        RasterFactory.createPixelInterleavedSampleModel(DataBuffer.TYPE_FLOAT, 8, 8, 3)
+    };
+    for (SampleModel sampleModel : sampleModels) {
+      TiledImage sourceImage = new TiledImage(0, 0, 10, 10, 0, 0, sampleModel, null);
+      TiledImage maskImage = createTiledImage(DataBuffer.TYPE_BYTE, 10, 10, 8);
+      for (int y = 0; y < 10; y++) {
+        for (int x = 0; x < 10; x++) {
+          for (int b = 0; b < 3; b++) {
+            sourceImage.setSample(x, y, b, (b + 1) * 100 + x + y);
+          }
+          maskImage.setSample(x, y, 0, x < y ? 0 : 1);
+        }
+      }
+
+      Number[] fillValues = {-1, Float.NaN, 7.5};
+      RenderedImage maskedOpImage = new MaskedOpImage(sourceImage, maskImage, fillValues);
+      Raster data = maskedOpImage.getData();
+      for (int y = 0; y < 10; y++) {
+        for (int x = 0; x < 10; x++) {
+          for (int b = 0; b < 3; b++) {
+            double expected = x < y ? fillValues[b].doubleValue() : (b + 1) * 100 + x + y;
+            assertEquals(expected, data.getSampleDouble(x, y, b), "Incorrect value at (" + x + "," + y + "," + b + ")");
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidNumberOfFillValues() {
+    SampleModel sampleModel = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, 8, 8, 3);
+    TiledImage sourceImage = new TiledImage(0, 0, 10, 10, 0, 0, sampleModel, null);
+    TiledImage maskImage = createTiledImage(DataBuffer.TYPE_BYTE, 10, 10, 8);
+    assertThrows(IllegalArgumentException.class,
+        () -> new MaskedOpImage(sourceImage, maskImage, new Number[]{1, 2}));
+  }
+
+  @Test
+  public void testUniformTilesAreShared() {
+    TiledImage sourceImage = createTiledImage(DataBuffer.TYPE_FLOAT, 24, 8, 8);
+    TiledImage maskImage = createTiledImage(DataBuffer.TYPE_BYTE, 24, 8, 8);
+    for (int y = 0; y < 8; y++) {
+      for (int x = 0; x < 24; x++) {
+        sourceImage.setSample(x, y, 0, x + y);
+        // first tile valid, second tile mixed, third tile masked
+        maskImage.setSample(x, y, 0, x < 8 || (x < 16 && y < 4) ? 1 : 0);
+      }
+    }
+
+    MaskedOpImage maskedOpImage = new MaskedOpImage(sourceImage, maskImage, -1);
+    assertSame(sourceImage.getTile(0, 0), maskedOpImage.computeTile(0, 0));
+    Raster mixedTile = maskedOpImage.computeTile(1, 0);
+    assertEquals(9, mixedTile.getSampleFloat(9, 0, 0));
+    assertEquals(-1, mixedTile.getSampleFloat(9, 4, 0));
+    Raster maskedTile = maskedOpImage.computeTile(2, 0);
+    assertEquals(new Rectangle(16, 0, 8, 8), maskedTile.getBounds());
+    assertEquals(-1, maskedTile.getSampleFloat(20, 5, 0));
+
+    // another image with the same layout and fill value shares the constant data
+    MaskedOpImage otherImage = new MaskedOpImage(sourceImage, maskImage, -1);
+    assertSame(maskedTile.getDataBuffer(), otherImage.computeTile(2, 0).getDataBuffer());
+  }
+
+  private static TiledImage createTiledImage(int dataType, int width, int height, int tileSize) {
+    SampleModel sampleModel = RasterFactory.createBandedSampleModel(dataType, tileSize, tileSize, 1);
+    return new TiledImage(0, 0, width, height, 0, 0, sampleModel, null);
+  }
+
 }
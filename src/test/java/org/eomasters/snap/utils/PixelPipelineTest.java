@@ -0,0 +1,112 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.junit.jupiter.api.Test;
+
+class PixelPipelineTest {
+
+  @Test
+  void testFusedStages() {
+    TiledImage source = createImage(DataBuffer.TYPE_USHORT, 0, 5000, 20000, 65535, 3000);
+    TiledImage mask = createImage(DataBuffer.TYPE_BYTE, 1, 1, 1, 1, 0);
+    RenderedImage image = new PixelPipeline(source)
+        .replaceNoData(NoDataValues.of(0, 65535), Double.NaN)
+        .mask(mask, -1)
+        .scale(0.0001, 0)
+        .clamp(0, 1)
+        .cast(DataBuffer.TYPE_FLOAT)
+        .create();
+
+    Raster data = image.getData();
+    assertEquals(DataBuffer.TYPE_FLOAT, data.getSampleModel().getDataType());
+    assertEquals(Float.NaN, data.getSampleFloat(0, 0, 0));
+    assertEquals(0.5f, data.getSampleFloat(1, 0, 0), 1.0e-6);
+    assertEquals(1.0f, data.getSampleFloat(2, 0, 0));
+    assertEquals(Float.NaN, data.getSampleFloat(3, 0, 0));
+    // the mask is applied before scaling and clamping
+    assertEquals(0.0f, data.getSampleFloat(4, 0, 0));
+  }
+
+  @Test
+  void testConversionToIntegerRoundsAndClamps() {
+    TiledImage source = createImage(DataBuffer.TYPE_FLOAT, -3.2f, 1.5f, 2.4f, 300.0f, Float.NaN);
+    Raster data = new PixelPipeline(source).cast(DataBuffer.TYPE_BYTE).create().getData();
+    assertEquals(DataBuffer.TYPE_BYTE, data.getSampleModel().getDataType());
+    int[] expected = {0, 2, 2, 255, 0};
+    for (int x = 0; x < expected.length; x++) {
+      assertEquals(expected[x], data.getSample(x, 0, 0), "Incorrect value at x=" + x);
+    }
+  }
+
+  @Test
+  void testSourceTypeIsKeptByDefault() {
+    TiledImage source = createImage(DataBuffer.TYPE_SHORT, -10, 10, 100, -100, 0);
+    Raster data = new PixelPipeline(source).scale(2, 1).create().getData();
+    assertEquals(DataBuffer.TYPE_SHORT, data.getSampleModel().getDataType());
+    int[] expected = {-19, 21, 201, -199, 1};
+    for (int x = 0; x < expected.length; x++) {
+      assertEquals(expected[x], data.getSample(x, 0, 0), "Incorrect value at x=" + x);
+    }
+  }
+
+  @Test
+  void testFloatSentinelNotRepresentableAsFloat() {
+    TiledImage source = createImage(DataBuffer.TYPE_FLOAT, -9999.9f, 0.15f, 0.5f, 3.0f);
+    Raster data = new PixelPipeline(source)
+        .replaceNoData(NoDataValues.of(-9999.9).withRange(0.1, 0.2), 42)
+        .create()
+        .getData();
+    assertEquals(42.0f, data.getSampleFloat(0, 0, 0));
+    assertEquals(42.0f, data.getSampleFloat(1, 0, 0));
+    assertEquals(0.5f, data.getSampleFloat(2, 0, 0));
+    assertEquals(3.0f, data.getSampleFloat(3, 0, 0));
+  }
+
+  @Test
+  void testInvalidConfiguration() {
+    TiledImage source = createImage(DataBuffer.TYPE_BYTE, 1);
+    PixelPipeline pipeline = new PixelPipeline(source).mask(source, 0);
+    assertThrows(IllegalStateException.class, () -> pipeline.mask(source, 0));
+    assertThrows(IllegalArgumentException.class, () -> pipeline.clamp(1, 0));
+    assertThrows(IllegalArgumentException.class, () -> pipeline.cast(42));
+  }
+
+  private static TiledImage createImage(int dataType, float... values) {
+    TiledImage image = new TiledImage(0, 0, values.length, 1, 0, 0,
+        RasterFactory.createBandedSampleModel(dataType, values.length, 1, 1), null);
+    for (int x = 0; x < values.length; x++) {
+      image.setSample(x, 0, 0, values[x]);
+    }
+    return image;
+  }
+}
@@ -25,9 +25,13 @@ package org.eomasters.snap.utils;
 
 import static java.lang.Float.NaN;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
 import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.util.ImageUtils;
 import org.junit.jupiter.api.Test;
@@ -72,4 +76,47 @@ class ReplaceNaNOpImageTest {
     assertEquals(5, replaceNaNOpImage.getData().getSampleDouble(0, 2, 0));
     assertEquals(42, replaceNaNOpImage.getData().getSampleDouble(1, 2, 0));
   }
+
+  @Test
+  void testUniformTilesAreShared() {
+    TiledImage image = new TiledImage(0, 0, 24, 4, 0, 0,
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, 8, 4, 1), null);
+    for (int y = 0; y < 4; y++) {
+      for (int x = 0; x < 24; x++) {
+        // first tile without NaN, second tile mixed, third tile only NaN
+        image.setSample(x, y, 0, x < 8 || (x < 16 && y < 2) ? x : NaN);
+      }
+    }
+    ReplaceNaNOpImage replaceNaNOpImage = new ReplaceNaNOpImage(image, 42);
+    assertSame(image.getTile(0, 0), replaceNaNOpImage.computeTile(0, 0));
+    Raster mixedTile = replaceNaNOpImage.computeTile(1, 0);
+    assertEquals(9, mixedTile.getSampleFloat(9, 1, 0));
+    assertEquals(42, mixedTile.getSampleFloat(9, 2, 0));
+    Raster nanTile = replaceNaNOpImage.computeTile(2, 0);
+    assertEquals(42, nanTile.getSampleFloat(17, 3, 0));
+  }
+
+  @Test
+  void testMixedTileFetchesSourceOnce() {
+    int[] requests = new int[1];
+    TiledImage image = new TiledImage(0, 0, 8, 4, 0, 0,
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, 8, 4, 1), null) {
+      @Override
+      public Raster getTile(int tileX, int tileY) {
+        requests[0]++;
+        return super.getTile(tileX, tileY);
+      }
+    };
+    for (int y = 0; y < 4; y++) {
+      for (int x = 0; x < 8; x++) {
+        image.setSample(x, y, 0, y < 2 ? x : NaN);
+      }
+    }
+    ReplaceNaNOpImage replaceNaNOpImage = new ReplaceNaNOpImage(image, 42);
+    requests[0] = 0;
+    Raster mixedTile = replaceNaNOpImage.computeTile(0, 0);
+    assertEquals(1, requests[0]);
+    assertEquals(3, mixedTile.getSampleFloat(3, 1, 0));
+    assertEquals(42, mixedTile.getSampleFloat(3, 2, 0));
+  }
 }
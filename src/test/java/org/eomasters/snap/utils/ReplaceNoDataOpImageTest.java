@@ -0,0 +1,131 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.junit.jupiter.api.Test;
+
+class ReplaceNoDataOpImageTest {
+
+  @Test
+  void testNoDataValues() {
+    NoDataValues noData = NoDataValues.of(0, -9999).withRange(100, 200).withInfinity();
+    assertTrue(noData.contains(0));
+    assertTrue(noData.contains(-9999));
+    assertTrue(noData.contains(100));
+    assertTrue(noData.contains(150.5));
+    assertTrue(noData.contains(200));
+    assertTrue(noData.contains(Double.NEGATIVE_INFINITY));
+    assertFalse(noData.contains(Double.NaN));
+    assertFalse(noData.contains(99.9));
+    assertTrue(noData.withNaN().contains(Double.NaN));
+    assertTrue(NoDataValues.NONE.isEmpty());
+    assertFalse(noData.isEmpty());
+    assertThrows(IllegalArgumentException.class, () -> NoDataValues.NONE.withRange(2, 1));
+  }
+
+  @Test
+  void testUnsignedShort() {
+    TiledImage image = createImage(DataBuffer.TYPE_USHORT, 1, 0, 1, 65535, 40000);
+    Raster data = new ReplaceNoDataOpImage(image, NoDataValues.of(0, 65535), 7).getData();
+    assertSamples(data, 0, 7, 1, 7, 40000);
+  }
+
+  @Test
+  void testShortAndByte() {
+    TiledImage shortImage = createImage(DataBuffer.TYPE_SHORT, 1, -9999, -1, 5, 32767);
+    Raster shortData = new ReplaceNoDataOpImage(shortImage, NoDataValues.of(-9999, 32767), 0).getData();
+    assertSamples(shortData, 0, 0, -1, 5, 0);
+
+    TiledImage byteImage = createImage(DataBuffer.TYPE_BYTE, 1, 0, 1, 255, 128);
+    Raster byteData = new ReplaceNoDataOpImage(byteImage, NoDataValues.of(255).withRange(0, 0), 9).getData();
+    assertSamples(byteData, 0, 9, 1, 9, 128);
+  }
+
+  @Test
+  void testIntRange() {
+    TiledImage image = createImage(DataBuffer.TYPE_INT, 1, -100, -50, 0, 50);
+    Raster data = new ReplaceNoDataOpImage(image, NoDataValues.NONE.withRange(-100, -1), -1).getData();
+    assertSamples(data, 0, -1, -1, 0, 50);
+  }
+
+  @Test
+  void testFloatAndDouble() {
+    NoDataValues noData = NoDataValues.of(-9999).withNaN().withInfinity();
+    for (int dataType : new int[]{DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE}) {
+      TiledImage image = createImage(dataType, 1, Double.NaN, Double.POSITIVE_INFINITY, -9999, 0.5);
+      Raster data = new ReplaceNoDataOpImage(image, noData, 42).getData();
+      assertSamples(data, 0, 42, 42, 42, 0.5);
+    }
+  }
+
+  @Test
+  void testFloatSentinelNotRepresentableAsFloat() {
+    NoDataValues noData = NoDataValues.of(-9999.9).withRange(0.1, 0.2);
+    assertFalse(noData.contains(-9999.9f));
+    assertTrue(noData.containsFloat(-9999.9f));
+    assertTrue(noData.containsFloat(0.1f));
+    assertTrue(noData.containsFloat(0.2f));
+    TiledImage image = createImage(DataBuffer.TYPE_FLOAT, 1, -9999.9, 0.1, 0.2, 0.5);
+    Raster data = new ReplaceNoDataOpImage(image, noData, 42).getData();
+    assertSamples(data, 0, 42, 42, 42, 0.5);
+  }
+
+  @Test
+  void testAllBandsWithReplacementPerBand() {
+    TiledImage image = createImage(DataBuffer.TYPE_SHORT, 3, 0, 1, 2, 0);
+    for (int x = 0; x < 4; x++) {
+      image.setSample(x, 0, 1, image.getSample(x, 0, 0));
+      image.setSample(x, 0, 2, image.getSample(x, 0, 0));
+    }
+    Raster data = new ReplaceNoDataOpImage(image, NoDataValues.of(0), new Number[]{-1, -2, -3}).getData();
+    assertSamples(data, 0, -1, 1, 2, -1);
+    assertSamples(data, 1, -2, 1, 2, -2);
+    assertSamples(data, 2, -3, 1, 2, -3);
+  }
+
+  private static TiledImage createImage(int dataType, int numBands, double... values) {
+    SampleModel sampleModel = RasterFactory.createPixelInterleavedSampleModel(dataType, 2, 1, numBands);
+    TiledImage image = new TiledImage(0, 0, values.length, 1, 0, 0, sampleModel, null);
+    for (int x = 0; x < values.length; x++) {
+      image.setSample(x, 0, 0, values[x]);
+    }
+    return image;
+  }
+
+  private static void assertSamples(Raster data, int band, double... expected) {
+    for (int x = 0; x < expected.length; x++) {
+      assertEquals(expected[x], data.getSampleDouble(x, 0, band), "Incorrect value at x=" + x + ", band=" + band);
+    }
+  }
+}
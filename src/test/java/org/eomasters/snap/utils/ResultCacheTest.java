@@ -0,0 +1,160 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.esa.snap.core.dataio.ProductIO;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultCacheTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testKeyIgnoresParameterOrder() {
+    Map<String, Object> first = new LinkedHashMap<>();
+    first.put("bandName", "B4");
+    first.put("factors", new double[]{1.0, 2.0});
+    Map<String, Object> second = new LinkedHashMap<>();
+    second.put("factors", new double[]{1.0, 2.0});
+    second.put("bandName", "B4");
+    String key = ResultCache.createKey("Scale", first, new HashMap<>(), "BEAM-DIMAP");
+    assertEquals(key, ResultCache.createKey("Scale", second, new HashMap<>(), "BEAM-DIMAP"));
+    assertNotEquals(key, ResultCache.createKey("Scale", second, new HashMap<>(), "GeoTIFF"));
+    second.put("factors", new double[]{1.0, 3.0});
+    assertNotEquals(key, ResultCache.createKey("Scale", second, new HashMap<>(), "BEAM-DIMAP"));
+  }
+
+  @Test
+  void testStoreAndCopyDimapOutput() throws IOException {
+    Path output = createOutput("result", 10);
+    ResultCache cache = new ResultCache(tempDir.resolve("cache"), 1024);
+    cache.store("a", output);
+
+    Path cachedFile = new ResultCache(tempDir.resolve("cache"), 1024).lookup("a");
+    assertNotNull(cachedFile);
+    assertTrue(Files.exists(cachedFile.resolveSibling("result.data").resolve("band.img")));
+
+    Path target = Files.createDirectories(tempDir.resolve("target")).resolve("result.dim");
+    ResultCache.copyOutput(cachedFile, target, "BEAM-DIMAP", ProgressMonitor.NULL);
+    assertTrue(Files.exists(target));
+    assertEquals(10, Files.size(target.resolveSibling("result.data").resolve("band.img")));
+  }
+
+  @Test
+  void testCopyDimapOutputToOtherName() throws IOException {
+    Product product = new Product("result", "test", 4, 3);
+    Band band = product.addBand("band", ProductData.TYPE_INT32);
+    band.setRasterData(ProductData.createInstance(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}));
+    Path output = tempDir.resolve("result.dim");
+    ProductIO.writeProduct(product, output.toFile(), "BEAM-DIMAP", false, ProgressMonitor.NULL);
+    ResultCache cache = new ResultCache(tempDir.resolve("cache"), 1024 * 1024);
+    cache.store("a", output);
+
+    Path target = tempDir.resolve("copy.dim");
+    ResultCache.copyOutput(cache.lookup("a"), target, "BEAM-DIMAP", ProgressMonitor.NULL);
+    assertTrue(Files.isDirectory(tempDir.resolve("copy.data")));
+    Product copy = ProductIO.readProduct(target.toFile());
+    assertNotNull(copy);
+    try {
+      int[] pixels = new int[12];
+      copy.getBand("band").readPixels(0, 0, 4, 3, pixels);
+      assertEquals(11, pixels[11]);
+      assertEquals(5, pixels[5]);
+    } finally {
+      copy.dispose();
+    }
+  }
+
+  @Test
+  void testPinnedEntryIsNotEvicted() throws IOException, InterruptedException {
+    ResultCache cache = new ResultCache(tempDir.resolve("cache"), 100);
+    cache.store("a", createOutput("a", 20));
+    cache.pin("a");
+    Thread.sleep(5);
+    cache.store("b", createOutput("b", 20));
+    Thread.sleep(5);
+    cache.store("c", createOutput("c", 20));
+    assertNotNull(cache.lookup("a"));
+    assertNull(cache.lookup("b"));
+
+    // a pinned entry is not replaced either
+    Path cachedFile = cache.lookup("a");
+    cache.store("a", createOutput("a", 10));
+    assertEquals(20, Files.size(cachedFile.resolveSibling("a.data").resolve("band.img")));
+
+    cache.unpin("a");
+    Thread.sleep(5);
+    assertNotNull(cache.lookup("c"));
+    cache.store("d", createOutput("d", 20));
+    assertNull(cache.lookup("a"));
+  }
+
+  @Test
+  void testDisabledByDefault() {
+    assertFalse(ResultCache.getDefault().isEnabled());
+    assertNull(ResultCache.getDefault().lookup("a"));
+  }
+
+  @Test
+  void testLeastRecentlyUsedIsEvicted() throws IOException, InterruptedException {
+    ResultCache cache = new ResultCache(tempDir.resolve("cache"), 100);
+    cache.store("a", createOutput("a", 20));
+    Thread.sleep(5);
+    cache.store("b", createOutput("b", 20));
+    Thread.sleep(5);
+    assertNotNull(cache.lookup("a"));
+    cache.store("c", createOutput("c", 20));
+
+    assertNotNull(cache.lookup("a"));
+    assertNull(cache.lookup("b"));
+    assertNotNull(cache.lookup("c"));
+    assertTrue(cache.getSize() <= 100);
+  }
+
+  private Path createOutput(String name, int dataSize) throws IOException {
+    Path file = Files.writeString(tempDir.resolve(name + ".dim"), "<Dimap_Document/>");
+    Path dataDir = Files.createDirectories(tempDir.resolve(name + ".data"));
+    Files.write(dataDir.resolve("band.img"), new byte[dataSize]);
+    return file;
+  }
+}
@@ -0,0 +1,156 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.bc.ceres.core.ProgressMonitor;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScratchProductStoreTest {
+
+  private static final int WIDTH = 100;
+  private static final int HEIGHT = 70;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testFilledProductIsReadFromScratch() throws IOException {
+    Product product = new Product("test", "test", WIDTH, HEIGHT);
+    TiledImage image = createImage();
+    Band band = new Band("band", ProductData.TYPE_FLOAT32, WIDTH, HEIGHT);
+    band.setSourceImage(image);
+    product.addBand(band);
+
+    ScratchProductStore store = ScratchProductStore.materialize(product, tempDir);
+    store.fill(ProgressMonitor.NULL);
+    // changes of the original image are not seen anymore, all tiles come from the scratch files
+    image.setSample(5, 5, 0, -1.0f);
+    image.setSample(99, 69, 0, -1.0f);
+
+    Raster data = band.getSourceImage().getData();
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        assertEquals(y * WIDTH + x + 0.5f, data.getSampleFloat(x, y, 0));
+      }
+    }
+    store.dispose();
+  }
+
+  @Test
+  void testTilesAreServedBeforeFill() throws IOException {
+    Product product = new Product("test", "test", WIDTH, HEIGHT);
+    Band band = new Band("band", ProductData.TYPE_FLOAT32, WIDTH, HEIGHT);
+    band.setSourceImage(createImage());
+    product.addBand(band);
+
+    ScratchProductStore store = ScratchProductStore.materialize(product, tempDir);
+    Raster tile = band.getSourceImage().getTile(1, 1);
+    assertEquals(33 * WIDTH + 33 + 0.5f, tile.getSampleFloat(33, 33, 0));
+    store.dispose();
+  }
+
+  @Test
+  void testDisposeDeletesScratchDir() throws IOException {
+    Product product = new Product("test", "test", WIDTH, HEIGHT);
+    Band band = new Band("band", ProductData.TYPE_FLOAT32, WIDTH, HEIGHT);
+    band.setSourceImage(createImage());
+    product.addBand(band);
+
+    ScratchProductStore store = ScratchProductStore.materialize(product, tempDir);
+    assertTrue(Files.isDirectory(store.getScratchDir()));
+    store.dispose();
+    assertFalse(Files.exists(store.getScratchDir()));
+  }
+
+  @Test
+  void testConcurrentRequestsComputeTileOnce() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    SampleModel sampleModel = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, 32, 32, 1);
+    TiledImage image = new TiledImage(0, 0, WIDTH, HEIGHT, 0, 0, sampleModel, null) {
+      @Override
+      public Raster getTile(int tileX, int tileY) {
+        requests.incrementAndGet();
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.getTile(tileX, tileY);
+      }
+    };
+    image.setSample(40, 40, 0, 42.0f);
+    Product product = new Product("test", "test", WIDTH, HEIGHT);
+    Band band = new Band("band", ProductData.TYPE_FLOAT32, WIDTH, HEIGHT);
+    band.setSourceImage(image);
+    product.addBand(band);
+
+    ScratchProductStore store = ScratchProductStore.materialize(product, tempDir);
+    requests.set(0);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Future<?>[] futures = new Future<?>[4];
+      for (int i = 0; i < futures.length; i++) {
+        futures[i] = executor.submit(() -> band.getSourceImage().getImage(0).getTile(1, 1));
+      }
+      for (Future<?> future : futures) {
+        assertEquals(42.0f, ((Raster) future.get()).getSampleFloat(40, 40, 0));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, requests.get());
+    store.dispose();
+  }
+
+  private static TiledImage createImage() {
+    SampleModel sampleModel = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, 32, 32, 1);
+    TiledImage image = new TiledImage(0, 0, WIDTH, HEIGHT, 0, 0, sampleModel, null);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        image.setSample(x, y, 0, y * WIDTH + x + 0.5f);
+      }
+    }
+    return image;
+  }
+}
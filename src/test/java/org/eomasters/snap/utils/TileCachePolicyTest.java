@@ -0,0 +1,59 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.BufferedImage;
+import javax.media.jai.JAI;
+import org.junit.jupiter.api.Test;
+
+class TileCachePolicyTest {
+
+  @Test
+  void testPointOperationsAreNotCachedByDefault() {
+    BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_GRAY);
+    assertNull(new MaskedOpImage(image, image, 0).getTileCache());
+    assertNull(new ReplaceNoDataOpImage(image, NoDataValues.of(0), 1).getTileCache());
+  }
+
+  @Test
+  void testApplyPolicies() {
+    BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_GRAY);
+    MaskedOpImage first = new MaskedOpImage(image, image, 0);
+    MaskedOpImage second = new MaskedOpImage(image, image, 0);
+
+    first.setTileCachePolicy(TileCachePolicy.LOW_PRIORITY);
+    second.setTileCachePolicy(TileCachePolicy.LOW_PRIORITY);
+    assertNotNull(first.getTileCache());
+    assertSame(first.getTileCache(), second.getTileCache());
+    assertNotSame(JAI.getDefaultInstance().getTileCache(), first.getTileCache());
+
+    first.setTileCachePolicy(TileCachePolicy.NEVER);
+    assertNull(first.getTileCache());
+  }
+}
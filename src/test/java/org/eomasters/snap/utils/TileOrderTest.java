@@ -0,0 +1,68 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TileOrderTest {
+
+  @Test
+  void testAllTilesAreVisitedOnce() {
+    for (TileOrder order : TileOrder.values()) {
+      Point[] tiles = order.arrange(2, 3, 5, 3);
+      Set<Point> distinct = new HashSet<>(Arrays.asList(tiles));
+      assertEquals(15, tiles.length, order.name());
+      assertEquals(15, distinct.size(), order.name());
+      for (int y = 3; y < 6; y++) {
+        for (int x = 2; x < 7; x++) {
+          assertTrue(distinct.contains(new Point(x, y)), order.name());
+        }
+      }
+    }
+  }
+
+  @Test
+  void testZOrderVisitsQuadrants() {
+    Point[] tiles = TileOrder.Z_ORDER.arrange(0, 0, 4, 4);
+    assertArrayEquals(new Point[]{new Point(0, 0), new Point(1, 0), new Point(0, 1), new Point(1, 1)},
+        Arrays.copyOf(tiles, 4));
+  }
+
+  @Test
+  void testHilbertNeighboursAreAdjacent() {
+    Point[] tiles = TileOrder.HILBERT.arrange(0, 0, 8, 8);
+    for (int i = 1; i < tiles.length; i++) {
+      int distance = Math.abs(tiles[i].x - tiles[i - 1].x) + Math.abs(tiles[i].y - tiles[i - 1].y);
+      assertEquals(1, distance, "step " + i);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.junit.jupiter.api.Test;
+
+class TileRowPrefetcherTest {
+
+  @Test
+  void testNextRowIsPrefetchedInScanOrder() {
+    CountingImage image = new CountingImage();
+    List<Runnable> tasks = new ArrayList<>();
+    TileRowPrefetcher prefetcher = new TileRowPrefetcher(image, tasks::add);
+
+    prefetcher.getTile(0, 0);
+    assertEquals(1, image.requests.get());
+    // entering the first row schedules the second one
+    assertEquals(3, tasks.size());
+    tasks.forEach(Runnable::run);
+    tasks.clear();
+    assertEquals(4, image.requests.get());
+
+    // prefetched tiles are not requested again
+    Raster tile = prefetcher.getTile(1, 1);
+    assertSame(image.getTile(1, 1), tile);
+    assertEquals(5, image.requests.get());
+    assertEquals(3, tasks.size());
+  }
+
+  @Test
+  void testNothingIsPrefetchedOutOfOrder() {
+    CountingImage image = new CountingImage();
+    List<Runnable> tasks = new ArrayList<>();
+    TileRowPrefetcher prefetcher = new TileRowPrefetcher(image, tasks::add);
+
+    prefetcher.getTile(0, 2);
+    prefetcher.getTile(0, 1);
+    assertEquals(0, tasks.size());
+    assertEquals(2, image.requests.get());
+  }
+
+  @Test
+  void testMaskedImageWithPrefetching() {
+    TiledImage source = new TiledImage(0, 0, 12, 12, 0, 0,
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_INT, 4, 4, 1), null);
+    TiledImage mask = new TiledImage(0, 0, 12, 12, 0, 0,
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_BYTE, 4, 4, 1), null);
+    for (int y = 0; y < 12; y++) {
+      for (int x = 0; x < 12; x++) {
+        source.setSample(x, y, 0, x * y);
+        mask.setSample(x, y, 0, x > y ? 1 : 0);
+      }
+    }
+    MaskedOpImage maskedOpImage = new MaskedOpImage(source, mask, -1);
+    maskedOpImage.setPrefetchEnabled(true);
+    for (int tileY = 0; tileY < 3; tileY++) {
+      for (int tileX = 0; tileX < 3; tileX++) {
+        Raster tile = maskedOpImage.getTile(tileX, tileY);
+        for (int y = tile.getMinY(); y < tile.getMinY() + 4; y++) {
+          for (int x = tile.getMinX(); x < tile.getMinX() + 4; x++) {
+            assertEquals(x > y ? x * y : -1, tile.getSample(x, y, 0), "Incorrect value at (" + x + "," + y + ")");
+          }
+        }
+      }
+    }
+  }
+
+  private static class CountingImage extends TiledImage {
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    CountingImage() {
+      super(0, 0, 12, 12, 0, 0, RasterFactory.createBandedSampleModel(DataBuffer.TYPE_BYTE, 4, 4, 1), null);
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+      requests.incrementAndGet();
+      return super.getTile(tileX, tileY);
+    }
+  }
+}
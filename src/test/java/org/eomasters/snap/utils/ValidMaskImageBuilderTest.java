@@ -24,16 +24,40 @@
 package org.eomasters.snap.utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.bc.ceres.core.NullProgressMonitor;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.CrsGeoCoding;
 import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.util.DummyProductBuilder;
 import org.esa.snap.core.util.DummyProductBuilder.GC;
 import org.esa.snap.core.util.DummyProductBuilder.Size;
+import org.esa.snap.core.util.ImageUtils;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Polygon;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKTReader;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 
 class ValidMaskImageBuilderTest {
 
@@ -77,6 +101,65 @@ class ValidMaskImageBuilderTest {
   }
 
 
+  @Test
+  void testNativeResolutionMask() throws ValidMaskBuilderException {
+    Product multiSizeProduct = new Product("multiSize", "test", 100, 80);
+    Band band10 = createBand("band10", 100, 80);
+    multiSizeProduct.addBand(band10);
+    Band band20 = createBand("band20", 50, 40);
+    multiSizeProduct.addBand(band20);
+
+    RenderedImage constantMask = new ValidMaskImageBuilder(band20).create();
+    assertEquals(50, constantMask.getWidth());
+    assertEquals(40, constantMask.getHeight());
+
+    RenderedImage validMaskImage = new ValidMaskImageBuilder(band20)
+        .withExpression("band20 > 0 && X < 10.5")
+        .create();
+    assertEquals(50, validMaskImage.getWidth());
+    assertEquals(40, validMaskImage.getHeight());
+    assertEquals(VALID, validMaskImage.getData().getSample(10, 39, 0));
+    assertEquals(INVALID, validMaskImage.getData().getSample(11, 39, 0));
+
+    ValidMaskImageBuilder mismatchingBuilder = new ValidMaskImageBuilder(band20).withExpression("band10 > 0");
+    assertThrows(ValidMaskBuilderException.class, mismatchingBuilder::create);
+  }
+
+  @Test
+  void testNativeResolutionGeometryMask() throws Exception {
+    Product multiSizeProduct = new Product("multiSize", "test", 100, 80);
+    Band band10 = createBand("band10", 100, 80);
+    band10.setGeoCoding(new CrsGeoCoding(DefaultGeographicCRS.WGS84, 100, 80, 0.0, 10.0, 0.1, 0.1));
+    multiSizeProduct.addBand(band10);
+    multiSizeProduct.setSceneGeoCoding(band10.getGeoCoding());
+    Band band20 = createBand("band20", 50, 40);
+    band20.setGeoCoding(new CrsGeoCoding(DefaultGeographicCRS.WGS84, 50, 40, 0.0, 10.0, 0.2, 0.2));
+    multiSizeProduct.addBand(band20);
+
+    // lon 2 to 4, lat 6 to 8, pixels 10 to 19 in x and y at 0.2 degree
+    RenderedImage validMaskImage = new ValidMaskImageBuilder(band20)
+        .withWktArea("POLYGON ((2 8, 4 8, 4 6, 2 6, 2 8))")
+        .create();
+
+    assertEquals(50, validMaskImage.getWidth());
+    assertEquals(40, validMaskImage.getHeight());
+    Raster data = validMaskImage.getData();
+    for (int y = 0; y < 40; y++) {
+      for (int x = 0; x < 50; x++) {
+        boolean inside = x >= 10 && x <= 19 && y >= 10 && y <= 19;
+        assertEquals(inside ? VALID : INVALID, data.getSample(x, y, 0), "pixel " + x + "," + y);
+      }
+    }
+  }
+
+  private static Band createBand(String name, int width, int height) {
+    float[] data = new float[width * height];
+    Arrays.fill(data, 1.0f);
+    Band band = new Band(name, ProductData.TYPE_FLOAT32, width, height);
+    band.setSourceImage(ImageUtils.createRenderedImage(width, height, ProductData.createInstance(data)));
+    return band;
+  }
+
   @Test
   void testCreateValidExpressionMask() throws ValidMaskBuilderException {
     ValidMaskImageBuilder maskImageBuilder = new ValidMaskImageBuilder(smallProduct);
@@ -124,6 +207,88 @@ class ValidMaskImageBuilderTest {
     assertEquals(INVALID, validMaskImage.getData().getSample(30, 80, 0));
   }
 
+  @Test
+  void testCreateMaskWithFilteredShapefile(@TempDir Path tempDir) throws Exception {
+    Path shapeFile = tempDir.resolve("parcels.shp");
+    writeParcelsShapefile(shapeFile);
+
+    RenderedImage allParcelsMask = new ValidMaskImageBuilder(smallProduct).withShapeFile(shapeFile).create();
+    assertEquals(VALID, allParcelsMask.getData().getSample(53, 30, 0));
+    assertEquals(VALID, allParcelsMask.getData().getSample(15, 65, 0));
+
+    RenderedImage wheatMask = new ValidMaskImageBuilder(smallProduct)
+        .withShapeFile(shapeFile, attributes -> "wheat".equals(attributes.get("crop")))
+        .create();
+    assertEquals(VALID, wheatMask.getData().getSample(45, 9, 0));
+    assertEquals(VALID, wheatMask.getData().getSample(53, 30, 0));
+    assertEquals(INVALID, wheatMask.getData().getSample(15, 65, 0));
+    assertEquals(INVALID, wheatMask.getData().getSample(10, 0, 0));
+  }
+
+  @Test
+  void testCreateMaskWithFlatGeobuf() throws Exception {
+    Path flatGeobufFile = Path.of(getClass().getResource("parcels.fgb").toURI());
+    RenderedImage validMaskImage = new ValidMaskImageBuilder(smallProduct).withFlatGeobuf(flatGeobufFile).create();
+
+    assertEquals(VALID, validMaskImage.getData().getSample(45, 9, 0));
+    assertEquals(VALID, validMaskImage.getData().getSample(53, 30, 0));
+    assertEquals(VALID, validMaskImage.getData().getSample(15, 65, 0));
+    assertEquals(INVALID, validMaskImage.getData().getSample(10, 0, 0));
+    assertEquals(INVALID, validMaskImage.getData().getSample(85, 60, 0));
+  }
+
+  @Test
+  void testCreateMaskWithGeoJson(@TempDir Path tempDir) throws Exception {
+    Path geoJsonFile = tempDir.resolve("parcels.geojson");
+    Files.writeString(geoJsonFile, "{\"type\": \"FeatureCollection\", \"features\": [\n"
+        + "  {\"type\": \"Feature\", \"properties\": {\"crop\": \"wheat\"}, \"geometry\": {\"type\": \"Polygon\",\n"
+        + "    \"coordinates\": [[[3.3258594917787736, -0.7772795216741405], [6.225710014947682, -0.7772795216741405],\n"
+        + "      [6.225710014947682, -3.8863976083707024], [3.3258594917787736, -3.8863976083707024],\n"
+        + "      [3.3258594917787736, -0.7772795216741405]]]}},\n"
+        + "  {\"type\": \"Feature\", \"properties\": null, \"geometry\": null}\n"
+        + "]}");
+    RenderedImage validMaskImage = new ValidMaskImageBuilder(smallProduct).withGeoJson(geoJsonFile).create();
+
+    assertEquals(VALID, validMaskImage.getData().getSample(45, 9, 0));
+    assertEquals(VALID, validMaskImage.getData().getSample(53, 30, 0));
+    assertEquals(VALID, validMaskImage.getData().getSample(74, 46, 0));
+    assertEquals(INVALID, validMaskImage.getData().getSample(15, 65, 0));
+    assertEquals(INVALID, validMaskImage.getData().getSample(85, 60, 0));
+  }
+
+  private static void writeParcelsShapefile(Path shapeFile) throws Exception {
+    SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+    typeBuilder.setName("parcels");
+    typeBuilder.setCRS(DefaultGeographicCRS.WGS84);
+    typeBuilder.add("the_geom", Polygon.class);
+    typeBuilder.add("crop", String.class);
+    SimpleFeatureType featureType = typeBuilder.buildFeatureType();
+
+    ShapefileDataStore dataStore = new ShapefileDataStore(shapeFile.toUri().toURL());
+    try {
+      dataStore.createSchema(featureType);
+      WKTReader wktReader = new WKTReader();
+      try (FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
+          dataStore.getFeatureWriterAppend(Transaction.AUTO_COMMIT)) {
+        // Rectangle from 40,9 to 74,46
+        SimpleFeature wheat = writer.next();
+        wheat.setAttribute("the_geom", wktReader.read(
+            "POLYGON ((3.3258594917787736 -0.7772795216741405, 6.225710014947682 -0.7772795216741405, "
+                + "6.225710014947682 -3.8863976083707024, 3.3258594917787736 -3.8863976083707024, "
+                + "3.3258594917787736 -0.7772795216741405))"));
+        wheat.setAttribute("crop", "wheat");
+        writer.write();
+        // Rectangle from approx. 6,59 to 23,76
+        SimpleFeature maize = writer.next();
+        maize.setAttribute("the_geom", wktReader.read("POLYGON ((0.5 -5.0, 2.0 -5.0, 2.0 -6.5, 0.5 -6.5, 0.5 -5.0))"));
+        maize.setAttribute("crop", "maize");
+        writer.write();
+      }
+    } finally {
+      dataStore.dispose();
+    }
+  }
+
   @Test
   void testCreateMaskWithMaskImage() throws ValidMaskBuilderException {
     RenderedImage maskImage = new ValidMaskImageBuilder(smallProduct).withExpression("X ==100.5 || Y==100.5").create();
@@ -224,4 +389,39 @@ class ValidMaskImageBuilderTest {
     assertEquals(VALID, validMaskImage.getData().getSample(4, 2, 0));
 
   }
+
+  @Test
+  void testCreateAsync() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ValidMaskImageBuilder maskImageBuilder = new ValidMaskImageBuilder(smallProduct);
+      maskImageBuilder.withExpression("X >= 10.5 && X <= 70.5");
+      // Rectangle from 40,9 to 74,46
+      maskImageBuilder.withWktArea(
+          "POLYGON ((3.3258594917787736 -0.7772795216741405, 6.225710014947682 -0.7772795216741405, \n"
+              + "   6.225710014947682 -3.8863976083707024, 3.3258594917787736 -3.8863976083707024, \n"
+              + "   3.3258594917787736 -0.7772795216741405))");
+      RenderedImage validMaskImage = maskImageBuilder.createAsync(executor).get();
+
+      assertEquals(INVALID, validMaskImage.getData().getSample(3, 0, 0));
+      assertEquals(INVALID, validMaskImage.getData().getSample(45, 5, 0));
+      assertEquals(VALID, validMaskImage.getData().getSample(45, 9, 0));
+      assertEquals(VALID, validMaskImage.getData().getSample(53, 30, 0));
+      assertEquals(INVALID, validMaskImage.getData().getSample(74, 46, 0));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testCreateAsyncCancelled() {
+    NullProgressMonitor pm = new NullProgressMonitor();
+    pm.setCanceled(true);
+    CompletableFuture<RenderedImage> future = new ValidMaskImageBuilder(smallProduct)
+        .withExpression("X == 10.5")
+        .createAsync(Runnable::run, pm);
+
+    assertTrue(future.isCancelled());
+    assertThrows(CancellationException.class, future::join);
+  }
 }
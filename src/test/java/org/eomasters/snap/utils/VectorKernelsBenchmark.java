@@ -0,0 +1,180 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link VectorKernels} with the scalar loops used as fallback. Each invocation processes one tile of
+ * 512 x 512 samples. The vector width is chosen by the JVM, so the benchmark should be run on each machine type of
+ * interest, e.g. on AVX2 and on AVX-512 machines.
+ *
+ * <p>Run it with {@code mvn test-compile} followed by executing the main method of this class on the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class VectorKernelsBenchmark {
+
+  private static final int SIZE = 512 * 512;
+
+  private byte[] mask;
+  private byte[] byteSource;
+  private byte[] byteDest;
+  private short[] shortSource;
+  private short[] shortDest;
+  private float[] floatSource;
+  private float[] floatDest;
+  private double[] doubleSource;
+  private double[] doubleDest;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(VectorKernelsBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    mask = new byte[SIZE];
+    byteSource = new byte[SIZE];
+    shortSource = new short[SIZE];
+    floatSource = new float[SIZE];
+    doubleSource = new double[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      mask[i] = (byte) (random.nextInt(4) == 0 ? 0 : 1);
+      byteSource[i] = (byte) random.nextInt();
+      shortSource[i] = (short) random.nextInt();
+      floatSource[i] = random.nextInt(10) == 0 ? Float.NaN : random.nextFloat();
+      doubleSource[i] = floatSource[i];
+    }
+    byteDest = new byte[SIZE];
+    shortDest = new short[SIZE];
+    floatDest = new float[SIZE];
+    doubleDest = new double[SIZE];
+  }
+
+  @Benchmark
+  public byte[] maskByteVector() {
+    VectorKernels.maskByte(byteSource, 0, mask, 0, byteDest, 0, SIZE, (byte) -1);
+    return byteDest;
+  }
+
+  @Benchmark
+  public byte[] maskByteScalar() {
+    for (int i = 0; i < SIZE; i++) {
+      byteDest[i] = mask[i] != 0 ? byteSource[i] : -1;
+    }
+    return byteDest;
+  }
+
+  @Benchmark
+  public short[] maskShortVector() {
+    VectorKernels.maskShort(shortSource, 0, mask, 0, shortDest, 0, SIZE, (short) -1);
+    return shortDest;
+  }
+
+  @Benchmark
+  public short[] maskShortScalar() {
+    for (int i = 0; i < SIZE; i++) {
+      shortDest[i] = mask[i] != 0 ? shortSource[i] : -1;
+    }
+    return shortDest;
+  }
+
+  @Benchmark
+  public float[] maskFloatVector() {
+    VectorKernels.maskFloat(floatSource, 0, mask, 0, floatDest, 0, SIZE, -1);
+    return floatDest;
+  }
+
+  @Benchmark
+  public float[] maskFloatScalar() {
+    for (int i = 0; i < SIZE; i++) {
+      floatDest[i] = mask[i] != 0 ? floatSource[i] : -1;
+    }
+    return floatDest;
+  }
+
+  @Benchmark
+  public double[] maskDoubleVector() {
+    VectorKernels.maskDouble(doubleSource, 0, mask, 0, doubleDest, 0, SIZE, -1);
+    return doubleDest;
+  }
+
+  @Benchmark
+  public double[] maskDoubleScalar() {
+    for (int i = 0; i < SIZE; i++) {
+      doubleDest[i] = mask[i] != 0 ? doubleSource[i] : -1;
+    }
+    return doubleDest;
+  }
+
+  @Benchmark
+  public float[] replaceNaNFloatVector() {
+    VectorKernels.replaceNaNFloat(floatSource, 0, floatDest, 0, SIZE, 0);
+    return floatDest;
+  }
+
+  @Benchmark
+  public float[] replaceNaNFloatScalar() {
+    for (int i = 0; i < SIZE; i++) {
+      float value = floatSource[i];
+      floatDest[i] = Float.isNaN(value) ? 0 : value;
+    }
+    return floatDest;
+  }
+
+  @Benchmark
+  public double[] replaceNaNDoubleVector() {
+    VectorKernels.replaceNaNDouble(doubleSource, 0, doubleDest, 0, SIZE, 0);
+    return doubleDest;
+  }
+
+  @Benchmark
+  public double[] replaceNaNDoubleScalar() {
+    for (int i = 0; i < SIZE; i++) {
+      double value = doubleSource[i];
+      doubleDest[i] = Double.isNaN(value) ? 0 : value;
+    }
+    return doubleDest;
+  }
+}
@@ -0,0 +1,139 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VectorKernelsTest {
+
+  // covers empty lines, lines shorter than a vector and lines with a remainder
+  private static final int[] LENGTHS = {0, 1, 7, 63, 64, 65, 333};
+  private static final int SIZE = 400;
+
+  private final Random random = new Random(42);
+  private byte[] mask;
+
+  @BeforeEach
+  void setUp() {
+    assumeTrue(Vectorization.isEnabled(), "jdk.incubator.vector is not available");
+    mask = new byte[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      mask[i] = (byte) (random.nextInt(3) == 0 ? 0 : random.nextInt(255) - 127);
+    }
+  }
+
+  @Test
+  void testMaskFloat() {
+    float[] src = new float[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      src[i] = random.nextFloat();
+    }
+    for (int length : LENGTHS) {
+      float[] expected = new float[SIZE];
+      float[] actual = new float[SIZE];
+      for (int x = 0; x < length; x++) {
+        expected[7 + x] = mask[5 + x] != 0 ? src[3 + x] : -1;
+      }
+      VectorKernels.maskFloat(src, 3, mask, 5, actual, 7, length, -1);
+      assertArrayEquals(expected, actual, "length " + length);
+    }
+  }
+
+  @Test
+  void testMaskDouble() {
+    double[] src = new double[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      src[i] = random.nextDouble();
+    }
+    for (int length : LENGTHS) {
+      double[] expected = new double[SIZE];
+      double[] actual = new double[SIZE];
+      for (int x = 0; x < length; x++) {
+        expected[x] = mask[x + 1] != 0 ? src[x] : Double.NaN;
+      }
+      VectorKernels.maskDouble(src, 0, mask, 1, actual, 0, length, Double.NaN);
+      assertArrayEquals(expected, actual, "length " + length);
+    }
+  }
+
+  @Test
+  void testMaskIntegerTypes() {
+    byte[] bytes = new byte[SIZE];
+    short[] shorts = new short[SIZE];
+    int[] ints = new int[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      bytes[i] = (byte) random.nextInt();
+      shorts[i] = (short) random.nextInt();
+      ints[i] = random.nextInt();
+    }
+    for (int length : LENGTHS) {
+      byte[] expectedBytes = new byte[SIZE];
+      short[] expectedShorts = new short[SIZE];
+      int[] expectedInts = new int[SIZE];
+      for (int x = 0; x < length; x++) {
+        expectedBytes[x] = mask[x] != 0 ? bytes[x] : 9;
+        expectedShorts[x] = mask[x] != 0 ? shorts[x] : 9;
+        expectedInts[x] = mask[x] != 0 ? ints[x] : 9;
+      }
+      byte[] actualBytes = new byte[SIZE];
+      short[] actualShorts = new short[SIZE];
+      int[] actualInts = new int[SIZE];
+      VectorKernels.maskByte(bytes, 0, mask, 0, actualBytes, 0, length, (byte) 9);
+      VectorKernels.maskShort(shorts, 0, mask, 0, actualShorts, 0, length, (short) 9);
+      VectorKernels.maskInt(ints, 0, mask, 0, actualInts, 0, length, 9);
+      assertArrayEquals(expectedBytes, actualBytes, "length " + length);
+      assertArrayEquals(expectedShorts, actualShorts, "length " + length);
+      assertArrayEquals(expectedInts, actualInts, "length " + length);
+    }
+  }
+
+  @Test
+  void testReplaceNaN() {
+    float[] floats = new float[SIZE];
+    double[] doubles = new double[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      floats[i] = random.nextInt(4) == 0 ? Float.NaN : random.nextFloat();
+      doubles[i] = floats[i];
+    }
+    for (int length : LENGTHS) {
+      float[] expectedFloats = new float[SIZE];
+      double[] expectedDoubles = new double[SIZE];
+      for (int x = 0; x < length; x++) {
+        expectedFloats[x + 1] = Float.isNaN(floats[x + 2]) ? 42 : floats[x + 2];
+        expectedDoubles[x + 1] = Double.isNaN(doubles[x + 2]) ? 42 : doubles[x + 2];
+      }
+      float[] actualFloats = new float[SIZE];
+      double[] actualDoubles = new double[SIZE];
+      VectorKernels.replaceNaNFloat(floats, 2, actualFloats, 1, length, 42);
+      VectorKernels.replaceNaNDouble(doubles, 2, actualDoubles, 1, length, 42);
+      assertArrayEquals(expectedFloats, actualFloats, "length " + length);
+      assertArrayEquals(expectedDoubles, actualDoubles, "length " + length);
+    }
+  }
+}
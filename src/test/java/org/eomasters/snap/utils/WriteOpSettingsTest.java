@@ -0,0 +1,87 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons SNAP - Library of common utilities for ESA SNAP
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2025 Marco Peters
+ * ======================================================================
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * -> http://www.gnu.org/licenses/gpl-3.0.html
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.snap.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.DataBuffer;
+import javax.media.jai.JAI;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.jupiter.api.Test;
+
+class WriteOpSettingsTest {
+
+  private static final long MB = 1024 * 1024;
+
+  @Test
+  void testSmallProductKeepsRowsAndCache() {
+    WriteOpSettings settings = WriteOpSettings.decide(10 * MB, 200 * MB, 2048 * MB, 1024 * MB);
+    assertTrue(settings.writeEntireTileRows());
+    assertFalse(settings.clearCacheAfterRowWrite());
+  }
+
+  @Test
+  void testWideProductIsWrittenTileByTile() {
+    WriteOpSettings settings = WriteOpSettings.decide(300 * MB, 20000 * MB, 2048 * MB, 1024 * MB);
+    assertFalse(settings.writeEntireTileRows());
+    assertTrue(settings.clearCacheAfterRowWrite());
+  }
+
+  @Test
+  void testCacheIsClearedIfProductExceedsCache() {
+    WriteOpSettings settings = WriteOpSettings.decide(10 * MB, 2000 * MB, 2048 * MB, 1024 * MB);
+    assertTrue(settings.writeEntireTileRows());
+    assertTrue(settings.clearCacheAfterRowWrite());
+  }
+
+  @Test
+  void testForProduct() {
+    Product product = new Product("test", "test", 100, 70);
+    product.setPreferredTileSize(100, 20);
+    // the tile height is taken from the source image if there is one
+    Band imageBand = product.addBand("image", ProductData.TYPE_INT32);
+    imageBand.setSourceImage(new TiledImage(0, 0, 100, 70, 0, 0,
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_INT, 100, 10, 1), null));
+    // the tile height is limited to the height of the band
+    Band highTileBand = product.addBand("highTile", ProductData.TYPE_INT8);
+    highTileBand.setSourceImage(new TiledImage(0, 0, 100, 70, 0, 0,
+        RasterFactory.createBandedSampleModel(DataBuffer.TYPE_BYTE, 100, 128, 1), null));
+    // otherwise from the preferred tile size of the product
+    product.addBand("plain", ProductData.TYPE_FLOAT32);
+
+    WriteOpSettings settings = WriteOpSettings.forProduct(product);
+
+    assertEquals(100 * 10 * 4 + 100 * 70 + 100 * 20 * 4, settings.bytesPerTileRow());
+    assertEquals(100 * 70 * (4 + 1 + 4), settings.rawSize());
+    assertEquals(JAI.getDefaultInstance().getTileCache().getMemoryCapacity(), settings.tileCacheCapacity());
+    assertEquals(WriteOpSettings.decide(settings.bytesPerTileRow(), settings.rawSize(), settings.freeHeap(),
+        settings.tileCacheCapacity()), settings);
+  }
+}